@@ -0,0 +1,152 @@
+package com.loganalyser.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent calls with the same key into a single computation.
+ * <p>
+ * The first caller for a key starts the computation on the executor; callers arriving while it is
+ * in flight wait for the same result instead of starting their own. Every caller waits on its own
+ * timeout. When a caller gives up (timeout or interrupt) it leaves the flight, and when the last
+ * waiter leaves before the result is ready the computation is cancelled (its thread interrupted),
+ * so nobody keeps paying for an answer nobody is waiting for. Once a flight completes, the next
+ * call for the key starts a new computation; results are not cached here.
+ *
+ * @param <K> Key type; must implement equals/hashCode
+ * @param <V> Result type
+ */
+public class SingleFlight<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public SingleFlight(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the result of the in-flight computation for the key, starting it if there is none.
+     *
+     * @param key The coalescing key
+     * @param computation Computes the result; only invoked by the first caller of a flight
+     * @param timeoutMs How long this caller waits for the result
+     * @return The computed result
+     * @throws TimeoutException if the result is not ready within the timeout
+     * @throws InterruptedException if the waiting thread is interrupted
+     * @throws RejectedExecutionException if the executor cannot accept the computation
+     * @throws Exception whatever the computation threw
+     */
+    public V execute(K key, Callable<V> computation, long timeoutMs) throws Exception {
+        Flight<V> created = new Flight<>();
+        Flight<V> flight = join(key, created);
+
+        if (flight == created) {
+            start(key, flight, computation);
+        } else {
+            logger.debug("Joined in-flight computation for key {}", key);
+        }
+
+        try {
+            return flight.result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (TimeoutException | InterruptedException e) {
+            leave(key, flight);
+            throw e;
+        }
+    }
+
+    /**
+     * @return Number of keys with a computation currently in flight
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    /**
+     * Joins the flight in progress for the key, or registers {@code created} as the new flight.
+     */
+    private Flight<V> join(K key, Flight<V> created) {
+        while (true) {
+            Flight<V> flight = flights.putIfAbsent(key, created);
+            if (flight == null) {
+                flight = created;
+            }
+            synchronized (flight) {
+                if (!flight.cancelled) {
+                    flight.waiters++;
+                    return flight;
+                }
+            }
+            // The flight was abandoned by all of its waiters between lookup and join; start over
+            flights.remove(key, flight);
+        }
+    }
+
+    private void start(K key, Flight<V> flight, Callable<V> computation) {
+        synchronized (flight) {
+            if (flight.cancelled) {
+                return;
+            }
+            try {
+                flight.task = executor.submit(() -> {
+                    V value;
+                    try {
+                        value = computation.call();
+                    } catch (Throwable t) {
+                        flights.remove(key, flight);
+                        flight.result.completeExceptionally(t);
+                        return;
+                    }
+                    // Leave the map before publishing, so a caller that got the result starts a new flight
+                    flights.remove(key, flight);
+                    flight.result.complete(value);
+                });
+            } catch (RejectedExecutionException e) {
+                flights.remove(key, flight);
+                flight.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void leave(K key, Flight<V> flight) {
+        synchronized (flight) {
+            flight.waiters--;
+            if (flight.waiters > 0 || flight.result.isDone()) {
+                return;
+            }
+            flight.cancelled = true;
+            flights.remove(key, flight);
+            if (flight.task != null) {
+                flight.task.cancel(true);
+            }
+            flight.result.completeExceptionally(new CancellationException("All waiters left"));
+        }
+        logger.info("Cancelled computation for key {}: all waiters left", key);
+    }
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        // Guarded by this
+        int waiters;
+        boolean cancelled;
+        Future<?> task;
+    }
+}
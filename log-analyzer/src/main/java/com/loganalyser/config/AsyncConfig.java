@@ -0,0 +1,121 @@
+package com.loganalyser.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for work that runs off the servlet request threads, and scheduling of periodic
+ * maintenance such as chat retention.
+ */
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    /**
+     * Executor that drives streamed (SSE) analyses while the request thread is released.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor analysisStreamExecutor(
+            @Value("${analysis.stream.threads:16}") int threads,
+            @Value("${analysis.stream.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("analysis-stream-");
+        return executor;
+    }
+
+    /**
+     * Executor that runs coalesced (single-flight) analyses on behalf of all requests waiting for them.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor analysisExecutor(
+            @Value("${analysis.coalesce.threads:16}") int threads,
+            @Value("${analysis.coalesce.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("analysis-");
+        return executor;
+    }
+
+    /**
+     * Executor for the map step of map-reduce analyses; its pool size bounds concurrent chunk summaries.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor summaryExecutor(
+            @Value("${analysis.map-reduce.concurrency:4}") int threads,
+            @Value("${analysis.map-reduce.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("analysis-summary-");
+        return executor;
+    }
+
+    /**
+     * Executor running asynchronous analysis jobs; submissions beyond its queue are rejected.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor analysisJobExecutor(
+            @Value("${analysis.jobs.threads:4}") int threads,
+            @Value("${analysis.jobs.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("analysis-job-");
+        return executor;
+    }
+
+    /**
+     * Executor running the per-transaction analyses of batch requests; each batch keeps at most
+     * {@code analysis.batch.concurrency} of them in flight.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor analysisBatchExecutor(
+            @Value("${analysis.batch.concurrency:8}") int threads,
+            @Value("${analysis.batch.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("analysis-batch-");
+        return executor;
+    }
+
+    /**
+     * Executor updating the rolling summaries of chat conversations after each turn.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor chatSummaryExecutor(
+            @Value("${chat.summary.threads:2}") int threads,
+            @Value("${chat.summary.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("chat-summary-");
+        return executor;
+    }
+
+    /**
+     * Executor running the attempts of hedged LLM calls. It has no queue: when all threads are busy,
+     * calls run unhedged on the caller's thread instead of waiting.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor llmHedgeExecutor(@Value("${llm.hedging.threads:32}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("llm-hedge-");
+        return executor;
+    }
+}
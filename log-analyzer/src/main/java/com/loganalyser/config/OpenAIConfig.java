@@ -1,9 +1,13 @@
 package com.loganalyser.config;
 
+import com.loganalyser.llm.ChatCompletionApi;
+import com.theokanning.openai.client.OpenAiApi;
 import com.theokanning.openai.service.OpenAiService;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import retrofit2.Retrofit;
 
 import java.time.Duration;
 
@@ -19,9 +23,33 @@ public class OpenAIConfig {
     @Value("${openai.max-tokens:2000}")
     private Integer maxTokens;
 
+    @Value("${openai.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${openai.conversation-reserve-tokens:2000}")
+    private int conversationReserveTokens;
+
+    @Value("${openai.max-prompt-tokens:32000}")
+    private int maxPromptTokens;
+
+    @Bean
+    public OkHttpClient openAiHttpClient() {
+        return OpenAiService.defaultClient(apiKey, Duration.ofSeconds(timeoutSeconds));
+    }
+
+    @Bean
+    public Retrofit openAiRetrofit(OkHttpClient openAiHttpClient) {
+        return OpenAiService.defaultRetrofit(openAiHttpClient, OpenAiService.defaultObjectMapper());
+    }
+
+    @Bean
+    public OpenAiService openAiService(Retrofit openAiRetrofit, OkHttpClient openAiHttpClient) {
+        return new OpenAiService(openAiRetrofit.create(OpenAiApi.class), openAiHttpClient.dispatcher().executorService());
+    }
+
     @Bean
-    public OpenAiService openAiService() {
-        return new OpenAiService(apiKey, Duration.ofSeconds(60));
+    public ChatCompletionApi chatCompletionApi(Retrofit openAiRetrofit) {
+        return openAiRetrofit.create(ChatCompletionApi.class);
     }
 
     public String getModel() {
@@ -31,5 +59,16 @@ public class OpenAIConfig {
     public Integer getMaxTokens() {
         return maxTokens;
     }
+
+    public int getConversationReserveTokens() {
+        return conversationReserveTokens;
+    }
+
+    /**
+     * @return Maximum prompt size in tokens regardless of the context window, 0 for no cap
+     */
+    public int getMaxPromptTokens() {
+        return maxPromptTokens;
+    }
 }
 
@@ -0,0 +1,118 @@
+package com.loganalyser.controller;
+
+import com.loganalyser.ingest.IngestBackpressureException;
+import com.loganalyser.ingest.JsonLogLineParser;
+import com.loganalyser.ingest.LogLineParser;
+import com.loganalyser.ingest.LogLineParserRegistry;
+import com.loganalyser.service.LogIndexingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * REST Controller for pushing logs into the index over HTTP.
+ * Accepts NDJSON or raw log lines, optionally gzip-compressed and chunked; the body is parsed
+ * incrementally and never buffered as a whole.
+ */
+@RestController
+@RequestMapping("/api")
+public class LogIngestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogIngestController.class);
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final LogIndexingService logIndexingService;
+    private final LogLineParserRegistry parserRegistry;
+
+    /**
+     * Constructor for LogIngestController.
+     *
+     * @param logIndexingService The log indexing service
+     * @param parserRegistry The registry of log line parsers
+     */
+    public LogIngestController(LogIndexingService logIndexingService, LogLineParserRegistry parserRegistry) {
+        this.logIndexingService = logIndexingService;
+        this.parserRegistry = parserRegistry;
+    }
+
+    /**
+     * Endpoint for bulk ingestion of log lines.
+     * NDJSON bodies are parsed with the JSON parser and other bodies with the default parser,
+     * unless a parser is named explicitly. Returns 429 with Retry-After when the pipeline is saturated;
+     * retrying the same body with the same source and offset is idempotent. Without a source header the
+     * body gets a generated source of its own, so it never overwrites another push.
+     *
+     * @param body The request body, one log line per line
+     * @param contentType The body content type (application/x-ndjson or text/plain)
+     * @param contentEncoding "gzip" for compressed bodies
+     * @param source Logical name of the pushing source; part of the document identity
+     * @param offset Offset of the first byte of the body within the source; required with a source
+     * @param parserName Optional parser name overriding the content-type based choice
+     * @return Response entity with the number of ingested lines
+     */
+    @PostMapping(value = "/ingest", consumes = {NDJSON, "text/plain"})
+    public ResponseEntity<IngestResponse> ingest(
+            InputStream body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            @RequestHeader(value = "X-Log-Source", required = false) String source,
+            @RequestHeader(value = "X-Log-Offset", required = false) Long offset,
+            @RequestParam(value = "parser", required = false) String parserName) {
+        if (source == null || source.isBlank()) {
+            // Offsets without a source name cannot identify anything
+            source = "http/" + UUID.randomUUID();
+            offset = 0L;
+        } else if (offset == null) {
+            return ResponseEntity.badRequest().body(new IngestResponse(0, source,
+                    "Error: X-Log-Offset is required with X-Log-Source, otherwise pushes of the same source overwrite each other"));
+        }
+
+        try {
+            LogLineParser parser;
+            if (parserName != null) {
+                parser = parserRegistry.getParser(parserName);
+            } else if (contentType.startsWith(NDJSON)) {
+                parser = parserRegistry.getParser(JsonLogLineParser.NAME);
+            } else {
+                parser = parserRegistry.getDefaultParser();
+            }
+
+            InputStream in = "gzip".equalsIgnoreCase(contentEncoding)
+                    ? new GZIPInputStream(new BufferedInputStream(body, 64 * 1024), 64 * 1024)
+                    : body;
+            long ingested = logIndexingService.ingestStream(in, source, offset, parser);
+            return ResponseEntity.ok(new IngestResponse(ingested, source, null));
+        } catch (IngestBackpressureException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new IngestResponse(0, source, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new IngestResponse(0, source, "Error: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new IngestResponse(0, source, "Error: interrupted"));
+        } catch (Exception e) {
+            logger.error("Error ingesting logs from source {}: {}", source, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(new IngestResponse(0, source, "Error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Response DTO for the ingest endpoint.
+     *
+     * @param ingested Number of log lines indexed from the body
+     * @param source The source the lines were indexed under, generated if the request named none
+     * @param error Error message, or null on success
+     */
+    public record IngestResponse(long ingested, String source, String error) {
+    }
+}
@@ -1,16 +1,41 @@
 package com.loganalyser.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.loganalyser.dto.AnalysisResult;
+import com.loganalyser.dto.BatchAnalysisResult;
+import com.loganalyser.entity.AnalysisJobEntity;
+import com.loganalyser.enums.AnalysisJobStatus;
 import com.loganalyser.enums.PromptCategory;
+import com.loganalyser.llm.LlmRejectedException;
+import com.loganalyser.service.AnalysisJobService;
+import com.loganalyser.service.BatchAnalysisService;
 import com.loganalyser.service.LogAnalysisService;
 import com.loganalyser.service.TransactionIdExtractorService;
+import com.loganalyser.service.TransactionLogsUnavailableException;
 import jakarta.validation.constraints.NotBlank;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
  * REST Controller for handling log analysis queries.
@@ -26,19 +51,43 @@ public class QueryController {
 
     private static final Logger logger = LoggerFactory.getLogger(QueryController.class);
 
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final LogAnalysisService logAnalysisService;
     private final TransactionIdExtractorService transactionIdExtractorService;
+    private final TaskExecutor analysisStreamExecutor;
+    private final AnalysisJobService analysisJobService;
+    private final BatchAnalysisService batchAnalysisService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${analysis.stream.timeout-ms:180000}")
+    private long streamTimeoutMs;
+
+    @Value("${analysis.batch.timeout-ms:1800000}")
+    private long batchTimeoutMs;
 
     /**
      * Constructor for QueryController.
      *
      * @param logAnalysisService The log analysis service
      * @param transactionIdExtractorService The transaction ID extractor service
+     * @param analysisStreamExecutor The executor running streamed analyses
+     * @param analysisJobService The asynchronous analysis job service
+     * @param batchAnalysisService The batch analysis service
+     * @param objectMapper The JSON mapper for NDJSON responses
      */
     public QueryController(LogAnalysisService logAnalysisService,
-                          TransactionIdExtractorService transactionIdExtractorService) {
+                          TransactionIdExtractorService transactionIdExtractorService,
+                          @Qualifier("analysisStreamExecutor") TaskExecutor analysisStreamExecutor,
+                          AnalysisJobService analysisJobService,
+                          BatchAnalysisService batchAnalysisService,
+                          ObjectMapper objectMapper) {
         this.logAnalysisService = logAnalysisService;
         this.transactionIdExtractorService = transactionIdExtractorService;
+        this.analysisStreamExecutor = analysisStreamExecutor;
+        this.analysisJobService = analysisJobService;
+        this.batchAnalysisService = batchAnalysisService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -51,45 +100,29 @@ public class QueryController {
     @PostMapping("/query")
     public ResponseEntity<QueryResponse> query(@RequestBody QueryRequest request) {
         try {
-            logger.info("Received query request: {} with category: {}", 
-                    request.getQuery(), request.getCategory());
-
-            // Try to resolve transaction ID from existing chat history if chatId is provided
-            String transactionId = null;
-            if (request.getChatId() != null && !request.getChatId().isBlank()) {
-                transactionId = logAnalysisService.resolveTransactionIdForChat(request.getChatId())
-                        .orElse(null);
-                if (transactionId != null) {
-                    logger.info("Resolved transaction ID {} from chatId {}", transactionId, request.getChatId());
-                }
-            }
+            logger.info("Received query request: {} with category: {}, categories: {}",
+                    request.getQuery(), request.getCategory(), request.getCategories());
 
-            // If not found in history, extract transaction ID from the current query string
-            if (transactionId == null) {
-                transactionId = transactionIdExtractorService.extractTransactionId(request.getQuery());
-            }
+            List<String> transactionIds = resolveTransactionIds(request);
 
-            if (transactionId == null) {
+            if (transactionIds.isEmpty()) {
                 logger.warn("Could not resolve transaction ID from chat or query: {}", request.getQuery());
                 return ResponseEntity.badRequest()
                         .body(new QueryResponse("Error: Could not extract transaction ID from the query or existing chat context. Please include a transaction ID in the format TX######### (e.g., TX651750504)", null));
             }
 
-            logger.info("Using transaction ID: {} for query", transactionId);
+            logger.info("Using transaction IDs: {} for query", transactionIds);
             
-            // Use provided category or default to GENERAL
-            PromptCategory category = request.getCategory() != null 
-                    ? request.getCategory() 
-                    : PromptCategory.GENERAL;
-
             // Use chat-aware analysis to support follow-up questions by chatId
-            AnalysisResult result = logAnalysisService.analyzeQueryWithChat(
-                    transactionId,
-                    request.getQuery(),
-                    category,
-                    request.getChatId());
+            AnalysisResult result = analyze(transactionIds, request);
 
             return ResponseEntity.ok(new QueryResponse(result.response(), result.chatId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new QueryResponse("Error: " + e.getMessage(), null));
+        } catch (LlmRejectedException e) {
+            return ResponseEntity.status(e.getStatus())
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new QueryResponse("Error: " + e.getMessage(), null));
         } catch (Exception e) {
             logger.error("Error processing query: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -107,26 +140,12 @@ public class QueryController {
     @PostMapping(value = "/query/markdown", produces = "text/markdown")
     public ResponseEntity<String> queryMarkdown(@RequestBody QueryRequest request) {
         try {
-            logger.info("Received Markdown query request: {} with category: {}", 
-                    request.getQuery(), request.getCategory());
-
-            // Try to resolve transaction ID from existing chat history if chatId is provided
-            String transactionId = null;
-            if (request.getChatId() != null && !request.getChatId().isBlank()) {
-                transactionId = logAnalysisService.resolveTransactionIdForChat(request.getChatId())
-                        .orElse(null);
-                if (transactionId != null) {
-                    logger.info("Resolved transaction ID {} from chatId {} for markdown query",
-                            transactionId, request.getChatId());
-                }
-            }
+            logger.info("Received Markdown query request: {} with category: {}, categories: {}",
+                    request.getQuery(), request.getCategory(), request.getCategories());
 
-            // If not found in history, extract transaction ID from the current query string
-            if (transactionId == null) {
-                transactionId = transactionIdExtractorService.extractTransactionId(request.getQuery());
-            }
+            List<String> transactionIds = resolveTransactionIds(request);
 
-            if (transactionId == null) {
+            if (transactionIds.isEmpty()) {
                 logger.warn("Could not resolve transaction ID from chat or query: {}", request.getQuery());
                 String errorMd =
                         "## Error\n\n" +
@@ -137,24 +156,24 @@ public class QueryController {
                         .body(errorMd);
             }
 
-            logger.info("Using transaction ID {} for Markdown query", transactionId);
-
-            // Use provided category or default to GENERAL
-            PromptCategory category = request.getCategory() != null
-                    ? request.getCategory()
-                    : PromptCategory.GENERAL;
+            logger.info("Using transaction IDs {} for Markdown query", transactionIds);
 
             // Call service method that returns plain text / markdown from OpenAI with chat history
-            AnalysisResult result = logAnalysisService.analyzeQueryWithChat(
-                    transactionId,
-                    request.getQuery(),
-                    category,
-                    request.getChatId());
+            AnalysisResult result = analyze(transactionIds, request);
             String markdownResponse = result.response();
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType("text/markdown"))
                     .body(markdownResponse);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.parseMediaType("text/markdown"))
+                    .body("## Error\n\n" + e.getMessage() + "\n");
+        } catch (LlmRejectedException e) {
+            return ResponseEntity.status(e.getStatus())
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .contentType(MediaType.parseMediaType("text/markdown"))
+                    .body("## Service Busy\n\n" + e.getMessage() + "\n");
         } catch (Exception e) {
             logger.error("Error processing Markdown query: {}", e.getMessage(), e);
             String errorMd =
@@ -166,6 +185,343 @@ public class QueryController {
         }
     }
 
+    /**
+     * Endpoint for querying log analysis with the answer streamed as Server-Sent Events.
+     * Emits a "chat" event carrying the chatId, then one "token" event per model token as it is
+     * produced, and finally a "done" event. Failures, including an unknown transaction, are reported
+     * as an "error" event. The full answer is persisted to the chat history once the stream has completed;
+     * a stream the client abandons or that times out is aborted, and nothing is persisted.
+     *
+     * @param request The query request containing query string and optional category
+     * @return SSE emitter producing the answer incrementally
+     */
+    @PostMapping(value = "/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter queryStream(@RequestBody QueryRequest request) {
+        logger.info("Received streaming query request: {} with category: {}",
+                request.getQuery(), request.getCategory());
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        StreamCancellation cancellation = new StreamCancellation();
+        // The client went away or the stream timed out: abort the analysis and the LLM stream behind it
+        emitter.onCompletion(cancellation::cancel);
+        emitter.onTimeout(cancellation::cancel);
+        emitter.onError(e -> cancellation.cancel());
+        try {
+            analysisStreamExecutor.execute(() -> streamAnalysis(request, emitter, cancellation));
+        } catch (TaskRejectedException e) {
+            logger.warn("Rejecting streaming query, all stream workers busy");
+            sendErrorAndComplete(emitter, "Error: Too many concurrent streaming queries, please retry shortly.");
+        }
+        return emitter;
+    }
+
+    /**
+     * Endpoint for submitting an asynchronous analysis job.
+     * Accepts the same request as {@code /api/query} plus an optional {@code callbackUrl}; returns
+     * 202 Accepted with the job ID immediately. Poll {@code GET /api/query/jobs/{jobId}} for the result,
+     * or receive the finished job as a POST to the callback URL.
+     *
+     * @param request The query request
+     * @return Response entity with the queued job
+     */
+    @PostMapping("/query/jobs")
+    public ResponseEntity<JobResponse> submitJob(@RequestBody QueryRequest request) {
+        try {
+            logger.info("Received analysis job request: {} with categories: {}",
+                    request.getQuery(), resolveCategories(request));
+
+            String transactionId = resolveTransactionId(request);
+            if (transactionId == null) {
+                logger.warn("Could not resolve transaction ID from chat or query: {}", request.getQuery());
+                return ResponseEntity.badRequest()
+                        .body(JobResponse.error("Error: Could not extract transaction ID from the query or existing chat context. Please include a transaction ID in the format TX######### (e.g., TX651750504)"));
+            }
+
+            AnalysisJobEntity job = analysisJobService.submit(transactionId, request.getQuery(),
+                    resolveCategories(request), request.getChatId(), request.getCallbackUrl());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/query/jobs/" + job.getId()))
+                    .body(JobResponse.of(job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(JobResponse.error("Error: " + e.getMessage()));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(JobResponse.error("Error: Too many queued analysis jobs, please retry shortly."));
+        } catch (Exception e) {
+            logger.error("Error submitting analysis job: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(JobResponse.error("Error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint for polling an asynchronous analysis job.
+     *
+     * @param jobId The job ID returned on submission
+     * @return Response entity with the job status and, once finished, its result or error
+     */
+    @GetMapping("/query/jobs/{jobId}")
+    public ResponseEntity<JobResponse> getJob(@PathVariable String jobId) {
+        return analysisJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(JobResponse.of(job)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(JobResponse.error("Error: Unknown job " + jobId)));
+    }
+
+    /**
+     * Endpoint for root cause analysis of many transactions at once.
+     * Streams newline-delimited JSON: one {@link BatchAnalysisResult} line per distinct transaction ID,
+     * written as soon as that transaction's analysis completes (so not in request order). Transactions
+     * that are unknown or have no logs get a line with {@code success=false}. Batch results are not
+     * recorded in any chat. A batch the client abandons or that times out is aborted: no further
+     * analyses are started and the running ones are cancelled.
+     *
+     * @param request The batch request
+     * @return Emitter producing one JSON line per transaction
+     */
+    @PostMapping(value = "/query/batch", produces = "application/x-ndjson")
+    public ResponseEntity<ResponseBodyEmitter> queryBatch(@RequestBody BatchQueryRequest request) {
+        int count = request.getTransactionIds() == null ? 0 : request.getTransactionIds().size();
+        logger.info("Received batch query request for {} transaction IDs with category: {}", count, request.getCategory());
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs);
+        StreamCancellation cancellation = new StreamCancellation();
+        // The client went away or the batch timed out: stop submitting and cancel the running analyses
+        emitter.onCompletion(cancellation::cancel);
+        emitter.onTimeout(cancellation::cancel);
+        emitter.onError(e -> cancellation.cancel());
+        if (count == 0 || count > batchAnalysisService.getMaxTransactions()) {
+            sendBatchErrorAndComplete(emitter, count == 0
+                    ? "Error: transactionIds must not be empty"
+                    : "Error: Too many transaction IDs (max " + batchAnalysisService.getMaxTransactions() + ")");
+            return ResponseEntity.badRequest().contentType(APPLICATION_NDJSON).body(emitter);
+        }
+
+        try {
+            analysisStreamExecutor.execute(() -> streamBatch(request, emitter, cancellation));
+        } catch (TaskRejectedException e) {
+            logger.warn("Rejecting batch query, all stream workers busy");
+            sendBatchErrorAndComplete(emitter, "Error: Too many concurrent streaming queries, please retry shortly.");
+        }
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(emitter);
+    }
+
+    private void streamBatch(BatchQueryRequest request, ResponseBodyEmitter emitter, StreamCancellation cancellation) {
+        if (!cancellation.start()) {
+            return;
+        }
+        try {
+            PromptCategory category = request.getCategory() != null
+                    ? request.getCategory()
+                    : PromptCategory.GENERAL;
+            String query = request.getQuery() == null || request.getQuery().isBlank()
+                    ? BatchQueryRequest.DEFAULT_QUERY
+                    : request.getQuery();
+
+            batchAnalysisService.analyzeBatch(request.getTransactionIds(), query, category, result -> {
+                try {
+                    sendBatchLine(emitter, result);
+                } catch (IOException e) {
+                    // Client went away; abort the rest of the batch
+                    logger.debug("Could not send batch result for {}: {}", result.transactionId(), e.getMessage());
+                    cancellation.cancel();
+                }
+            });
+            emitter.complete();
+        } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                logger.info("Batch query aborted, the client is gone: {}", e.getMessage());
+                return;
+            }
+            logger.error("Error processing batch query: {}", e.getMessage(), e);
+            sendBatchErrorAndComplete(emitter, "Error: " + e.getMessage());
+        } finally {
+            cancellation.finish();
+        }
+    }
+
+    private void sendBatchLine(ResponseBodyEmitter emitter, BatchAnalysisResult result) throws IOException {
+        String line = objectMapper.writeValueAsString(result) + "\n";
+        // Results arrive from several workers; keep each line in one piece
+        synchronized (emitter) {
+            emitter.send(line, APPLICATION_NDJSON);
+        }
+    }
+
+    private void sendBatchErrorAndComplete(ResponseBodyEmitter emitter, String message) {
+        try {
+            sendBatchLine(emitter, BatchAnalysisResult.failure(null, message));
+            emitter.complete();
+        } catch (Exception sendFailure) {
+            emitter.completeWithError(sendFailure);
+        }
+    }
+
+    private void streamAnalysis(QueryRequest request, SseEmitter emitter, StreamCancellation cancellation) {
+        if (!cancellation.start()) {
+            return;
+        }
+        try {
+            String transactionId = resolveTransactionId(request);
+            if (transactionId == null) {
+                logger.warn("Could not resolve transaction ID from chat or query: {}", request.getQuery());
+                sendErrorAndComplete(emitter, "Error: Could not extract transaction ID from the query or existing chat context. Please include a transaction ID in the format TX######### (e.g., TX651750504)");
+                return;
+            }
+
+            PromptCategory category = request.getCategory() != null
+                    ? request.getCategory()
+                    : PromptCategory.GENERAL;
+
+            // Generate the chatId up front so the client learns it before the first token
+            String chatId = (request.getChatId() == null || request.getChatId().isBlank())
+                    ? UUID.randomUUID().toString()
+                    : request.getChatId();
+            emitter.send(SseEmitter.event().name("chat").data(chatId));
+
+            logAnalysisService.analyzeQueryStreaming(transactionId, request.getQuery(), category, chatId, token -> {
+                try {
+                    emitter.send(SseEmitter.event().name("token").data(token));
+                } catch (IOException e) {
+                    // Client went away; abort the upstream stream
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            emitter.send(SseEmitter.event().name("done").data(chatId));
+            emitter.complete();
+        } catch (TransactionLogsUnavailableException e) {
+            logger.warn("Nothing to stream for query {}: {}", request.getQuery(), e.getMessage());
+            sendErrorAndComplete(emitter, e.getMessage());
+        } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                logger.info("Streaming query aborted, the client is gone: {}", e.getMessage());
+                return;
+            }
+            logger.error("Error processing streaming query: {}", e.getMessage(), e);
+            sendErrorAndComplete(emitter, "Error: " + e.getMessage());
+        } finally {
+            cancellation.finish();
+        }
+    }
+
+    /**
+     * Tracks the worker thread of a streamed analysis or batch so the emitter callbacks can abort it:
+     * interrupting the worker stops its wait for an LLM slot or for the next token, which cancels the
+     * upstream stream, or stops a batch from submitting further analyses and cancels the running ones.
+     */
+    private static final class StreamCancellation {
+
+        private Thread worker;
+        private boolean cancelled;
+
+        /**
+         * Registers the current thread as the worker.
+         *
+         * @return false if the stream was cancelled before the worker started
+         */
+        synchronized boolean start() {
+            if (cancelled) {
+                return false;
+            }
+            worker = Thread.currentThread();
+            return true;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Unregisters the worker, clearing an interrupt that raced with the end of the stream so it
+         * does not leak into the next task of the pooled thread.
+         */
+        void finish() {
+            synchronized (this) {
+                worker = null;
+            }
+            Thread.interrupted();
+        }
+    }
+
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message));
+            emitter.complete();
+        } catch (Exception sendFailure) {
+            emitter.completeWithError(sendFailure);
+        }
+    }
+
+    /**
+     * Runs the chat-aware analysis for the request's categories: a single category (GENERAL when
+     * none is given) is analyzed directly, several are analyzed concurrently into one combined document.
+     * A question about several transactions is answered with one prompt holding the logs of all of them.
+     *
+     * @param transactionIds The resolved transaction IDs
+     * @param request The query request
+     * @return The analysis result and the effective chatId
+     */
+    private AnalysisResult analyze(List<String> transactionIds, QueryRequest request) {
+        return logAnalysisService.analyze(transactionIds, request.getQuery(), resolveCategories(request), request.getChatId());
+    }
+
+    /**
+     * @return The distinct categories of the request in the given order: the categories list if present,
+     *         otherwise the single category, otherwise GENERAL
+     */
+    private List<PromptCategory> resolveCategories(QueryRequest request) {
+        if (request.getCategories() != null && !request.getCategories().isEmpty()) {
+            List<PromptCategory> categories = request.getCategories().stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .toList();
+            if (!categories.isEmpty()) {
+                return categories;
+            }
+        }
+        return List.of(request.getCategory() != null ? request.getCategory() : PromptCategory.GENERAL);
+    }
+
+    /**
+     * Resolves the transaction ID for a request: the first of {@link #resolveTransactionIds}.
+     *
+     * @param request The query request
+     * @return The transaction ID, or null if none could be resolved
+     */
+    private String resolveTransactionId(QueryRequest request) {
+        List<String> transactionIds = resolveTransactionIds(request);
+        return transactionIds.isEmpty() ? null : transactionIds.get(0);
+    }
+
+    /**
+     * Resolves the transaction IDs for a request: from the existing chat history when a chatId is
+     * provided, otherwise all IDs extracted from the query string, highest ranked first.
+     *
+     * @param request The query request
+     * @return The transaction IDs; empty if none could be resolved
+     */
+    private List<String> resolveTransactionIds(QueryRequest request) {
+        // Try to resolve transaction ID from existing chat history if chatId is provided
+        if (request.getChatId() != null && !request.getChatId().isBlank()) {
+            Optional<String> transactionId = logAnalysisService.resolveTransactionIdForChat(request.getChatId());
+            if (transactionId.isPresent()) {
+                logger.info("Resolved transaction ID {} from chatId {}", transactionId.get(), request.getChatId());
+                return List.of(transactionId.get());
+            }
+        }
+
+        // If not found in history, extract transaction IDs from the current query string
+        return transactionIdExtractorService.extractTransactionIds(request.getQuery());
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Service is running");
@@ -183,12 +539,23 @@ public class QueryController {
          */
         private PromptCategory category;
 
+        /**
+         * Optional list of prompt categories. When it holds more than one category, all of them are
+         * analyzed concurrently and returned as one combined document; takes precedence over category.
+         */
+        private List<PromptCategory> categories;
+
         /**
          * Optional chat identifier. When provided, the last few messages for this chatId
          * will be used as context for the new query. When not provided, a new chatId is created.
          */
         private String chatId;
 
+        /**
+         * Optional URL the finished job is POSTed to; only used by {@code /api/query/jobs}.
+         */
+        private String callbackUrl;
+
         /**
          * Gets the query string.
          *
@@ -225,6 +592,24 @@ public class QueryController {
             this.category = category;
         }
 
+        /**
+         * Gets the prompt categories.
+         *
+         * @return The prompt categories, or null to use the single category
+         */
+        public List<PromptCategory> getCategories() {
+            return categories;
+        }
+
+        /**
+         * Sets the prompt categories.
+         *
+         * @param categories The prompt categories
+         */
+        public void setCategories(List<PromptCategory> categories) {
+            this.categories = categories;
+        }
+
         /**
          * Gets the chat identifier.
          *
@@ -242,6 +627,70 @@ public class QueryController {
         public void setChatId(String chatId) {
             this.chatId = chatId;
         }
+
+        /**
+         * Gets the callback URL.
+         *
+         * @return The callback URL, or null for no callback
+         */
+        public String getCallbackUrl() {
+            return callbackUrl;
+        }
+
+        /**
+         * Sets the callback URL.
+         *
+         * @param callbackUrl The callback URL
+         */
+        public void setCallbackUrl(String callbackUrl) {
+            this.callbackUrl = callbackUrl;
+        }
+    }
+
+    /**
+     * Request DTO for the batch endpoint.
+     */
+    public static class BatchQueryRequest {
+        static final String DEFAULT_QUERY = "Explain the root cause of the failure in this transaction.";
+
+        /**
+         * Transaction IDs to analyze; duplicates are analyzed once.
+         */
+        private List<String> transactionIds;
+
+        /**
+         * Optional query applied to every transaction. Defaults to a root cause question.
+         */
+        private String query;
+
+        /**
+         * Optional prompt category. Defaults to GENERAL if not provided.
+         */
+        private PromptCategory category;
+
+        public List<String> getTransactionIds() {
+            return transactionIds;
+        }
+
+        public void setTransactionIds(List<String> transactionIds) {
+            this.transactionIds = transactionIds;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public void setQuery(String query) {
+            this.query = query;
+        }
+
+        public PromptCategory getCategory() {
+            return category;
+        }
+
+        public void setCategory(PromptCategory category) {
+            this.category = category;
+        }
     }
 
     public static class QueryResponse {
@@ -269,5 +718,29 @@ public class QueryController {
             this.chatId = chatId;
         }
     }
-}
 
+    /**
+     * Response DTO for the analysis job endpoints.
+     *
+     * @param jobId The job ID, or null if the job could not be created
+     * @param status The job status
+     * @param transactionId The analyzed transaction ID
+     * @param chatId The chat the analysis is recorded in, once known
+     * @param response The analysis, once the job has succeeded
+     * @param error The error message, if the job or the request failed
+     * @param createdAt When the job was submitted
+     * @param completedAt When the job finished
+     */
+    public record JobResponse(String jobId, AnalysisJobStatus status, String transactionId, String chatId,
+                              String response, String error, LocalDateTime createdAt, LocalDateTime completedAt) {
+
+        static JobResponse of(AnalysisJobEntity job) {
+            return new JobResponse(job.getId(), job.getStatus(), job.getTransactionId(), job.getChatId(),
+                    job.getResult(), job.getError(), job.getCreatedAt(), job.getCompletedAt());
+        }
+
+        static JobResponse error(String error) {
+            return new JobResponse(null, null, null, null, null, error, null, null);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.loganalyser.document;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
@@ -38,19 +39,51 @@ public class LogDocument {
     @Field(type = FieldType.Date, name = "timestamp")
     private LocalDate timestamp;
 
-    @Field(type = FieldType.Integer, name = "line_number")
-    private Integer lineNumber;
+    @Field(type = FieldType.Long, name = "line_number")
+    private Long lineNumber;
+
+    // Identity of the file the line was read from (see LogIndexingService#sourceIdFor)
+    @Field(type = FieldType.Keyword, name = "source_id")
+    private String sourceId;
+
+    // Byte offset of the start of the line within its source
+    @Field(type = FieldType.Long, name = "byte_offset")
+    private Long byteOffset;
+
+    // Sortable key ordering lines across all sources: event time, then source, then offset
+    @Field(type = FieldType.Keyword, name = "ordering_key")
+    private String orderingKey;
+
+    // Full event time parsed from the line; only used while indexing to build the ordering key
+    @Transient
+    private LocalDateTime eventTime;
 
     // Constructors
     public LogDocument() {
     }
 
-    public LogDocument(String logLine, String transactionId, Integer lineNumber) {
+    public LogDocument(String logLine, String transactionId, Long lineNumber) {
         this.logLine = logLine;
         this.transactionId = transactionId;
         this.lineNumber = lineNumber;
     }
 
+    /**
+     * Builds the deterministic document ID for a line, so that re-indexing the same
+     * source overwrites existing documents instead of duplicating them.
+     */
+    public static String documentId(String sourceId, long byteOffset) {
+        return sourceId + "-" + byteOffset;
+    }
+
+    /**
+     * Builds the global ordering key for a line. The zero-padded components make the
+     * lexicographic order of the keys equal to (event time, source, offset) order.
+     */
+    public static String orderingKey(long eventTimeMillis, String sourceId, long byteOffset) {
+        return String.format("%013d-%s-%019d", eventTimeMillis, sourceId, byteOffset);
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
@@ -124,12 +157,44 @@ public class LogDocument {
         this.timestamp = timestamp;
     }
 
-    public Integer getLineNumber() {
+    public Long getLineNumber() {
         return lineNumber;
     }
 
-    public void setLineNumber(Integer lineNumber) {
+    public void setLineNumber(Long lineNumber) {
         this.lineNumber = lineNumber;
     }
+
+    public String getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(String sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public Long getByteOffset() {
+        return byteOffset;
+    }
+
+    public void setByteOffset(Long byteOffset) {
+        this.byteOffset = byteOffset;
+    }
+
+    public String getOrderingKey() {
+        return orderingKey;
+    }
+
+    public void setOrderingKey(String orderingKey) {
+        this.orderingKey = orderingKey;
+    }
+
+    public LocalDateTime getEventTime() {
+        return eventTime;
+    }
+
+    public void setEventTime(LocalDateTime eventTime) {
+        this.eventTime = eventTime;
+    }
 }
 
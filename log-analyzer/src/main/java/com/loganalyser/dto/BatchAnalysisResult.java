@@ -0,0 +1,20 @@
+package com.loganalyser.dto;
+
+/**
+ * Result of analyzing one transaction of a batch; streamed to the client as one NDJSON line.
+ *
+ * @param transactionId The transaction ID
+ * @param success Whether the transaction was analyzed
+ * @param response The analysis / RCA text, if successful
+ * @param error Why the transaction could not be analyzed, otherwise
+ */
+public record BatchAnalysisResult(String transactionId, boolean success, String response, String error) {
+
+    public static BatchAnalysisResult success(String transactionId, String response) {
+        return new BatchAnalysisResult(transactionId, true, response, null);
+    }
+
+    public static BatchAnalysisResult failure(String transactionId, String error) {
+        return new BatchAnalysisResult(transactionId, false, null, error);
+    }
+}
@@ -0,0 +1,26 @@
+package com.loganalyser.dto;
+
+/**
+ * A known failure signature, bound from {@code analysis.signatures.rules.<name>.*}.
+ *
+ * @param pattern Regular expression matched (case-insensitively) against each selected log line;
+ *                must not use numbered back-references, as all rules are compiled into one pattern
+ * @param title Short name of the failure, used as heading of the templated RCA
+ * @param rootCause Root cause explanation of the templated RCA
+ * @param remediation Suggested fix of the templated RCA
+ * @param confidence How reliably a match identifies the root cause, from 0 to 1; defaults to 0.5
+ */
+public record FailureSignature(String pattern, String title, String rootCause, String remediation, Double confidence) {
+
+    public FailureSignature {
+        if (pattern == null || pattern.isBlank()) {
+            throw new IllegalArgumentException("Pattern cannot be blank");
+        }
+        if (title == null || title.isBlank()) {
+            throw new IllegalArgumentException("Title cannot be blank");
+        }
+        if (confidence == null) {
+            confidence = 0.5;
+        }
+    }
+}
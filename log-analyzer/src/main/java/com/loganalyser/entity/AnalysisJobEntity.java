@@ -0,0 +1,179 @@
+package com.loganalyser.entity;
+
+import com.loganalyser.enums.AnalysisJobStatus;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing an asynchronous analysis job submitted through {@code /api/query/jobs}.
+ * Holds the request, its lifecycle timestamps and, once finished, the result or error.
+ */
+@Entity
+@Table(name = "analysis_job")
+public class AnalysisJobEntity {
+
+    /**
+     * Job identifier returned to the client (UUID).
+     */
+    @Id
+    @Column(name = "id", nullable = false)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private AnalysisJobStatus status;
+
+    @Lob
+    @Column(name = "query", nullable = false)
+    private String query;
+
+    /**
+     * Comma-separated prompt categories.
+     */
+    @Column(name = "categories", nullable = false)
+    private String categories;
+
+    @Column(name = "transaction_id", nullable = false)
+    private String transactionId;
+
+    /**
+     * Chat identifier supplied with the request, or the one the analysis created.
+     */
+    @Column(name = "chat_id")
+    private String chatId;
+
+    /**
+     * Optional URL notified with the job once it has finished.
+     */
+    @Column(name = "callback_url")
+    private String callbackUrl;
+
+    /**
+     * Outcome of the callback, e.g. "DELIVERED" or "FAILED: ..."; null when there is no callback.
+     */
+    @Column(name = "callback_status")
+    private String callbackStatus;
+
+    @Lob
+    @Column(name = "result")
+    private String result;
+
+    @Column(name = "error")
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Getters and setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public AnalysisJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AnalysisJobStatus status) {
+        this.status = status;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public String getCategories() {
+        return categories;
+    }
+
+    public void setCategories(String categories) {
+        this.categories = categories;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(String transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public void setChatId(String chatId) {
+        this.chatId = chatId;
+    }
+
+    public String getCallbackUrl() {
+        return callbackUrl;
+    }
+
+    public void setCallbackUrl(String callbackUrl) {
+        this.callbackUrl = callbackUrl;
+    }
+
+    public String getCallbackStatus() {
+        return callbackStatus;
+    }
+
+    public void setCallbackStatus(String callbackStatus) {
+        this.callbackStatus = callbackStatus;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+}
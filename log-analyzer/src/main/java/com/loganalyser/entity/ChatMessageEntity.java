@@ -16,8 +16,11 @@ import java.time.LocalDateTime;
 @Table(name = "chat_message")
 public class ChatMessageEntity {
 
+    /**
+     * Assigned from {@code chat_message_seq} by {@code ChatMessageWriter} before the message is stored.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
     private Long id;
 
     /**
@@ -0,0 +1,68 @@
+package com.loganalyser.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rolling summary of the earlier part of a chat conversation. It stands in for the messages it covers
+ * when the chat history is sent to the LLM, so prompts stay small however long the chat runs.
+ */
+@Entity
+@Table(name = "chat_summary")
+public class ChatSummaryEntity {
+
+    /**
+     * Logical chat identifier supplied by the client.
+     */
+    @Id
+    @Column(name = "chat_id", nullable = false)
+    private String chatId;
+
+    @Lob
+    @Column(name = "summary", nullable = false)
+    private String summary;
+
+    /**
+     * ID of the last chat message folded into the summary; later messages are not covered.
+     */
+    @Column(name = "summarized_through_id", nullable = false)
+    private Long summarizedThroughId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Getters and setters
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public void setChatId(String chatId) {
+        this.chatId = chatId;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public Long getSummarizedThroughId() {
+        return summarizedThroughId;
+    }
+
+    public void setSummarizedThroughId(Long summarizedThroughId) {
+        this.summarizedThroughId = summarizedThroughId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,26 @@
+package com.loganalyser.enums;
+
+/**
+ * Lifecycle states of an asynchronous analysis job.
+ */
+public enum AnalysisJobStatus {
+    /**
+     * Accepted and waiting for a worker.
+     */
+    QUEUED,
+
+    /**
+     * Being analyzed.
+     */
+    RUNNING,
+
+    /**
+     * Finished with a result.
+     */
+    SUCCEEDED,
+
+    /**
+     * Finished with an error.
+     */
+    FAILED
+}
@@ -12,29 +12,42 @@ public enum PromptCategory {
      * Developer Root Cause Analysis category.
      * Uses SRE/Backend Engineer persona for technical log analysis.
      */
-    DEVELOPER_RCA,
+    DEVELOPER_RCA("Developer Root Cause Analysis"),
     
     /**
      * General log analysis category.
      * Uses basic log analysis assistant persona.
      */
-    GENERAL,
+    GENERAL("General Log Analysis"),
     
     /**
      * Performance analysis category.
      * Focuses on performance bottlenecks and optimization.
      */
-    PERFORMANCE_ANALYSIS,
+    PERFORMANCE_ANALYSIS("Performance Analysis"),
     
     /**
      * Security analysis category.
      * Focuses on security vulnerabilities and threats.
      */
-    SECURITY_ANALYSIS,
+    SECURITY_ANALYSIS("Security Analysis"),
     
     /**
      * Business impact analysis category.
      * Focuses on business metrics and user impact.
      */
-    BUSINESS_IMPACT
+    BUSINESS_IMPACT("Business Impact Analysis");
+
+    private final String displayName;
+
+    PromptCategory(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return Human-readable name, used e.g. as section heading in combined analyses
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package com.loganalyser.ingest;
+
+import com.loganalyser.document.LogDocument;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Log line parser for a format compiled from a grok-style pattern by {@link GrokPatternCompiler}.
+ * Matching executes the precompiled literal-anchor plan in a single left-to-right pass over the
+ * line, without regular expressions.
+ */
+public final class GrokLogLineParser implements LogLineParser {
+
+    /**
+     * Value types that can appear in a pattern.
+     */
+    enum Type {
+        TIMESTAMP, WORD, ID, INT, UUID, NOTSPACE, DATA, GREEDYDATA
+    }
+
+    enum StepKind {
+        LITERAL, WHITESPACE, CAPTURE
+    }
+
+    /**
+     * One step of the plan: match a literal, skip whitespace or match (and optionally capture) a typed value.
+     * For {@code DATA} captures, {@code text} holds the literal that terminates the value.
+     */
+    record Step(StepKind kind, String text, Type type, String field) {
+
+        static Step literal(String text) {
+            return new Step(StepKind.LITERAL, text, null, null);
+        }
+
+        static Step whitespace() {
+            return new Step(StepKind.WHITESPACE, null, null, null);
+        }
+
+        static Step capture(Type type, String field, String terminator) {
+            return new Step(StepKind.CAPTURE, terminator, type, field);
+        }
+    }
+
+    /**
+     * A run of steps matched consecutively. A searched segment starts with a literal anchor that is
+     * located with {@code indexOf} instead of being compared at the current position.
+     */
+    record Segment(boolean searched, List<Step> steps) {
+    }
+
+    private final String name;
+    private final String pattern;
+    private final List<Segment> segments;
+    private final int maxSteps;
+
+    GrokLogLineParser(String name, String pattern, List<Segment> segments) {
+        this.name = name;
+        this.pattern = pattern;
+        this.segments = segments;
+        this.maxSteps = segments.stream().mapToInt(segment -> segment.steps().size()).max().orElse(0);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return The pattern this parser was compiled from
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public LogDocument parse(String line) {
+        LogDocument doc = new LogDocument();
+        doc.setLogLine(line);
+
+        // Captured values of the segment being matched; only applied once the whole segment matches
+        String[] captured = new String[maxSteps];
+        int pos = 0;
+
+        for (Segment segment : segments) {
+            List<Step> steps = segment.steps();
+            if (!segment.searched()) {
+                int end = matchSteps(steps, 0, line, pos, captured);
+                if (end >= 0) {
+                    apply(steps, captured, doc);
+                    pos = end;
+                }
+                continue;
+            }
+
+            String anchor = steps.get(0).text();
+            int from = pos;
+            while (true) {
+                int anchorAt = line.indexOf(anchor, from);
+                if (anchorAt < 0) {
+                    // Optional segment not present in this line
+                    break;
+                }
+                int end = matchSteps(steps, 1, line, anchorAt + anchor.length(), captured);
+                if (end >= 0) {
+                    apply(steps, captured, doc);
+                    pos = end;
+                    break;
+                }
+                from = anchorAt + 1;
+            }
+        }
+        return doc;
+    }
+
+    private int matchSteps(List<Step> steps, int first, String line, int pos, String[] captured) {
+        Arrays.fill(captured, 0, first, null);
+        for (int i = first; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            captured[i] = null;
+            switch (step.kind()) {
+                case LITERAL -> {
+                    if (!line.startsWith(step.text(), pos)) {
+                        return -1;
+                    }
+                    pos += step.text().length();
+                }
+                case WHITESPACE -> {
+                    while (pos < line.length() && (line.charAt(pos) == ' ' || line.charAt(pos) == '\t')) {
+                        pos++;
+                    }
+                }
+                case CAPTURE -> {
+                    int end = scan(step, line, pos);
+                    if (end < 0) {
+                        return -1;
+                    }
+                    if (step.field() != null) {
+                        captured[i] = line.substring(pos, end);
+                    }
+                    pos = end;
+                }
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * @return The end index of the value of the step's type starting at {@code pos}, or -1 if there is none
+     */
+    private static int scan(Step step, String line, int pos) {
+        int length = line.length();
+        int end = pos;
+        switch (step.type()) {
+            case TIMESTAMP -> {
+                return isTimestampAt(line, pos) ? pos + 23 : -1;
+            }
+            case WORD -> {
+                while (end < length && isWordChar(line.charAt(end))) {
+                    end++;
+                }
+            }
+            case ID -> {
+                while (end < length && (isWordChar(line.charAt(end)) || line.charAt(end) == '-')) {
+                    end++;
+                }
+            }
+            case INT -> {
+                while (end < length && isDigit(line.charAt(end))) {
+                    end++;
+                }
+            }
+            case UUID -> {
+                return isUuidAt(line, pos) ? pos + 36 : -1;
+            }
+            case NOTSPACE -> {
+                while (end < length && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+            }
+            case DATA -> {
+                return step.text() == null ? length : line.indexOf(step.text(), pos);
+            }
+            case GREEDYDATA -> {
+                return length;
+            }
+        }
+        return end > pos ? end : -1;
+    }
+
+    private static void apply(List<Step> steps, String[] captured, LogDocument doc) {
+        for (int i = 0; i < steps.size(); i++) {
+            String value = captured[i];
+            if (value == null) {
+                continue;
+            }
+            switch (steps.get(i).field()) {
+                case "timestamp" -> {
+                    LocalDateTime timestamp = toTimestamp(value);
+                    if (timestamp != null) {
+                        doc.setTimestamp(timestamp.toLocalDate());
+                        doc.setEventTime(timestamp);
+                    }
+                }
+                case "level" -> doc.setLogLevel(value);
+                case "service" -> doc.setService(value);
+                case "transactionId" -> doc.setTransactionId(value);
+                case "uuid" -> doc.setUuid(value);
+                case "clientTxnId" -> doc.setClientTxnId(value);
+                case "userId" -> doc.setUserId(value);
+                default -> throw new IllegalStateException("Unsupported field: " + steps.get(i).field());
+            }
+        }
+    }
+
+    // yyyy-MM-dd HH:mm:ss.SSS
+    private static boolean isTimestampAt(String line, int pos) {
+        if (pos + 23 > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < 23; i++) {
+            char c = line.charAt(pos + i);
+            boolean ok = switch (i) {
+                case 4, 7 -> c == '-';
+                case 10 -> c == ' ';
+                case 13, 16 -> c == ':';
+                case 19 -> c == '.';
+                default -> isDigit(c);
+            };
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static LocalDateTime toTimestamp(String value) {
+        try {
+            return LocalDateTime.of(
+                    number(value, 0, 4), number(value, 5, 7), number(value, 8, 10),
+                    number(value, 11, 13), number(value, 14, 16), number(value, 17, 19),
+                    number(value, 20, 23) * 1_000_000);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int number(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            result = result * 10 + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    // 8-4-4-4-12 hex digits
+    private static boolean isUuidAt(String line, int pos) {
+        if (pos + 36 > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = line.charAt(pos + i);
+            boolean ok = (i == 8 || i == 13 || i == 18 || i == 23)
+                    ? c == '-'
+                    : isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
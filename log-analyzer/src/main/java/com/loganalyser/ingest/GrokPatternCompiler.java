@@ -0,0 +1,160 @@
+package com.loganalyser.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Compiles grok-style log format patterns into {@link GrokLogLineParser}s.
+ * <p>
+ * A pattern is literal text interleaved with captures:
+ * <pre>
+ * %{TIMESTAMP:timestamp} [%{WORD:level}] [%{DATA:service}]%{DATA}TX_ID: %{ID:transactionId}%{GREEDYDATA}
+ * </pre>
+ * {@code %{TYPE:field}} stores the matched value in a {@link com.loganalyser.document.LogDocument} field,
+ * {@code %{TYPE}} matches without storing. Supported types:
+ * <ul>
+ *   <li>{@code TIMESTAMP} - {@code yyyy-MM-dd HH:mm:ss.SSS}</li>
+ *   <li>{@code WORD} - letters, digits and underscore</li>
+ *   <li>{@code ID} - letters, digits, underscore and dash</li>
+ *   <li>{@code INT} - digits</li>
+ *   <li>{@code UUID} - 36 hex digits and dashes</li>
+ *   <li>{@code NOTSPACE} - everything up to the next whitespace</li>
+ *   <li>{@code DATA} - everything up to the next literal</li>
+ *   <li>{@code GREEDYDATA} - the rest of the line</li>
+ * </ul>
+ * Supported fields are {@code timestamp}, {@code level}, {@code service}, {@code transactionId},
+ * {@code uuid}, {@code clientTxnId} and {@code userId}.
+ * <p>
+ * The pattern is compiled into a literal-anchor plan instead of a regex. Matching walks the line
+ * once, left to right: fixed-position literals are compared in place, and an uncaptured
+ * {@code %{DATA}} turns the literal after it into an anchor that is located with a plain
+ * {@code indexOf}. Each anchor starts an optional segment: when its anchor (or anything after it
+ * up to the next anchor) does not match, that segment is skipped and matching continues with the
+ * next one from the same position, so lines that lack e.g. a {@code TX_ID:} still yield their other
+ * fields. Whitespace at the end of a literal matches any run of spaces or tabs, including none.
+ */
+public final class GrokPatternCompiler {
+
+    static final Set<String> FIELDS = Set.of(
+            "timestamp", "level", "service", "transactionId", "uuid", "clientTxnId", "userId");
+
+    private GrokPatternCompiler() {
+    }
+
+    /**
+     * Compiles a pattern.
+     *
+     * @param name    The parser name the compiled format is registered under
+     * @param pattern The grok-style pattern
+     * @return The compiled parser
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public static GrokLogLineParser compile(String name, String pattern) {
+        List<Token> tokens = tokenize(pattern);
+
+        List<GrokLogLineParser.Segment> segments = new ArrayList<>();
+        List<GrokLogLineParser.Step> steps = new ArrayList<>();
+        boolean searched = false;
+
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.literal() != null) {
+                String text = token.literal();
+                String trimmed = text.stripTrailing();
+                if (searched && steps.isEmpty() && trimmed.isEmpty()) {
+                    throw new IllegalArgumentException("Anchor after %{DATA} must not be blank in pattern: " + pattern);
+                }
+                if (!trimmed.isEmpty()) {
+                    steps.add(GrokLogLineParser.Step.literal(trimmed));
+                }
+                if (trimmed.length() < text.length()) {
+                    steps.add(GrokLogLineParser.Step.whitespace());
+                }
+                continue;
+            }
+
+            GrokLogLineParser.Type type = token.type();
+            boolean skip = token.field() == null
+                    && (type == GrokLogLineParser.Type.DATA || type == GrokLogLineParser.Type.GREEDYDATA);
+            if (skip) {
+                // Everything after an uncaptured DATA is located by searching for the next literal
+                if (!steps.isEmpty()) {
+                    segments.add(new GrokLogLineParser.Segment(searched, List.copyOf(steps)));
+                    steps.clear();
+                }
+                if (type == GrokLogLineParser.Type.GREEDYDATA && i != tokens.size() - 1) {
+                    throw new IllegalArgumentException("%{GREEDYDATA} must be the last element of pattern: " + pattern);
+                }
+                searched = true;
+                if (i + 1 < tokens.size() && tokens.get(i + 1).literal() == null) {
+                    throw new IllegalArgumentException("%{DATA} must be followed by a literal in pattern: " + pattern);
+                }
+                continue;
+            }
+
+            String terminator = null;
+            if (type == GrokLogLineParser.Type.DATA && i + 1 < tokens.size()) {
+                Token next = tokens.get(i + 1);
+                if (next.literal() == null) {
+                    throw new IllegalArgumentException("%{DATA:" + token.field() + "} must be followed by a literal in pattern: " + pattern);
+                }
+                terminator = next.literal().stripTrailing().isEmpty() ? next.literal() : next.literal().stripTrailing();
+            }
+            steps.add(GrokLogLineParser.Step.capture(type, token.field(), terminator));
+        }
+        if (!steps.isEmpty()) {
+            segments.add(new GrokLogLineParser.Segment(searched, List.copyOf(steps)));
+        }
+
+        return new GrokLogLineParser(name, pattern, segments);
+    }
+
+    private static List<Token> tokenize(String pattern) {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < pattern.length()) {
+            if (pattern.startsWith("%{", pos)) {
+                int end = pattern.indexOf('}', pos);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated %{ in pattern: " + pattern);
+                }
+                if (literal.length() > 0) {
+                    tokens.add(new Token(literal.toString(), null, null));
+                    literal.setLength(0);
+                }
+                tokens.add(parseCapture(pattern.substring(pos + 2, end), pattern));
+                pos = end + 1;
+            } else {
+                literal.append(pattern.charAt(pos++));
+            }
+        }
+        if (literal.length() > 0) {
+            tokens.add(new Token(literal.toString(), null, null));
+        }
+        return tokens;
+    }
+
+    private static Token parseCapture(String spec, String pattern) {
+        int colon = spec.indexOf(':');
+        String typeName = colon < 0 ? spec : spec.substring(0, colon);
+        String field = colon < 0 ? null : spec.substring(colon + 1);
+
+        GrokLogLineParser.Type type;
+        try {
+            type = GrokLogLineParser.Type.valueOf(typeName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown type '" + typeName + "' in pattern: " + pattern);
+        }
+        if (field != null && !FIELDS.contains(field)) {
+            throw new IllegalArgumentException("Unknown field '" + field + "' in pattern: " + pattern
+                    + ", supported fields: " + FIELDS);
+        }
+        return new Token(null, type, field);
+    }
+
+    private record Token(String literal, GrokLogLineParser.Type type, String field) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.loganalyser.ingest;
+
+/**
+ * Thrown when the ingestion pipeline is saturated and a pushed batch cannot be accepted right now.
+ * Carries the delay after which the client should retry.
+ */
+public class IngestBackpressureException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public IngestBackpressureException(int retryAfterSeconds) {
+        super("Log ingestion is saturated, retry after " + retryAfterSeconds + "s");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,116 @@
+package com.loganalyser.ingest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.loganalyser.document.LogDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+
+/**
+ * Parser for JSON logs (one object per line), e.g.
+ * {@code {"@timestamp":"2025-12-08T10:15:30.123Z","level":"ERROR","service":"payment-service","tx_id":"TX651750504",...}}
+ * <p>
+ * Uses the Jackson streaming API: top-level fields are matched by name as tokens go by and
+ * nested objects/arrays are skipped, so no tree is ever built for the line.
+ * Lines that are not valid JSON are still indexed with their raw content.
+ */
+@Component
+public class JsonLogLineParser implements LogLineParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonLogLineParser.class);
+
+    public static final String NAME = "json";
+
+    // Accepts "2025-12-08T10:15:30.123Z", "2025-12-08T10:15:30.123+05:30" and "2025-12-08 10:15:30.123"
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .optionalStart().appendOffsetId().optionalEnd()
+            .toFormatter(Locale.ROOT);
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public LogDocument parse(String line) {
+        LogDocument doc = new LogDocument();
+        doc.setLogLine(line);
+
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return doc;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                applyField(doc, field, parser, value);
+            }
+        } catch (IOException e) {
+            logger.debug("Could not parse JSON log line, indexing raw content: {}", line);
+        }
+        return doc;
+    }
+
+    private void applyField(LogDocument doc, String field, JsonParser parser, JsonToken value) throws IOException {
+        switch (field) {
+            case "tx_id", "txId", "transaction_id", "transactionId" -> doc.setTransactionId(parser.getValueAsString());
+            case "uuid" -> doc.setUuid(parser.getValueAsString());
+            case "client_txn_id", "clientTxnId" -> doc.setClientTxnId(parser.getValueAsString());
+            case "user_id", "userId" -> doc.setUserId(parser.getValueAsString());
+            case "level", "log_level", "logLevel", "severity" ->
+                    doc.setLogLevel(parser.getValueAsString().toUpperCase(Locale.ROOT));
+            case "service", "service_name", "serviceName", "app" -> doc.setService(parser.getValueAsString());
+            case "timestamp", "@timestamp", "time", "ts" -> applyTimestamp(doc, parser, value);
+            default -> {
+                // Not an indexed field
+            }
+        }
+    }
+
+    private void applyTimestamp(LogDocument doc, JsonParser parser, JsonToken value) throws IOException {
+        LocalDateTime timestamp;
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            // Epoch milliseconds
+            timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(parser.getLongValue()), ZoneOffset.UTC);
+        } else {
+            try {
+                TemporalAccessor parsed = TIMESTAMP_FORMATTER.parseBest(parser.getValueAsString(),
+                        OffsetDateTime::from, LocalDateTime::from);
+                timestamp = parsed instanceof OffsetDateTime offsetDateTime
+                        ? offsetDateTime.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime()
+                        : (LocalDateTime) parsed;
+            } catch (DateTimeParseException e) {
+                logger.debug("Could not parse timestamp from JSON line: {}", parser.getValueAsString());
+                return;
+            }
+        }
+        doc.setTimestamp(timestamp.toLocalDate());
+        doc.setEventTime(timestamp);
+    }
+}
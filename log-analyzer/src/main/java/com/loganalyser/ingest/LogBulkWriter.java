@@ -0,0 +1,69 @@
+package com.loganalyser.ingest;
+
+import com.loganalyser.document.LogDocument;
+import com.loganalyser.service.ElasticsearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk-writer stage shared by all ingestion paths (file indexing and the HTTP ingest endpoint).
+ * Limits the number of bulk requests in flight to Elasticsearch; callers that cannot get a slot
+ * either wait (file indexing) or are rejected with {@link IngestBackpressureException} (HTTP ingest),
+ * so pushing shippers are slowed down instead of piling up requests in memory.
+ */
+@Component
+public class LogBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogBulkWriter.class);
+
+    private final ElasticsearchService elasticsearchService;
+    private final Semaphore inFlight;
+
+    @Value("${log.ingest.retry-after-seconds:5}")
+    private int retryAfterSeconds;
+
+    public LogBulkWriter(ElasticsearchService elasticsearchService,
+                         @Value("${log.ingest.max-in-flight-batches:8}") int maxInFlightBatches) {
+        this.elasticsearchService = elasticsearchService;
+        this.inFlight = new Semaphore(maxInFlightBatches);
+    }
+
+    /**
+     * Writes a batch, waiting as long as needed for a free slot.
+     *
+     * @param batch The documents to index
+     */
+    public void write(List<LogDocument> batch) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            elasticsearchService.indexLogs(batch);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Writes a batch if a slot frees up within the given wait.
+     *
+     * @param batch  The documents to index
+     * @param waitMs Maximum time to wait for a slot
+     * @throws IngestBackpressureException if no slot became available in time
+     */
+    public void tryWrite(List<LogDocument> batch, long waitMs) throws InterruptedException {
+        if (!inFlight.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+            logger.warn("Rejecting bulk write of {} log documents: all bulk slots busy", batch.size());
+            throw new IngestBackpressureException(retryAfterSeconds);
+        }
+        try {
+            elasticsearchService.indexLogs(batch);
+        } finally {
+            inFlight.release();
+        }
+    }
+}
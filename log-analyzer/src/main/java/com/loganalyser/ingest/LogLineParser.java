@@ -0,0 +1,28 @@
+package com.loganalyser.ingest;
+
+import com.loganalyser.document.LogDocument;
+
+/**
+ * SPI for turning a raw log line into a {@link LogDocument}.
+ * Implementations are selected per log source by {@link LogLineParserRegistry}.
+ * <p>
+ * Parsers must be stateless and thread-safe: the same instance is shared by all ingestion
+ * workers. They only depend on the line itself, so implementations can be instantiated
+ * directly and benchmarked side by side on the same input.
+ */
+public interface LogLineParser {
+
+    /**
+     * @return The name used to select this parser in configuration, e.g. "text" or "json"
+     */
+    String name();
+
+    /**
+     * Parses a single log line. The returned document holds the raw line and every field
+     * the parser could extract; line number, source and offset are filled in by the caller.
+     *
+     * @param line The raw log line
+     * @return The parsed document, or null to skip the line
+     */
+    LogDocument parse(String line);
+}
@@ -0,0 +1,117 @@
+package com.loganalyser.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds all {@link LogLineParser} implementations and selects one per log source.
+ * <p>
+ * Sources are mapped to parsers with {@code log.ingest.parser.sources}, a comma-separated
+ * list of {@code <file-name-glob>=<parser-name>} entries evaluated in order, e.g.
+ * {@code payments-*.log=json,*.ndjson.gz=json}. Sources that match no entry use
+ * {@code log.ingest.parser.default}.
+ * <p>
+ * Besides the built-in parsers, every {@code log.ingest.grok.<name>=<pattern>} property is compiled
+ * at startup by {@link GrokPatternCompiler} and registered as a parser named {@code <name>}.
+ */
+@Component
+public class LogLineParserRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogLineParserRegistry.class);
+
+    private final Map<String, LogLineParser> parsers = new HashMap<>();
+    private final List<SourceMapping> sourceMappings = new ArrayList<>();
+    private final LogLineParser defaultParser;
+
+    public LogLineParserRegistry(List<LogLineParser> parsers,
+                                 Environment environment,
+                                 @Value("${log.ingest.parser.default:text}") String defaultParserName,
+                                 @Value("${log.ingest.parser.sources:}") String sourceMappings) {
+        for (LogLineParser parser : parsers) {
+            this.parsers.put(parser.name(), parser);
+        }
+
+        Map<String, String> grokFormats = Binder.get(environment)
+                .bind("log.ingest.grok", Bindable.mapOf(String.class, String.class))
+                .orElse(Map.of());
+        for (Map.Entry<String, String> format : grokFormats.entrySet()) {
+            if (this.parsers.containsKey(format.getKey())) {
+                throw new IllegalArgumentException("Grok format name clashes with built-in parser: " + format.getKey());
+            }
+            GrokLogLineParser parser = GrokPatternCompiler.compile(format.getKey(), format.getValue());
+            this.parsers.put(parser.name(), parser);
+            logger.info("Compiled grok log format '{}': {}", parser.name(), parser.getPattern());
+        }
+        this.defaultParser = getParser(defaultParserName);
+
+        for (String entry : sourceMappings.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid log.ingest.parser.sources entry, expected <glob>=<parser>: " + entry);
+            }
+            String glob = entry.substring(0, separator).trim();
+            LogLineParser parser = getParser(entry.substring(separator + 1).trim());
+            this.sourceMappings.add(new SourceMapping(FileSystems.getDefault().getPathMatcher("glob:" + glob), parser));
+        }
+
+        logger.info("Registered log line parsers {} (default: {}, {} source mapping(s))",
+                this.parsers.keySet(), defaultParser.name(), this.sourceMappings.size());
+    }
+
+    /**
+     * Returns the parser registered under the given name.
+     *
+     * @param name The parser name
+     * @return The parser
+     * @throws IllegalArgumentException if no parser has that name
+     */
+    public LogLineParser getParser(String name) {
+        LogLineParser parser = parsers.get(name);
+        if (parser == null) {
+            throw new IllegalArgumentException("Unknown log line parser '" + name + "', available: " + parsers.keySet());
+        }
+        return parser;
+    }
+
+    /**
+     * Selects the parser for a log file based on its file name.
+     *
+     * @param source The log file
+     * @return The first mapped parser whose glob matches, or the default parser
+     */
+    public LogLineParser parserFor(Path source) {
+        Path fileName = source.getFileName();
+        for (SourceMapping mapping : sourceMappings) {
+            if (mapping.matcher().matches(fileName)) {
+                return mapping.parser();
+            }
+        }
+        return defaultParser;
+    }
+
+    /**
+     * @return The parser used for sources without an explicit mapping
+     */
+    public LogLineParser getDefaultParser() {
+        return defaultParser;
+    }
+
+    private record SourceMapping(PathMatcher matcher, LogLineParser parser) {
+    }
+}
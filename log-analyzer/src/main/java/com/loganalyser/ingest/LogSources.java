@@ -0,0 +1,110 @@
+package com.loganalyser.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Resolves the configured log location into concrete log files and opens them for reading.
+ * The location may be a single file, a directory (all regular files directly inside it)
+ * or a glob such as {@code /var/log/app/application.log*} or {@code logs/**}{@code /*.gz}.
+ * Files ending in {@code .gz} are decompressed on the fly while streaming.
+ */
+public final class LogSources {
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    private LogSources() {
+    }
+
+    /**
+     * Resolves a file path, directory or glob into the matching regular files, sorted by path.
+     *
+     * @param location The configured log location
+     * @return Matching files, empty if nothing matches
+     */
+    public static List<Path> resolve(String location) throws IOException {
+        int firstGlobChar = indexOfGlobChar(location);
+        if (firstGlobChar < 0) {
+            Path path = Paths.get(location);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    return files.filter(Files::isRegularFile).sorted().toList();
+                }
+            }
+            return Files.isRegularFile(path) ? List.of(path) : List.of();
+        }
+
+        // Walk from the deepest directory that contains no glob characters
+        int separator = Math.max(location.lastIndexOf('/', firstGlobChar), location.lastIndexOf('\\', firstGlobChar));
+        Path base = separator < 0 ? Paths.get(".") : Paths.get(location.substring(0, separator + 1));
+        String pattern = separator < 0 ? location : location.substring(separator + 1);
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(base.relativize(path)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * @return true if the file is gzip-compressed and offsets refer to the decompressed stream
+     */
+    public static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * Opens a log file for streaming, positioned at the given offset of its (decompressed) content.
+     *
+     * @param file   The log file
+     * @param offset Byte offset to start at; for compressed files the skipped prefix is still decompressed
+     * @return Stream positioned at {@code offset}
+     */
+    public static InputStream open(Path file, long offset) throws IOException {
+        if (!isCompressed(file)) {
+            InputStream in = Files.newInputStream(file);
+            skipFully(in, offset);
+            return in;
+        }
+        InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024), 64 * 1024);
+        skipFully(in, offset);
+        return in;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    return;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static int indexOfGlobChar(String location) {
+        for (int i = 0; i < location.length(); i++) {
+            if (GLOB_CHARS.indexOf(location.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
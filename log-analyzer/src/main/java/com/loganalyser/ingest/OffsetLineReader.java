@@ -0,0 +1,113 @@
+package com.loganalyser.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Line reader that tracks the byte offset at which each line starts.
+ * Unlike {@link java.io.BufferedReader} it works on raw bytes, so the offsets are exact
+ * and can be used as stable document identities and resume checkpoints.
+ * Lines are split on '\n'; a trailing '\r' is stripped and the content is decoded as UTF-8.
+ */
+public class OffsetLineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+
+    private byte[] lineBytes = new byte[512];
+    private int lineLength;
+
+    private long offset;
+    private long lineOffset;
+
+    /**
+     * @param in          The stream to read from
+     * @param startOffset The offset of the first byte of {@code in} within the source
+     */
+    public OffsetLineReader(InputStream in, long startOffset) {
+        this.in = in;
+        this.offset = startOffset;
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @return The line without its terminator, or null at end of stream
+     */
+    public String readLine() throws IOException {
+        lineLength = 0;
+        lineOffset = offset;
+        boolean readAny = false;
+
+        while (true) {
+            if (pos >= limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return readAny ? decodeLine() : null;
+                }
+            }
+            readAny = true;
+
+            int start = pos;
+            while (pos < limit && buffer[pos] != '\n') {
+                pos++;
+            }
+            append(start, pos - start);
+            offset += pos - start;
+
+            if (pos < limit) {
+                // Consume the '\n'
+                pos++;
+                offset++;
+                return decodeLine();
+            }
+        }
+    }
+
+    /**
+     * @return The byte offset at which the line last returned by {@link #readLine()} starts
+     */
+    public long getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * @return The byte offset just past the last line read
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void append(int start, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (lineLength + length > lineBytes.length) {
+            lineBytes = Arrays.copyOf(lineBytes, Math.max(lineBytes.length * 2, lineLength + length));
+        }
+        System.arraycopy(buffer, start, lineBytes, lineLength, length);
+        lineLength += length;
+    }
+
+    private String decodeLine() {
+        int length = lineLength;
+        if (length > 0 && lineBytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,107 @@
+package com.loganalyser.ingest;
+
+import com.loganalyser.document.LogDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parser for the bracketed text format:
+ * {@code 2025-12-08 10:15:30.123 [ERROR] [payment-service] ... TX_ID: TX651750504 UUID: ...}
+ */
+@Component
+public class TextLogLineParser implements LogLineParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(TextLogLineParser.class);
+
+    public static final String NAME = "text";
+
+    // Pattern to extract transaction ID, UUID, etc. from log line
+    private static final Pattern TX_ID_PATTERN = Pattern.compile("TX_ID:\\s*(TX\\d+)");
+    private static final Pattern UUID_PATTERN = Pattern.compile("UUID:\\s*([a-f0-9-]{36})");
+    private static final Pattern CLIENT_TXN_PATTERN = Pattern.compile("CLIENT_TXN_ID:\\s*(CLIENT_TXN_\\d+)");
+    private static final Pattern USER_ID_PATTERN = Pattern.compile("USER_ID:\\s*(USER_\\d+)");
+    private static final Pattern LOG_LEVEL_PATTERN = Pattern.compile("\\[(INFO|DEBUG|ERROR|WARN|FATAL)\\]");
+    private static final Pattern SERVICE_PATTERN = Pattern.compile("\\[(.*?)\\]");
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\.\\d{3})");
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * Parse a log line and extract information into LogDocument
+     */
+    @Override
+    public LogDocument parse(String logLine) {
+        LogDocument doc = new LogDocument();
+        doc.setLogLine(logLine);
+
+        // Extract timestamp
+        Matcher timestampMatcher = TIMESTAMP_PATTERN.matcher(logLine);
+        if (timestampMatcher.find()) {
+            try {
+                LocalDateTime timestamp = LocalDateTime.parse(timestampMatcher.group(1), TIMESTAMP_FORMATTER);
+                doc.setTimestamp(timestamp.toLocalDate());
+                doc.setEventTime(timestamp);
+            } catch (DateTimeParseException e) {
+                logger.debug("Could not parse timestamp from line: {}", logLine);
+            }
+        }
+
+        // Extract log level
+        Matcher levelMatcher = LOG_LEVEL_PATTERN.matcher(logLine);
+        if (levelMatcher.find()) {
+            doc.setLogLevel(levelMatcher.group(1));
+        }
+
+        // Extract service name (usually in brackets after log level)
+        Matcher serviceMatcher = SERVICE_PATTERN.matcher(logLine);
+        List<String> services = new ArrayList<>();
+        while (serviceMatcher.find() && services.size() < 2) {
+            String match = serviceMatcher.group(1);
+            if (!match.equals(doc.getLogLevel())) {
+                services.add(match);
+            }
+        }
+        if (!services.isEmpty()) {
+            doc.setService(services.get(0));
+        }
+
+        // Extract transaction ID
+        Matcher txIdMatcher = TX_ID_PATTERN.matcher(logLine);
+        if (txIdMatcher.find()) {
+            doc.setTransactionId(txIdMatcher.group(1));
+        }
+
+        // Extract UUID
+        Matcher uuidMatcher = UUID_PATTERN.matcher(logLine);
+        if (uuidMatcher.find()) {
+            doc.setUuid(uuidMatcher.group(1));
+        }
+
+        // Extract CLIENT_TXN_ID
+        Matcher clientTxnMatcher = CLIENT_TXN_PATTERN.matcher(logLine);
+        if (clientTxnMatcher.find()) {
+            doc.setClientTxnId(clientTxnMatcher.group(1));
+        }
+
+        // Extract USER_ID
+        Matcher userIdMatcher = USER_ID_PATTERN.matcher(logLine);
+        if (userIdMatcher.find()) {
+            doc.setUserId(userIdMatcher.group(1));
+        }
+
+        return doc;
+    }
+}
@@ -0,0 +1,46 @@
+package com.loganalyser.llm;
+
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.service.OpenAiService;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import retrofit2.http.Body;
+import retrofit2.http.POST;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Chat completions endpoint returning the full token usage.
+ * <p>
+ * The client library's {@code Usage} has no {@code prompt_tokens_details}, so the number of prompt tokens
+ * served from the provider's prefix cache would be dropped; this interface shares the library's Retrofit
+ * instance but maps the response to {@link ChatCompletionResponse}.
+ */
+public interface ChatCompletionApi {
+
+    @POST("/v1/chat/completions")
+    Single<ChatCompletionResponse> createChatCompletion(@Body ChatCompletionRequest request);
+
+    /**
+     * Runs a call of this API and waits for its result, mapping HTTP errors like
+     * {@link OpenAiService#execute}. The HTTP call runs on an I/O thread while the caller waits, so
+     * interrupting the caller cancels the call and closes its connection. Executed on the caller's own
+     * thread, the call would stay blocked in the socket read until the provider answers or the read
+     * timeout passes.
+     *
+     * @param call The call
+     * @return The result of the call
+     * @throws CancellationException if the calling thread is interrupted while waiting
+     */
+    static <T> T execute(Single<T> call) {
+        try {
+            return OpenAiService.execute(call.subscribeOn(Schedulers.io()));
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for the LLM");
+            }
+            throw e;
+        }
+    }
+}
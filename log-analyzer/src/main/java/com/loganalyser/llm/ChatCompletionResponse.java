@@ -0,0 +1,40 @@
+package com.loganalyser.llm;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.theokanning.openai.completion.chat.ChatCompletionChoice;
+
+import java.util.List;
+
+/**
+ * Response of {@link ChatCompletionApi}.
+ *
+ * @param choices The completion choices
+ * @param usage The token usage, or null if the provider did not report it
+ */
+public record ChatCompletionResponse(List<ChatCompletionChoice> choices, TokenUsage usage) {
+
+    /**
+     * Token usage of one completion.
+     *
+     * @param promptTokens Tokens of the prompt
+     * @param completionTokens Tokens of the completion
+     * @param promptTokensDetails Breakdown of the prompt tokens, or null
+     */
+    public record TokenUsage(@JsonProperty("prompt_tokens") long promptTokens,
+                             @JsonProperty("completion_tokens") long completionTokens,
+                             @JsonProperty("prompt_tokens_details") PromptTokensDetails promptTokensDetails) {
+
+        /**
+         * @return Prompt tokens served from the provider's prefix cache
+         */
+        public long cachedTokens() {
+            return promptTokensDetails != null ? promptTokensDetails.cachedTokens() : 0;
+        }
+    }
+
+    /**
+     * @param cachedTokens Prompt tokens served from the provider's prefix cache
+     */
+    public record PromptTokensDetails(@JsonProperty("cached_tokens") long cachedTokens) {
+    }
+}
@@ -0,0 +1,239 @@
+package com.loganalyser.llm;
+
+import com.theokanning.openai.OpenAiHttpException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import retrofit2.HttpException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker in front of the LLM provider.
+ * <p>
+ * While CLOSED, the outcomes of the last {@code llm.circuit-breaker.window-size} calls are kept; once at
+ * least {@code llm.circuit-breaker.min-calls} of them are recorded and the share of failures reaches
+ * {@code llm.circuit-breaker.failure-rate-threshold}, the circuit OPENs and calls fail immediately with
+ * a 503 {@link LlmRejectedException} instead of each waiting for the provider timeout. After
+ * {@code llm.circuit-breaker.open-ms} one probe call is let through (HALF_OPEN): its success closes the
+ * circuit, its failure opens it again.
+ * <p>
+ * Only provider failures are recorded (see {@link #isProviderFailure}): 5xx and 429 responses, timeouts and
+ * connection errors. A 4xx answer to a bad request says nothing about the provider's health and counts as a
+ * success; calls rejected by the {@link LlmExecutor} and cancelled calls are not recorded at all. Publishes {@code llm.circuit.state} (0 closed, 1 half-open, 2 open) and
+ * {@code llm.circuit.transitions} (counter per target state).
+ */
+@Component
+public class LlmCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmCircuitBreaker.class);
+
+    private enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final boolean enabled;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final MeterRegistry meterRegistry;
+
+    // Guarded by this
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public LlmCircuitBreaker(MeterRegistry meterRegistry,
+                             @Value("${llm.circuit-breaker.enabled:true}") boolean enabled,
+                             @Value("${llm.circuit-breaker.window-size:20}") int windowSize,
+                             @Value("${llm.circuit-breaker.min-calls:10}") int minCalls,
+                             @Value("${llm.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                             @Value("${llm.circuit-breaker.open-ms:30000}") long openMs) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.window = new boolean[windowSize];
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+
+        Gauge.builder("llm.circuit.state", this, breaker -> breaker.state().ordinal()).register(meterRegistry);
+        logger.info("LLM circuit breaker enabled: {}, window {}, min calls {}, failure rate threshold {}, open {} ms",
+                enabled, windowSize, this.minCalls, failureRateThreshold, openMs);
+    }
+
+    /**
+     * Runs a call through the breaker, recording provider failures.
+     *
+     * @see #execute(LlmPriority, Supplier, Predicate)
+     */
+    public <T> T execute(LlmPriority lane, Supplier<T> call) {
+        return execute(lane, call, LlmCircuitBreaker::isProviderFailure);
+    }
+
+    /**
+     * Whether an exception of a provider call means the provider is unhealthy: a 5xx or 429 response, a
+     * timeout or a connection error anywhere in its cause chain. Other HTTP errors, interrupts and
+     * cancellations are not.
+     */
+    public static boolean isProviderFailure(RuntimeException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OpenAiHttpException e) {
+                return isProviderStatus(e.statusCode);
+            }
+            if (cause instanceof HttpException e) {
+                return isProviderStatus(e.code());
+            }
+            if (cause instanceof SocketTimeoutException) {
+                return true;
+            }
+            if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isProviderStatus(int status) {
+        return status >= 500 || status == 429;
+    }
+
+    /**
+     * Runs a call through the breaker on the calling thread.
+     *
+     * @param lane The priority lane of the call, used to tag rejections
+     * @param call The call
+     * @param isFailure Decides whether an exception of the call is a provider failure
+     * @return The result of the call
+     * @throws LlmRejectedException if the circuit is open
+     */
+    public <T> T execute(LlmPriority lane, Supplier<T> call, Predicate<RuntimeException> isFailure) {
+        if (!enabled) {
+            return call.get();
+        }
+        boolean probe = acquirePermission(lane);
+        Boolean failed = null;
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } catch (LlmRejectedException | CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (isFailure.test(e)) {
+                failed = true;
+            }
+            throw e;
+        } finally {
+            onComplete(probe, failed);
+        }
+    }
+
+    private synchronized boolean acquirePermission(LlmPriority lane) {
+        if (state == State.CLOSED) {
+            return false;
+        }
+        if (state == State.OPEN) {
+            long openFor = System.nanoTime() - openedAt;
+            if (openFor < openNanos) {
+                throw reject(lane, openNanos - openFor);
+            }
+            transition(State.HALF_OPEN);
+        } else if (probeInFlight) {
+            // Only one probe at a time while half-open
+            throw reject(lane, openNanos);
+        }
+        probeInFlight = true;
+        return true;
+    }
+
+    /**
+     * @param failed Whether the call failed, or null if its outcome says nothing about the provider
+     */
+    private synchronized void onComplete(boolean probe, Boolean failed) {
+        if (probe) {
+            probeInFlight = false;
+            if (failed == null) {
+                return;
+            }
+            if (failed) {
+                open();
+            } else {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        // Outcomes of calls admitted before the circuit opened do not count any more
+        if (failed == null || state != State.CLOSED) {
+            return;
+        }
+
+        if (windowCount == window.length && window[windowIndex]) {
+            windowFailures--;
+        }
+        window[windowIndex] = failed;
+        windowIndex = (windowIndex + 1) % window.length;
+        windowCount = Math.min(windowCount + 1, window.length);
+        if (failed) {
+            windowFailures++;
+            if (windowCount >= minCalls && (double) windowFailures / windowCount >= failureRateThreshold) {
+                logger.warn("{} of the last {} LLM calls failed, opening circuit", windowFailures, windowCount);
+                open();
+            }
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        resetWindow();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private void transition(State target) {
+        if (state == target) {
+            return;
+        }
+        logger.info("LLM circuit {} -> {}", state, target);
+        state = target;
+        Counter.builder("llm.circuit.transitions")
+                .tag("state", target.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private LlmRejectedException reject(LlmPriority lane, long retryAfterNanos) {
+        Counter.builder("llm.rejected")
+                .tag("lane", lane.name().toLowerCase())
+                .tag("reason", "circuit_open")
+                .register(meterRegistry)
+                .increment();
+        int retryAfterSeconds = (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos));
+        return new LlmRejectedException(503, retryAfterSeconds,
+                "LLM provider unavailable (circuit open), retry after " + retryAfterSeconds + "s");
+    }
+
+    private synchronized State state() {
+        return state;
+    }
+}
@@ -0,0 +1,262 @@
+package com.loganalyser.llm;
+
+import com.loganalyser.enums.PromptCategory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for LLM calls.
+ * <p>
+ * At most {@code llm.executor.max-in-flight} calls run at once; the rest wait in a bounded queue
+ * ({@code llm.executor.queue-capacity}) ordered by {@link LlmPriority} lane. Calls still run on the
+ * caller's thread, so streaming works unchanged. Each lane has a maximum wait
+ * ({@code llm.executor.max-wait-ms.<lane>}): a call whose estimated wait (calls ahead of it times the
+ * average call latency) already exceeds it is rejected immediately, and a call still queued when it
+ * expires is rejected then, so callers get a fast 429/503 instead of piling up behind the provider.
+ * <p>
+ * Publishes {@code llm.queue.wait} (timer per lane), {@code llm.rejected} (counter per lane and reason),
+ * {@code llm.in.flight} and {@code llm.queue.size}.
+ */
+@Component
+public class LlmExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmExecutor.class);
+
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+
+    private final int maxInFlight;
+    private final int queueCapacity;
+    private final Map<LlmPriority, Long> maxWaitNanos = new EnumMap<>(LlmPriority.class);
+    private final Set<PromptCategory> interactiveCategories;
+    private final ThreadLocal<LlmPriority> laneOverride = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparing(Waiter::lane).thenComparingLong(Waiter::sequence));
+    // Guarded by lock
+    private int inFlight;
+    private long sequence;
+    private double averageLatencyNanos;
+
+    private final Map<LlmPriority, Timer> waitTimers = new EnumMap<>(LlmPriority.class);
+    private final MeterRegistry meterRegistry;
+
+    public LlmExecutor(MeterRegistry meterRegistry,
+                       @Value("${llm.executor.max-in-flight:8}") int maxInFlight,
+                       @Value("${llm.executor.queue-capacity:100}") int queueCapacity,
+                       @Value("${llm.executor.max-wait-ms.interactive:15000}") long interactiveMaxWaitMs,
+                       @Value("${llm.executor.max-wait-ms.standard:30000}") long standardMaxWaitMs,
+                       @Value("${llm.executor.max-wait-ms.background:300000}") long backgroundMaxWaitMs,
+                       @Value("${llm.executor.interactive-categories:DEVELOPER_RCA}") Set<PromptCategory> interactiveCategories) {
+        this.meterRegistry = meterRegistry;
+        this.maxInFlight = maxInFlight;
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos.put(LlmPriority.INTERACTIVE, TimeUnit.MILLISECONDS.toNanos(interactiveMaxWaitMs));
+        this.maxWaitNanos.put(LlmPriority.STANDARD, TimeUnit.MILLISECONDS.toNanos(standardMaxWaitMs));
+        this.maxWaitNanos.put(LlmPriority.BACKGROUND, TimeUnit.MILLISECONDS.toNanos(backgroundMaxWaitMs));
+        this.interactiveCategories = interactiveCategories.isEmpty()
+                ? EnumSet.noneOf(PromptCategory.class)
+                : EnumSet.copyOf(interactiveCategories);
+
+        for (LlmPriority lane : LlmPriority.values()) {
+            waitTimers.put(lane, Timer.builder("llm.queue.wait")
+                    .description("Time LLM calls wait for admission")
+                    .tag("lane", lane.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("llm.in.flight", this, LlmExecutor::inFlight).register(meterRegistry);
+        Gauge.builder("llm.queue.size", this, LlmExecutor::queued).register(meterRegistry);
+
+        logger.info("LLM executor: max in flight {}, queue capacity {}, interactive categories {}",
+                maxInFlight, queueCapacity, this.interactiveCategories);
+    }
+
+    /**
+     * @param category The prompt category of an analysis, or null for supporting calls
+     * @return The lane set by an enclosing {@link #withLane}, otherwise the lane for analyses of that category
+     */
+    public LlmPriority laneFor(PromptCategory category) {
+        LlmPriority override = laneOverride.get();
+        if (override != null) {
+            return override;
+        }
+        return category != null && interactiveCategories.contains(category) ? LlmPriority.INTERACTIVE : LlmPriority.STANDARD;
+    }
+
+    /**
+     * Runs work whose LLM calls all use the given lane, regardless of their category.
+     * Work handed to other threads keeps the lane only if wrapped with {@link #propagateLane}.
+     *
+     * @param lane The lane
+     * @param work The work
+     * @return The result of the work
+     */
+    public <T> T withLane(LlmPriority lane, Supplier<T> work) {
+        LlmPriority previous = laneOverride.get();
+        laneOverride.set(lane);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                laneOverride.remove();
+            } else {
+                laneOverride.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @param work Work to be run on another thread
+     * @return The work, running in the lane set on the calling thread (if any)
+     */
+    public <T> Supplier<T> propagateLane(Supplier<T> work) {
+        LlmPriority lane = laneOverride.get();
+        return lane == null ? work : () -> withLane(lane, work);
+    }
+
+    /**
+     * Runs an LLM call on the calling thread once it is admitted.
+     *
+     * @param lane The priority lane of the call
+     * @param call The call
+     * @return The result of the call
+     * @throws LlmRejectedException if the call is not admitted within the lane's maximum wait
+     */
+    public <T> T execute(LlmPriority lane, Supplier<T> call) {
+        long waitStart = System.nanoTime();
+        acquire(lane);
+        long start = System.nanoTime();
+        waitTimers.get(lane).record(start - waitStart, TimeUnit.NANOSECONDS);
+        try {
+            return call.get();
+        } finally {
+            release(System.nanoTime() - start);
+        }
+    }
+
+    private void acquire(LlmPriority lane) {
+        lock.lock();
+        try {
+            if (inFlight < maxInFlight && waiters.isEmpty()) {
+                inFlight++;
+                return;
+            }
+            if (waiters.size() >= queueCapacity) {
+                throw reject(lane, 429, "queue_full", "LLM queue is full (" + queueCapacity + " waiting)");
+            }
+
+            long maxWait = maxWaitNanos.get(lane);
+            long estimatedWait = estimateWaitNanos(lane);
+            if (estimatedWait > maxWait) {
+                throw reject(lane, 503, "deadline",
+                        "LLM capacity exhausted, estimated wait " + TimeUnit.NANOSECONDS.toSeconds(estimatedWait) + "s");
+            }
+
+            Waiter waiter = new Waiter(lane, sequence++);
+            waiters.add(waiter);
+            long remaining = maxWait;
+            try {
+                while (waiters.peek() != waiter || inFlight >= maxInFlight) {
+                    if (remaining <= 0) {
+                        waiters.remove(waiter);
+                        changed.signalAll();
+                        throw reject(lane, 503, "deadline", "LLM call not admitted within "
+                                + TimeUnit.NANOSECONDS.toMillis(maxWait) + " ms");
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                waiters.remove(waiter);
+                changed.signalAll();
+                Thread.currentThread().interrupt();
+                throw reject(lane, 503, "interrupted", "Interrupted while waiting for LLM capacity");
+            }
+            waiters.poll();
+            inFlight++;
+            // The next waiter may be admissible too
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            averageLatencyNanos = averageLatencyNanos == 0
+                    ? latencyNanos
+                    : averageLatencyNanos + LATENCY_EWMA_WEIGHT * (latencyNanos - averageLatencyNanos);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimates how long a new call in the lane would wait: the calls ahead of it (running and queued
+     * in the same or a higher lane) drain {@code maxInFlight} at a time at the average call latency.
+     * Must be called with the lock held.
+     */
+    private long estimateWaitNanos(LlmPriority lane) {
+        int ahead = 0;
+        for (Waiter waiter : waiters) {
+            if (waiter.lane().compareTo(lane) <= 0) {
+                ahead++;
+            }
+        }
+        long rounds = ahead / maxInFlight + 1;
+        return (long) (rounds * averageLatencyNanos);
+    }
+
+    private LlmRejectedException reject(LlmPriority lane, int status, String reason, String message) {
+        Counter.builder("llm.rejected")
+                .tag("lane", lane.name().toLowerCase())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        int retryAfterSeconds = (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds((long) averageLatencyNanos));
+        logger.warn("Rejected {} LLM call ({}): {}", lane, reason, message);
+        return new LlmRejectedException(status, retryAfterSeconds, message + ", retry after " + retryAfterSeconds + "s");
+    }
+
+    private double inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double queued() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Waiter(LlmPriority lane, long sequence) {
+    }
+}
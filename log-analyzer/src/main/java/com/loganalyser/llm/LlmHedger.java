@@ -0,0 +1,197 @@
+package com.loganalyser.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hedged LLM requests, bounding tail latency when the provider slows down.
+ * <p>
+ * The latencies of the last {@code llm.hedging.window-size} successful calls are kept. Once there are
+ * {@code llm.hedging.min-samples} of them, a call that has not finished after their
+ * {@code llm.hedging.percentile} latency (at least {@code llm.hedging.min-delay-ms}) gets a second,
+ * identical attempt; whichever succeeds first is returned and the other is cancelled by interrupting
+ * it, so calls must give up when interrupted (see {@link ChatCompletionApi#execute}). A call fails
+ * only if all of its attempts fail.
+ * <p>
+ * Attempts run on the {@code llmHedgeExecutor}; when it is saturated the call runs unhedged on the
+ * caller's thread. At most {@code llm.hedging.max-concurrent-hedges} hedges are in flight, so a
+ * provider-wide slowdown cannot double the load. Publishes {@code llm.hedges} (counter per winner).
+ */
+@Component
+public class LlmHedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmHedger.class);
+
+    private final boolean enabled;
+    private final double percentile;
+    private final int minSamples;
+    private final long minDelayNanos;
+    private final Semaphore hedgePermits;
+    private final ThreadPoolTaskExecutor hedgeExecutor;
+    private final Counter primaryWins;
+    private final Counter hedgeWins;
+
+    // Guarded by this
+    private final long[] latencies;
+    private int latencyIndex;
+    private int latencyCount;
+
+    public LlmHedger(MeterRegistry meterRegistry,
+                     @Qualifier("llmHedgeExecutor") ThreadPoolTaskExecutor hedgeExecutor,
+                     @Value("${llm.hedging.enabled:true}") boolean enabled,
+                     @Value("${llm.hedging.percentile:0.95}") double percentile,
+                     @Value("${llm.hedging.window-size:200}") int windowSize,
+                     @Value("${llm.hedging.min-samples:20}") int minSamples,
+                     @Value("${llm.hedging.min-delay-ms:1000}") long minDelayMs,
+                     @Value("${llm.hedging.max-concurrent-hedges:4}") int maxConcurrentHedges) {
+        this.hedgeExecutor = hedgeExecutor;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.latencies = new long[windowSize];
+        this.minSamples = Math.min(minSamples, windowSize);
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+        this.hedgePermits = new Semaphore(maxConcurrentHedges);
+        this.primaryWins = Counter.builder("llm.hedges").tag("winner", "primary").register(meterRegistry);
+        this.hedgeWins = Counter.builder("llm.hedges").tag("winner", "hedge").register(meterRegistry);
+        logger.info("LLM hedging enabled: {}, p{} after {} samples (min delay {} ms), max {} concurrent hedges",
+                enabled, Math.round(percentile * 100), this.minSamples, minDelayMs, maxConcurrentHedges);
+    }
+
+    /**
+     * Runs the call, hedging it with a second attempt if it is slower than the configured percentile.
+     * The call must be idempotent.
+     *
+     * @param call The call; may run on other threads and more than once
+     * @return The result of the first successful attempt
+     * @throws CancellationException if the calling thread is interrupted while waiting
+     */
+    public <T> T execute(Supplier<T> call) {
+        long delayNanos = hedgeDelayNanos();
+        if (delayNanos < 0) {
+            return timed(call);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        Future<?> primary;
+        try {
+            primary = hedgeExecutor.submit(() -> attempt(call, result, pending, false));
+        } catch (TaskRejectedException e) {
+            return timed(call);
+        }
+
+        Future<?> hedge = null;
+        try {
+            try {
+                return result.get(delayNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                hedge = hedge(call, result, pending, delayNanos);
+            }
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the LLM");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            // Cancels the losing attempt. The interrupt only aborts its HTTP call if the call waits
+            // interruptibly, as ChatCompletionApi.execute does; a call blocked in a socket read would
+            // keep running (and holding its hedge permit) until the provider answers.
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private <T> Future<?> hedge(Supplier<T> call, CompletableFuture<T> result, AtomicInteger pending, long delayNanos) {
+        if (result.isDone() || !hedgePermits.tryAcquire()) {
+            return null;
+        }
+        pending.incrementAndGet();
+        try {
+            Future<?> hedge = hedgeExecutor.submit(() -> {
+                try {
+                    attempt(call, result, pending, true);
+                } finally {
+                    hedgePermits.release();
+                }
+            });
+            logger.info("LLM call slower than p{} ({} ms), sent hedged request",
+                    Math.round(percentile * 100), TimeUnit.NANOSECONDS.toMillis(delayNanos));
+            return hedge;
+        } catch (TaskRejectedException e) {
+            pending.decrementAndGet();
+            hedgePermits.release();
+            return null;
+        }
+    }
+
+    private <T> void attempt(Supplier<T> call, CompletableFuture<T> result, AtomicInteger pending, boolean isHedge) {
+        long start = System.nanoTime();
+        try {
+            T value = call.get();
+            recordLatency(System.nanoTime() - start);
+            if (result.complete(value)) {
+                (isHedge ? hedgeWins : primaryWins).increment();
+            }
+        } catch (Throwable t) {
+            if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    private <T> T timed(Supplier<T> call) {
+        long start = System.nanoTime();
+        T value = call.get();
+        recordLatency(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * @return How long to wait before hedging, or -1 if calls are not hedged (yet)
+     */
+    private long hedgeDelayNanos() {
+        if (!enabled) {
+            return -1;
+        }
+        long[] samples;
+        synchronized (this) {
+            if (latencyCount < minSamples) {
+                return -1;
+            }
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(samples);
+        int index = Math.min(samples.length - 1, Math.max(0, (int) Math.ceil(percentile * samples.length) - 1));
+        return Math.max(minDelayNanos, samples[index]);
+    }
+
+    private synchronized void recordLatency(long latencyNanos) {
+        latencies[latencyIndex] = latencyNanos;
+        latencyIndex = (latencyIndex + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+    }
+}
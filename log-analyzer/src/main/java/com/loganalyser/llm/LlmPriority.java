@@ -0,0 +1,22 @@
+package com.loganalyser.llm;
+
+/**
+ * Priority lanes of the {@link LlmExecutor}. Waiting calls are admitted lane by lane in declaration
+ * order, first come first served within a lane.
+ */
+public enum LlmPriority {
+    /**
+     * A user is waiting for the answer, e.g. a developer RCA.
+     */
+    INTERACTIVE,
+
+    /**
+     * Regular synchronous analyses and their supporting calls.
+     */
+    STANDARD,
+
+    /**
+     * Work nobody is actively waiting for, e.g. asynchronous jobs.
+     */
+    BACKGROUND
+}
@@ -0,0 +1,29 @@
+package com.loganalyser.llm;
+
+/**
+ * Thrown when the {@link LlmExecutor} cannot admit an LLM call: the wait queue is full (429) or the
+ * call could not start within its lane's deadline (503). Carries the delay after which the client
+ * should retry.
+ */
+public class LlmRejectedException extends RuntimeException {
+
+    private final int status;
+    private final int retryAfterSeconds;
+
+    public LlmRejectedException(int status, int retryAfterSeconds, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return HTTP status to answer with: 429 when the queue is full, 503 when the deadline cannot be met
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,36 @@
+package com.loganalyser.repository;
+
+import com.loganalyser.entity.AnalysisJobEntity;
+import com.loganalyser.enums.AnalysisJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Repository for asynchronous analysis jobs.
+ */
+@Repository
+public interface AnalysisJobRepository extends JpaRepository<AnalysisJobEntity, String> {
+
+    /**
+     * Fails all jobs in the given states, e.g. jobs orphaned by a restart.
+     *
+     * @param statuses The states to fail
+     * @param error The error to record
+     * @param completedAt The completion timestamp to record
+     * @return Number of failed jobs
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE AnalysisJobEntity j SET j.status = com.loganalyser.enums.AnalysisJobStatus.FAILED, "
+            + "j.error = :error, j.completedAt = :completedAt WHERE j.status IN :statuses")
+    int failAll(@Param("statuses") Collection<AnalysisJobStatus> statuses,
+                @Param("error") String error,
+                @Param("completedAt") LocalDateTime completedAt);
+}
@@ -1,9 +1,16 @@
 package com.loganalyser.repository;
 
 import com.loganalyser.entity.ChatMessageEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -19,7 +26,57 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity,
      * Returns the most recent chat messages for a given chatId, ordered from newest to oldest.
      *
      * @param chatId The logical chat identifier
-     * @return List of chat messages in descending created order
+     * @param pageable The number of messages to return
+     * @return List of chat messages in descending ID order
      */
-    List<ChatMessageEntity> findTop10ByChatIdOrderByCreatedAtDesc(String chatId);
+    List<ChatMessageEntity> findByChatIdOrderByIdDesc(String chatId, Pageable pageable);
+
+    /**
+     * Returns the chat messages stored after a given message, ordered from oldest to newest.
+     *
+     * @param chatId The logical chat identifier
+     * @param id The ID of the last message to skip
+     * @param pageable The number of messages to return
+     * @return List of chat messages in ascending ID order
+     */
+    List<ChatMessageEntity> findByChatIdAndIdGreaterThanOrderByIdAsc(String chatId, Long id, Pageable pageable);
+
+    /**
+     * Returns chats without messages since the given time.
+     *
+     * @param before Chats with a message at or after this time are active
+     * @param pageable The number of chat IDs to return
+     * @return List of chat IDs
+     */
+    @Query("SELECT m.chatId FROM ChatMessageEntity m GROUP BY m.chatId HAVING MAX(m.createdAt) < :before")
+    List<String> findChatIdsIdleSince(@Param("before") LocalDateTime before, Pageable pageable);
+
+    /**
+     * Deletes the messages of the given chats created before the given time; messages of a turn
+     * recorded meanwhile are kept.
+     *
+     * @param chatIds The chats to delete
+     * @param before Messages created at or after this time are kept
+     * @return Number of deleted messages
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatMessageEntity m WHERE m.chatId IN :chatIds AND m.createdAt < :before")
+    int deleteByChatIdInAndCreatedAtBefore(@Param("chatIds") Collection<String> chatIds,
+                                           @Param("before") LocalDateTime before);
+
+    /**
+     * Deletes messages already folded into their chat's summary, except each chat's {@code keep} most
+     * recent messages. Those deleted are no longer read: the history sends the summary instead of them.
+     *
+     * @param keep Number of most recent messages to keep per chat
+     * @return Number of deleted messages
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM chat_message m "
+            + "WHERE m.id <= (SELECT s.summarized_through_id FROM chat_summary s WHERE s.chat_id = m.chat_id) "
+            + "AND m.id <= (SELECT r.id FROM chat_message r WHERE r.chat_id = m.chat_id "
+            + "ORDER BY r.id DESC OFFSET :keep ROWS FETCH NEXT 1 ROW ONLY)", nativeQuery = true)
+    int deleteSummarizedMessages(@Param("keep") int keep);
 }
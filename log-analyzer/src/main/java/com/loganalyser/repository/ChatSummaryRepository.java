@@ -0,0 +1,44 @@
+package com.loganalyser.repository;
+
+import com.loganalyser.entity.ChatSummaryEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Repository for the rolling summaries of chat conversations, keyed by chatId.
+ */
+@Repository
+public interface ChatSummaryRepository extends JpaRepository<ChatSummaryEntity, String> {
+
+    /**
+     * Deletes the summaries of the given chats that were last updated before the given time.
+     *
+     * @param chatIds The chats to delete
+     * @param before Summaries updated at or after this time are kept
+     * @return Number of deleted summaries
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatSummaryEntity s WHERE s.chatId IN :chatIds AND s.updatedAt < :before")
+    int deleteByChatIdInAndUpdatedAtBefore(@Param("chatIds") Collection<String> chatIds,
+                                           @Param("before") LocalDateTime before);
+
+    /**
+     * Deletes summaries last updated before the given time whose chat has no messages left.
+     *
+     * @param before Summaries updated at or after this time are kept
+     * @return Number of deleted summaries
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatSummaryEntity s WHERE s.updatedAt < :before "
+            + "AND NOT EXISTS (SELECT 1 FROM ChatMessageEntity m WHERE m.chatId = s.chatId)")
+    int deleteOrphanedBefore(@Param("before") LocalDateTime before);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.elasticsearch.repository.ElasticsearchRepository
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface LogDocumentRepository extends ElasticsearchRepository<LogDocument, String> {
@@ -16,5 +17,7 @@ public interface LogDocumentRepository extends ElasticsearchRepository<LogDocume
     List<LogDocument> findByTransactionId(String transactionId);
     
     Page<LogDocument> findByTransactionIdOrUuid(String transactionId, String uuid, Pageable pageable);
+
+    Optional<LogDocument> findFirstBySourceIdOrderByByteOffsetDesc(String sourceId);
 }
 
@@ -4,11 +4,21 @@ import com.loganalyser.entity.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
     
     Optional<Transaction> findByTransactionId(String transactionId);
+
+    /**
+     * Looks up many transactions with a single query.
+     *
+     * @param transactionIds The transaction IDs
+     * @return The transactions that exist, in no particular order
+     */
+    List<Transaction> findByTransactionIdIn(Collection<String> transactionIds);
 }
 
@@ -0,0 +1,374 @@
+package com.loganalyser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loganalyser.dto.AnalysisResult;
+import com.loganalyser.entity.AnalysisJobEntity;
+import com.loganalyser.enums.AnalysisJobStatus;
+import com.loganalyser.enums.PromptCategory;
+import com.loganalyser.llm.LlmExecutor;
+import com.loganalyser.llm.LlmPriority;
+import com.loganalyser.repository.AnalysisJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Service for asynchronous analysis jobs.
+ * <p>
+ * A submitted job is persisted as QUEUED and handed to the bounded {@code analysisJobExecutor}; the
+ * caller gets the job ID back immediately. The worker runs the regular chat-aware analysis in the
+ * BACKGROUND LLM lane, persists the result or error, and, if the job has a callback URL, POSTs the
+ * finished job there. Jobs left QUEUED or RUNNING by a previous run are failed on startup.
+ * <p>
+ * Callbacks may only target the hosts in {@code analysis.jobs.callback-allowed-hosts} (none by default),
+ * and only hosts resolving to public addresses unless {@code analysis.jobs.callback-allow-private-addresses}
+ * is set. The address is checked again by the DNS lookup of every attempt, and the connection goes to
+ * exactly the addresses that were checked, so the host cannot pass the check with a public address and
+ * then be connected to at an internal one. Attempts and their retries run on a small scheduler of their
+ * own, so a slow or failing callback target does not hold a job worker.
+ */
+@Service
+public class AnalysisJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisJobService.class);
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final AnalysisJobRepository jobRepository;
+    private final LogAnalysisService logAnalysisService;
+    private final LlmExecutor llmExecutor;
+    private final TaskExecutor jobExecutor;
+    private final OkHttpClient callbackClient;
+    private final ObjectMapper objectMapper;
+    private final Set<String> allowedCallbackHosts;
+    private final boolean allowPrivateCallbackAddresses;
+    private final ScheduledExecutorService callbackScheduler;
+
+    @Value("${analysis.jobs.callback-attempts:3}")
+    private int callbackAttempts;
+
+    /**
+     * Constructor for AnalysisJobService.
+     *
+     * @param jobRepository The analysis job repository
+     * @param logAnalysisService The log analysis service
+     * @param llmExecutor The admission control for LLM calls
+     * @param jobExecutor The executor running jobs
+     * @param objectMapper Serializes callback bodies
+     * @param callbackTimeoutMs Connect and read timeout for callbacks
+     * @param allowedCallbackHosts Comma-separated hosts callbacks may be sent to; empty disables callbacks
+     * @param allowPrivateCallbackAddresses Whether callback hosts may resolve to loopback, link-local or private addresses
+     * @param callbackThreads Threads sending callbacks
+     */
+    public AnalysisJobService(AnalysisJobRepository jobRepository,
+                              LogAnalysisService logAnalysisService,
+                              LlmExecutor llmExecutor,
+                              @Qualifier("analysisJobExecutor") TaskExecutor jobExecutor,
+                              ObjectMapper objectMapper,
+                              @Value("${analysis.jobs.callback-timeout-ms:5000}") int callbackTimeoutMs,
+                              @Value("${analysis.jobs.callback-allowed-hosts:}") Set<String> allowedCallbackHosts,
+                              @Value("${analysis.jobs.callback-allow-private-addresses:false}") boolean allowPrivateCallbackAddresses,
+                              @Value("${analysis.jobs.callback-threads:2}") int callbackThreads) {
+        this.jobRepository = jobRepository;
+        this.logAnalysisService = logAnalysisService;
+        this.llmExecutor = llmExecutor;
+        this.jobExecutor = jobExecutor;
+        this.allowedCallbackHosts = allowedCallbackHosts;
+        this.allowPrivateCallbackAddresses = allowPrivateCallbackAddresses;
+        this.objectMapper = objectMapper;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("analysis-job-callback-");
+        threadFactory.setDaemon(true);
+        this.callbackScheduler = Executors.newScheduledThreadPool(callbackThreads, threadFactory);
+
+        this.callbackClient = new OkHttpClient.Builder()
+                .connectTimeout(Duration.ofMillis(callbackTimeoutMs))
+                .readTimeout(Duration.ofMillis(callbackTimeoutMs))
+                // Connects to the addresses vetted by the lookup; a proxy would resolve the host itself
+                .dns(this::resolveCallbackHost)
+                .proxy(Proxy.NO_PROXY)
+                // A redirect could point anywhere, including hosts not on the allowlist
+                .followRedirects(false)
+                .followSslRedirects(false)
+                .build();
+    }
+
+    /**
+     * Fails jobs that were queued or running when the application last stopped; their workers are gone.
+     * Runs before the web server accepts requests, so no new job can be caught by it.
+     */
+    @PostConstruct
+    public void failOrphanedJobs() {
+        int failed = jobRepository.failAll(List.of(AnalysisJobStatus.QUEUED, AnalysisJobStatus.RUNNING),
+                "Interrupted by application restart", LocalDateTime.now());
+        if (failed > 0) {
+            logger.warn("Failed {} analysis jobs orphaned by a restart", failed);
+        }
+    }
+
+    /**
+     * Stops sending callbacks; retries still waiting are dropped.
+     */
+    @PreDestroy
+    public void shutdown() {
+        callbackScheduler.shutdownNow();
+        callbackClient.connectionPool().evictAll();
+    }
+
+    /**
+     * Persists a new job and queues it for execution.
+     *
+     * @param transactionId The resolved transaction ID
+     * @param query The query string
+     * @param categories The prompt categories (at least one)
+     * @param chatId The logical chat identifier (may be null to start a new chat)
+     * @param callbackUrl Optional URL to POST the finished job to
+     * @return The queued job
+     * @throws IllegalArgumentException if the callback URL is not an allowed http(s) URL with a public address
+     * @throws TaskRejectedException if the job queue is full; the job is recorded as FAILED
+     */
+    public AnalysisJobEntity submit(String transactionId, String query, List<PromptCategory> categories,
+                                    String chatId, String callbackUrl) {
+        if (callbackUrl != null && !callbackUrl.isBlank()) {
+            validateCallbackUrl(callbackUrl);
+        }
+
+        AnalysisJobEntity job = new AnalysisJobEntity();
+        job.setId(UUID.randomUUID().toString());
+        job.setStatus(AnalysisJobStatus.QUEUED);
+        job.setQuery(query);
+        job.setCategories(categories.stream().map(Enum::name).collect(Collectors.joining(",")));
+        job.setTransactionId(transactionId);
+        job.setChatId(chatId);
+        job.setCallbackUrl(callbackUrl == null || callbackUrl.isBlank() ? null : callbackUrl);
+        job.setCreatedAt(LocalDateTime.now());
+        jobRepository.save(job);
+
+        try {
+            jobExecutor.execute(() -> run(job.getId()));
+        } catch (TaskRejectedException e) {
+            logger.warn("Rejecting analysis job {}, job queue is full", job.getId());
+            finish(job, AnalysisJobStatus.FAILED, null, "Job queue is full");
+            throw e;
+        }
+        logger.info("Queued analysis job {} for transaction ID: {}", job.getId(), transactionId);
+        return job;
+    }
+
+    /**
+     * @param jobId The job ID
+     * @return The job, if it exists
+     */
+    public Optional<AnalysisJobEntity> getJob(String jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    private void run(String jobId) {
+        AnalysisJobEntity job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            logger.warn("Analysis job {} disappeared before it started", jobId);
+            return;
+        }
+        job.setStatus(AnalysisJobStatus.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        jobRepository.save(job);
+
+        try {
+            List<PromptCategory> categories = Arrays.stream(job.getCategories().split(","))
+                    .map(PromptCategory::valueOf)
+                    .toList();
+            AnalysisResult result = llmExecutor.withLane(LlmPriority.BACKGROUND,
+                    () -> logAnalysisService.analyze(job.getTransactionId(), job.getQuery(), categories, job.getChatId()));
+            job.setChatId(result.chatId());
+            finish(job, AnalysisJobStatus.SUCCEEDED, result.response(), null);
+            logger.info("Analysis job {} succeeded", jobId);
+        } catch (Exception e) {
+            logger.error("Analysis job {} failed: {}", jobId, e.getMessage(), e);
+            finish(job, AnalysisJobStatus.FAILED, null, e.getMessage());
+        }
+
+        if (job.getCallbackUrl() != null) {
+            scheduleCallback(job, 1, 0);
+        }
+    }
+
+    private void finish(AnalysisJobEntity job, AnalysisJobStatus status, String result, String error) {
+        job.setStatus(status);
+        job.setResult(result);
+        job.setError(error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH));
+        job.setCompletedAt(LocalDateTime.now());
+        jobRepository.save(job);
+    }
+
+    private void scheduleCallback(AnalysisJobEntity job, int attempt, long delayMs) {
+        try {
+            callbackScheduler.schedule(() -> sendCallback(job, attempt), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            recordCallbackStatus(job, "FAILED: application shutting down");
+        }
+    }
+
+    /**
+     * POSTs the finished job to its callback URL, scheduling a retry with a growing delay if that fails.
+     */
+    private void sendCallback(AnalysisJobEntity job, int attempt) {
+        try {
+            Request request = new Request.Builder()
+                    .url(job.getCallbackUrl())
+                    .post(RequestBody.create(objectMapper.writeValueAsBytes(JobCallback.of(job)), JSON))
+                    .build();
+            try (Response response = callbackClient.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Callback target answered " + response.code());
+                }
+            }
+            logger.info("Delivered callback for analysis job {} (attempt {})", job.getId(), attempt);
+            recordCallbackStatus(job, "DELIVERED");
+        } catch (CallbackHostRejectedException e) {
+            // The host resolves differently than when the job was submitted; retrying will not help
+            logger.warn("Not sending callback for analysis job {}: {}", job.getId(), e.getMessage());
+            recordCallbackStatus(job, "FAILED: " + e.getMessage());
+        } catch (Exception e) {
+            logger.warn("Callback for analysis job {} failed (attempt {}/{}): {}",
+                    job.getId(), attempt, callbackAttempts, e.getMessage());
+            if (attempt < callbackAttempts) {
+                scheduleCallback(job, attempt + 1, Duration.ofSeconds(attempt).toMillis());
+            } else {
+                recordCallbackStatus(job, "FAILED: " + e.getMessage());
+            }
+        }
+    }
+
+    private void recordCallbackStatus(AnalysisJobEntity job, String status) {
+        job.setCallbackStatus(status.length() <= 512 ? status : status.substring(0, 512));
+        jobRepository.save(job);
+    }
+
+    private void validateCallbackUrl(String callbackUrl) {
+        URI uri;
+        try {
+            uri = URI.create(callbackUrl);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid callback URL: " + callbackUrl);
+        }
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Callback URL must use http or https: " + callbackUrl);
+        }
+        if (allowedCallbackHosts.isEmpty()) {
+            throw new IllegalArgumentException("Callbacks are disabled, no callback hosts are allowed");
+        }
+        if (uri.getHost() == null || !allowedCallbackHosts.contains(uri.getHost())) {
+            throw new IllegalArgumentException("Callback host not allowed: " + uri.getHost());
+        }
+        if (callbackUrl.length() > 2048) {
+            throw new IllegalArgumentException("Callback URL too long");
+        }
+        // The callback client parses the URL itself; it must connect to the host that was allowed
+        HttpUrl url = HttpUrl.parse(callbackUrl);
+        if (url == null || !url.host().equalsIgnoreCase(uri.getHost().replaceAll("^\\[|]$", ""))) {
+            throw new IllegalArgumentException("Invalid callback URL: " + callbackUrl);
+        }
+        if (!allowPrivateCallbackAddresses) {
+            try {
+                checkCallbackAddresses(uri.getHost(), InetAddress.getAllByName(uri.getHost()));
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Callback host cannot be resolved: " + uri.getHost());
+            }
+        }
+    }
+
+    /**
+     * DNS lookup of the callback client. The connection is made to the addresses returned here, so they
+     * are the ones checked; resolving the host once for the check and again for the connection would
+     * let it answer with a public address first and an internal one second.
+     */
+    private List<InetAddress> resolveCallbackHost(String host) throws UnknownHostException {
+        InetAddress[] addresses = InetAddress.getAllByName(host);
+        try {
+            checkCallbackAddresses(host, addresses);
+        } catch (IllegalArgumentException e) {
+            throw new CallbackHostRejectedException(e.getMessage());
+        }
+        return List.of(addresses);
+    }
+
+    /**
+     * Rejects the host if any of its addresses is internal: loopback, link-local, site-local (including
+     * IPv6 unique local), wildcard or multicast.
+     */
+    private void checkCallbackAddresses(String host, InetAddress[] addresses) {
+        if (allowPrivateCallbackAddresses) {
+            return;
+        }
+        for (InetAddress address : addresses) {
+            boolean uniqueLocal = address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc;
+            if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                    || address.isAnyLocalAddress() || address.isMulticastAddress() || uniqueLocal) {
+                throw new IllegalArgumentException("Callback host " + host + " resolves to internal address "
+                        + address.getHostAddress());
+            }
+        }
+    }
+
+    /**
+     * Thrown by the callback client's DNS lookup when the host resolves to an internal address.
+     */
+    private static class CallbackHostRejectedException extends UnknownHostException {
+
+        CallbackHostRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Body POSTed to a job's callback URL.
+     *
+     * @param jobId The job ID
+     * @param status The final job status
+     * @param transactionId The analyzed transaction ID
+     * @param chatId The chat the analysis was recorded in
+     * @param result The analysis, if the job succeeded
+     * @param error The error, if the job failed
+     */
+    public record JobCallback(String jobId, AnalysisJobStatus status, String transactionId, String chatId,
+                              String result, String error) {
+
+        static JobCallback of(AnalysisJobEntity job) {
+            return new JobCallback(job.getId(), job.getStatus(), job.getTransactionId(), job.getChatId(),
+                    job.getResult(), job.getError());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.loganalyser.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.loganalyser.enums.PromptCategory;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Exact-match cache of LLM analysis responses.
+ * <p>
+ * Entries are keyed by transaction ID, prompt category, normalized query and a digest of the
+ * selected log lines, so new logs for a transaction change the key and bypass stale answers
+ * without explicit invalidation. The prior chat history is digested into the key as well, since it
+ * is part of the prompt; first questions of new chats all share the empty-history digest.
+ * <p>
+ * Size and TTL are bounded by {@code analysis.cache.max-size} / {@code analysis.cache.ttl-minutes};
+ * hit/miss/eviction counts are published as {@code cache.*} metrics with {@code cache=analysis.response}.
+ * <p>
+ * Separately, the latest response per transaction and category is kept for
+ * {@code analysis.cache.stale-ttl-minutes}, regardless of query, logs and history, as a degraded answer
+ * while the LLM is unavailable.
+ */
+@Component
+public class AnalysisResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisResponseCache.class);
+
+    private final Cache<Key, String> cache;
+    private final Cache<LatestKey, String> latest;
+    private final boolean enabled;
+
+    /**
+     * Cache key for an analysis.
+     *
+     * @param transactionId The transaction ID
+     * @param category The prompt category
+     * @param normalizedQuery The query, trimmed, lower-cased and with whitespace collapsed
+     * @param logDigest SHA-256 of the log lines sent to the model
+     * @param historyDigest SHA-256 of the prior chat messages sent to the model
+     */
+    public record Key(String transactionId, PromptCategory category, String normalizedQuery,
+                      String logDigest, String historyDigest) {
+    }
+
+    private record LatestKey(String transactionId, PromptCategory category) {
+    }
+
+    public AnalysisResponseCache(MeterRegistry meterRegistry,
+                                 @Value("${analysis.cache.enabled:true}") boolean enabled,
+                                 @Value("${analysis.cache.max-size:1000}") long maxSize,
+                                 @Value("${analysis.cache.ttl-minutes:30}") long ttlMinutes,
+                                 @Value("${analysis.cache.stale-ttl-minutes:1440}") long staleTtlMinutes) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        this.latest = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(staleTtlMinutes))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "analysis.response");
+        logger.info("Analysis response cache enabled: {}, max size: {}, TTL: {} min", enabled, maxSize, ttlMinutes);
+    }
+
+    /**
+     * Builds the cache key for an analysis request.
+     *
+     * @param transactionId The transaction ID
+     * @param category The prompt category
+     * @param query The raw user query
+     * @param logs The selected log lines sent to the model
+     * @param history The prior chat messages sent to the model
+     * @return The cache key
+     */
+    public Key keyFor(String transactionId, PromptCategory category, String query,
+                      List<String> logs, List<ChatMessage> history) {
+        MessageDigest logDigest = sha256();
+        for (String line : logs) {
+            logDigest.update(line.getBytes(StandardCharsets.UTF_8));
+            logDigest.update((byte) '\n');
+        }
+        return new Key(transactionId, category, normalizeQuery(query),
+                HexFormat.of().formatHex(logDigest.digest()), historyDigest(history));
+    }
+
+    /**
+     * @param query The raw user query
+     * @return The query trimmed, lower-cased and with whitespace collapsed
+     */
+    public static String normalizeQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param history Chat messages
+     * @return Hex-encoded SHA-256 over the roles and contents of the messages
+     */
+    public static String historyDigest(List<ChatMessage> history) {
+        MessageDigest digest = sha256();
+        for (ChatMessage message : history) {
+            digest.update(message.getRole().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(message.getContent()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param key The cache key
+     * @return The cached response, if present and not expired
+     */
+    public Optional<String> get(Key key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    /**
+     * Stores a response.
+     *
+     * @param key The cache key
+     * @param response The LLM response
+     */
+    public void put(Key key, String response) {
+        if (enabled && response != null && !response.isBlank()) {
+            cache.put(key, response);
+            latest.put(new LatestKey(key.transactionId(), key.category()), response);
+        }
+    }
+
+    /**
+     * @param transactionId The transaction ID
+     * @param category The prompt category
+     * @return The latest response cached for the transaction and category, for any query, logs and history
+     */
+    public Optional<String> latest(String transactionId, PromptCategory category) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(latest.getIfPresent(new LatestKey(transactionId, category)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
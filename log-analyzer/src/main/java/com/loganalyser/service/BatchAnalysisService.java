@@ -0,0 +1,205 @@
+package com.loganalyser.service;
+
+import com.loganalyser.dto.BatchAnalysisResult;
+import com.loganalyser.entity.Transaction;
+import com.loganalyser.enums.PromptCategory;
+import com.loganalyser.llm.LlmExecutor;
+import com.loganalyser.llm.LlmPriority;
+import com.loganalyser.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Service for root cause analysis of many transactions in one request.
+ * <p>
+ * All transactions are looked up with one database query and their logs fetched with one
+ * Elasticsearch multi-search. The per-transaction LLM calls are then pipelined on the
+ * {@code analysisBatchExecutor}, at most {@code analysis.batch.concurrency} at a time and in the
+ * BACKGROUND lane of the {@link LlmExecutor}, and every result is handed to the caller as soon as it
+ * is ready, so results arrive in completion order. Interrupting the calling thread (e.g. when the
+ * client has gone away) stops submitting analyses and cancels those still running.
+ */
+@Service
+public class BatchAnalysisService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchAnalysisService.class);
+
+    private final TransactionRepository transactionRepository;
+    private final ElasticsearchService elasticsearchService;
+    private final LogAnalysisService logAnalysisService;
+    private final LlmExecutor llmExecutor;
+    private final ThreadPoolTaskExecutor batchExecutor;
+
+    @Value("${analysis.batch.concurrency:8}")
+    private int concurrency;
+
+    @Value("${analysis.batch.max-transactions:500}")
+    private int maxTransactions;
+
+    @Value("${analysis.batch.max-logs-per-transaction:5000}")
+    private int maxLogsPerTransaction;
+
+    /**
+     * Constructor for BatchAnalysisService.
+     *
+     * @param transactionRepository The transaction repository
+     * @param elasticsearchService The Elasticsearch service
+     * @param logAnalysisService The log analysis service
+     * @param llmExecutor The admission control for LLM calls
+     * @param batchExecutor The executor running the per-transaction analyses
+     */
+    public BatchAnalysisService(TransactionRepository transactionRepository,
+                                ElasticsearchService elasticsearchService,
+                                LogAnalysisService logAnalysisService,
+                                LlmExecutor llmExecutor,
+                                @Qualifier("analysisBatchExecutor") ThreadPoolTaskExecutor batchExecutor) {
+        this.transactionRepository = transactionRepository;
+        this.elasticsearchService = elasticsearchService;
+        this.logAnalysisService = logAnalysisService;
+        this.llmExecutor = llmExecutor;
+        this.batchExecutor = batchExecutor;
+    }
+
+    /**
+     * @return Maximum number of transactions accepted in one batch
+     */
+    public int getMaxTransactions() {
+        return maxTransactions;
+    }
+
+    /**
+     * Analyzes every transaction and hands each result to {@code onResult} as soon as it is ready.
+     * Blocks until all transactions have been handled. {@code onResult} may be called concurrently
+     * from several threads. When the calling thread is interrupted, no further analyses are started and
+     * the running ones are interrupted.
+     *
+     * @param transactionIds The transaction IDs; duplicates are analyzed once
+     * @param query The query applied to every transaction
+     * @param category The prompt category
+     * @param onResult Receives one result per distinct transaction ID
+     * @throws IllegalArgumentException if there are no or too many transaction IDs
+     */
+    public void analyzeBatch(List<String> transactionIds, String query, PromptCategory category,
+                             Consumer<BatchAnalysisResult> onResult) {
+        Set<String> distinctIds = new LinkedHashSet<>();
+        for (String transactionId : transactionIds) {
+            if (transactionId != null && !transactionId.isBlank()) {
+                distinctIds.add(transactionId.trim());
+            }
+        }
+        if (distinctIds.isEmpty()) {
+            throw new IllegalArgumentException("No transaction IDs given");
+        }
+        if (distinctIds.size() > maxTransactions) {
+            throw new IllegalArgumentException("Too many transaction IDs: " + distinctIds.size() + " (max " + maxTransactions + ")");
+        }
+        logger.info("Processing batch query for {} transactions with category: {}", distinctIds.size(), category);
+
+        llmExecutor.withLane(LlmPriority.BACKGROUND, () -> {
+            run(distinctIds, query, category, onResult);
+            return null;
+        });
+    }
+
+    private void run(Set<String> transactionIds, String query, PromptCategory category,
+                     Consumer<BatchAnalysisResult> onResult) {
+        // One database query for all transactions
+        Map<String, Transaction> transactions = new HashMap<>();
+        for (Transaction transaction : transactionRepository.findByTransactionIdIn(transactionIds)) {
+            transactions.put(transaction.getTransactionId(), transaction);
+        }
+
+        Map<String, String> uuidsByTransactionId = new LinkedHashMap<>();
+        for (String transactionId : transactionIds) {
+            Transaction transaction = transactions.get(transactionId);
+            if (transaction == null) {
+                onResult.accept(BatchAnalysisResult.failure(transactionId,
+                        "Transaction ID '" + transactionId + "' not found in database."));
+            } else {
+                uuidsByTransactionId.put(transactionId, transaction.getUuid());
+            }
+        }
+
+        // One multi-search for the logs of all known transactions
+        Map<String, List<String>> logsByTransactionId =
+                elasticsearchService.getLogsByTransactionIds(uuidsByTransactionId, maxLogsPerTransaction);
+
+        List<String> pending = new ArrayList<>();
+        for (String transactionId : uuidsByTransactionId.keySet()) {
+            List<String> logs = logsByTransactionId.get(transactionId);
+            if (logs == null || logs.isEmpty()) {
+                onResult.accept(BatchAnalysisResult.failure(transactionId,
+                        "No logs found for transaction ID: " + transactionId));
+            } else {
+                pending.add(transactionId);
+            }
+        }
+
+        // Pipeline the LLM calls: keep at most `concurrency` analyses running
+        Semaphore window = new Semaphore(concurrency);
+        List<Future<?>> running = new ArrayList<>();
+        boolean completed = false;
+        try {
+            for (String transactionId : pending) {
+                window.acquire();
+                running.removeIf(Future::isDone);
+                List<String> logs = logsByTransactionId.get(transactionId);
+                Supplier<Void> analysis = llmExecutor.propagateLane(() -> {
+                    onResult.accept(analyzeOne(transactionId, query, category, logs));
+                    return null;
+                });
+                try {
+                    running.add(batchExecutor.submit(() -> {
+                        try {
+                            analysis.get();
+                        } finally {
+                            window.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    window.release();
+                    onResult.accept(BatchAnalysisResult.failure(transactionId, "Error: " + e.getMessage()));
+                }
+            }
+            // Wait for the analyses still running
+            window.acquire(concurrency);
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running batch analysis", e);
+        } finally {
+            if (!completed) {
+                // Interrupts the analyses still running, which aborts their HTTP calls
+                running.forEach(future -> future.cancel(true));
+                logger.info("Cancelled batch query for {} transactions", transactionIds.size());
+            }
+        }
+        logger.info("Completed batch query for {} transactions", transactionIds.size());
+    }
+
+    private BatchAnalysisResult analyzeOne(String transactionId, String query, PromptCategory category, List<String> logs) {
+        try {
+            return BatchAnalysisResult.success(transactionId,
+                    logAnalysisService.analyzeFetchedLogs(transactionId, query, category, logs));
+        } catch (Exception e) {
+            logger.error("Batch analysis failed for transaction ID {}: {}", transactionId, e.getMessage(), e);
+            return BatchAnalysisResult.failure(transactionId, "Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.loganalyser.service;
+
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.completion.chat.ChatMessageRole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The most recent messages of one chat and its summary, held in memory by {@link ChatHistoryService}.
+ * <p>
+ * Messages are kept in a ring buffer of fixed capacity in ID order. Only the newest
+ * {@code contentLimit} of them keep their content, as only those are sent to the LLM; the older ones
+ * are kept for the transaction ID they refer to.
+ */
+final class ChatBuffer {
+
+    /**
+     * A buffered chat message.
+     *
+     * @param id The message ID
+     * @param role The chat role (user/assistant)
+     * @param content The content, or null once it is no longer needed
+     * @param transactionId The related transaction id, or null
+     */
+    record Message(long id, String role, String content, String transactionId) {
+    }
+
+    private final Message[] ring;
+    private final int contentLimit;
+    private int head;
+    private int size;
+    private String summary;
+    private long summarizedThroughId;
+
+    ChatBuffer(int capacity, int contentLimit) {
+        this.ring = new Message[capacity];
+        this.contentLimit = contentLimit;
+    }
+
+    /**
+     * Adds a message; messages already buffered (same ID) are ignored.
+     */
+    synchronized void add(Message message) {
+        if (size > 0 && get(size - 1).id() >= message.id()) {
+            // Out of order, e.g. two turns of the same chat recorded concurrently
+            List<Message> messages = new ArrayList<>(Arrays.asList(toArray()));
+            if (messages.stream().anyMatch(buffered -> buffered.id() == message.id())) {
+                return;
+            }
+            messages.add(message);
+            messages.sort(Comparator.comparingLong(Message::id));
+            head = 0;
+            size = 0;
+            Arrays.fill(ring, null);
+            for (Message buffered : messages.subList(Math.max(0, messages.size() - ring.length), messages.size())) {
+                append(buffered);
+            }
+        } else {
+            append(message);
+        }
+
+        // Drop the content of messages that have moved out of the history window
+        for (int i = 0; i < size - contentLimit; i++) {
+            Message old = get(i);
+            if (old.content() != null) {
+                ring[(head + i) % ring.length] = new Message(old.id(), old.role(), null, old.transactionId());
+            }
+        }
+    }
+
+    /**
+     * Replaces the summary, unless the buffer already holds one covering more messages.
+     */
+    synchronized void setSummary(String summary, long summarizedThroughId) {
+        if (this.summary == null || summarizedThroughId >= this.summarizedThroughId) {
+            this.summary = summary;
+            this.summarizedThroughId = summarizedThroughId;
+        }
+    }
+
+    /**
+     * @param limit Number of most recent messages to include
+     * @param summaryPrefix Text preceding the summary in its system message
+     * @return The summary (if any) as system message, then the most recent user/assistant messages it
+     *         does not cover, oldest first
+     */
+    synchronized List<ChatMessage> history(int limit, String summaryPrefix) {
+        List<ChatMessage> history = new ArrayList<>(Math.min(limit, size) + 1);
+        if (summary != null && !summary.isBlank()) {
+            history.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), summaryPrefix + summary));
+        }
+        for (int i = Math.max(0, size - Math.min(limit, contentLimit)); i < size; i++) {
+            Message message = get(i);
+            if (message.id() > summarizedThroughId && message.content() != null
+                    && (ChatMessageRole.USER.value().equals(message.role())
+                    || ChatMessageRole.ASSISTANT.value().equals(message.role()))) {
+                history.add(new ChatMessage(message.role(), message.content()));
+            }
+        }
+        return history;
+    }
+
+    /**
+     * @return The transaction ID of the oldest buffered message that has one
+     */
+    synchronized Optional<String> oldestTransactionId() {
+        for (int i = 0; i < size; i++) {
+            String transactionId = get(i).transactionId();
+            if (transactionId != null && !transactionId.isBlank()) {
+                return Optional.of(transactionId);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void append(Message message) {
+        if (size < ring.length) {
+            ring[(head + size) % ring.length] = message;
+            size++;
+        } else {
+            ring[head] = message;
+            head = (head + 1) % ring.length;
+        }
+    }
+
+    private Message get(int index) {
+        return ring[(head + index) % ring.length];
+    }
+
+    private Message[] toArray() {
+        Message[] messages = new Message[size];
+        for (int i = 0; i < size; i++) {
+            messages[i] = get(i);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,329 @@
+package com.loganalyser.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.loganalyser.entity.ChatMessageEntity;
+import com.loganalyser.entity.ChatSummaryEntity;
+import com.loganalyser.enums.PromptCategory;
+import com.loganalyser.llm.LlmExecutor;
+import com.loganalyser.llm.LlmPriority;
+import com.loganalyser.repository.ChatMessageRepository;
+import com.loganalyser.repository.ChatSummaryRepository;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.completion.chat.ChatMessageRole;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chat history sent to the LLM with follow-up questions.
+ * <p>
+ * Only the last {@code chat.summary.recent-turns} question/answer pairs of a chat are sent verbatim.
+ * Everything before them is folded into a rolling summary ({@code chat_summary}), which is updated on
+ * the {@code chatSummaryExecutor} after each turn, so recording a turn never waits for the LLM and the
+ * history stays about the same size however long the chat runs. Until an update has caught up, the
+ * messages between the summary and the recent turns are left out.
+ * <p>
+ * With {@code chat.summary.enabled=false}, the last 10 messages are sent verbatim instead.
+ * <p>
+ * The recent messages and summary of active chats are buffered in memory ({@link ChatBuffer}), loaded
+ * on first access and kept up to date as turns are recorded, so building the history and resolving a
+ * chat's transaction need no database queries. Up to {@code chat.buffer.max-chats} chats are buffered;
+ * chats idle for {@code chat.buffer.idle-minutes} are evicted. The buffer assumes this instance is the
+ * only writer of its chats. Publishes {@code cache.*} metrics with {@code cache=chat.buffer}.
+ */
+@Service
+public class ChatHistoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatHistoryService.class);
+
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
+    private static final int UNSUMMARIZED_HISTORY_MESSAGES = 10;
+    // Transaction resolution looks at the last 10 messages
+    private static final int BUFFERED_MESSAGES = 10;
+    // Messages read per summary update; longer backlogs are folded in several passes
+    private static final int MAX_FOLD_MESSAGES = 20;
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSummaryRepository chatSummaryRepository;
+    private final ChatMessageWriter chatMessageWriter;
+    private final OpenAIService openAIService;
+    private final TokenCounter tokenCounter;
+    private final LlmExecutor llmExecutor;
+    private final TaskExecutor summaryExecutor;
+    private final boolean summaryEnabled;
+    private final int recentMessages;
+    private final int summaryMaxTokens;
+    private final int historyMessages;
+    private final int bufferSize;
+    private final Cache<String, ChatBuffer> buffers;
+
+    // Chats with a summary update in progress; true if another update was requested meanwhile
+    private final ConcurrentHashMap<String, Boolean> updates = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for ChatHistoryService.
+     *
+     * @param chatMessageRepository The chat message repository
+     * @param chatSummaryRepository The chat summary repository
+     * @param chatMessageWriter The write-behind persistence of chat messages
+     * @param openAIService The OpenAI service writing the summaries
+     * @param tokenCounter The token counter for the configured model
+     * @param llmExecutor The admission control for LLM calls
+     * @param summaryExecutor The executor updating summaries
+     * @param summaryEnabled Whether earlier turns are summarized
+     * @param recentTurns Number of most recent question/answer pairs sent verbatim
+     * @param summaryMaxTokens Maximum length of a summary
+     * @param meterRegistry The registry for buffer metrics
+     * @param maxBufferedChats Maximum number of chats buffered in memory
+     * @param bufferIdleMinutes Minutes after which an idle chat is evicted from memory
+     */
+    public ChatHistoryService(ChatMessageRepository chatMessageRepository,
+                              ChatSummaryRepository chatSummaryRepository,
+                              ChatMessageWriter chatMessageWriter,
+                              OpenAIService openAIService,
+                              TokenCounter tokenCounter,
+                              LlmExecutor llmExecutor,
+                              @Qualifier("chatSummaryExecutor") TaskExecutor summaryExecutor,
+                              @Value("${chat.summary.enabled:true}") boolean summaryEnabled,
+                              @Value("${chat.summary.recent-turns:2}") int recentTurns,
+                              @Value("${chat.summary.max-tokens:400}") int summaryMaxTokens,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.buffer.max-chats:2000}") long maxBufferedChats,
+                              @Value("${chat.buffer.idle-minutes:30}") long bufferIdleMinutes) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatSummaryRepository = chatSummaryRepository;
+        this.chatMessageWriter = chatMessageWriter;
+        this.openAIService = openAIService;
+        this.tokenCounter = tokenCounter;
+        this.llmExecutor = llmExecutor;
+        this.summaryExecutor = summaryExecutor;
+        this.summaryEnabled = summaryEnabled;
+        this.recentMessages = 2 * Math.max(1, recentTurns);
+        this.summaryMaxTokens = summaryMaxTokens;
+        this.historyMessages = summaryEnabled ? recentMessages : UNSUMMARIZED_HISTORY_MESSAGES;
+        this.bufferSize = Math.max(BUFFERED_MESSAGES, historyMessages);
+        this.buffers = Caffeine.newBuilder()
+                .maximumSize(maxBufferedChats)
+                .expireAfterAccess(Duration.ofMinutes(bufferIdleMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buffers, "chat.buffer");
+    }
+
+    /**
+     * Builds the history of a chat to send with its next question: the summary of the earlier
+     * conversation (as a system message), then the most recent user/assistant messages.
+     *
+     * @param chatId The logical chat identifier
+     * @return List of chat messages in chronological order; empty for a new chat
+     */
+    public List<ChatMessage> history(String chatId) {
+        return buffer(chatId).history(historyMessages, SUMMARY_PREFIX);
+    }
+
+    /**
+     * Resolves the transaction ID of a chat: that of the oldest of its last 10 messages that has one.
+     *
+     * @param chatId The logical chat identifier
+     * @return Optional containing the resolved transactionId, if any
+     */
+    public Optional<String> resolveTransactionId(String chatId) {
+        if (chatId == null || chatId.isBlank()) {
+            return Optional.empty();
+        }
+        return buffer(chatId).oldestTransactionId();
+    }
+
+    /**
+     * Records a question and its answer: they are part of the chat's history right away and stored in
+     * the background; once stored, an update of the chat's summary is scheduled.
+     *
+     * @param chatId The logical chat identifier
+     * @param query The user query
+     * @param response The assistant answer
+     * @param category The prompt category, or null for multi-category answers
+     * @param transactionId The related transaction id
+     */
+    public void recordTurn(String chatId, String query, String response, PromptCategory category, String transactionId) {
+        List<ChatMessageEntity> messages = List.of(
+                newChatMessage(chatId, ChatMessageRole.USER.value(), query, category, transactionId),
+                newChatMessage(chatId, ChatMessageRole.ASSISTANT.value(), response, category, transactionId));
+        // The summary update reads the stored messages, so it waits for them to be written
+        chatMessageWriter.write(messages, summaryEnabled ? () -> scheduleSummaryUpdate(chatId) : null);
+        // Loads the chat if it is not buffered; messages already stored are then part of it
+        ChatBuffer buffer = buffer(chatId);
+        for (ChatMessageEntity entity : messages) {
+            buffer.add(toBuffered(entity));
+        }
+    }
+
+    /**
+     * @return Number of most recent messages per chat that are read back from the database; older
+     *         messages are only needed until they are summarized
+     */
+    public int recentMessagesRead() {
+        return bufferSize;
+    }
+
+    /**
+     * Drops the buffered messages and summaries of chats whose stored history was deleted.
+     *
+     * @param chatIds The logical chat identifiers
+     */
+    public void evict(Collection<String> chatIds) {
+        buffers.invalidateAll(chatIds);
+    }
+
+    /**
+     * Creates a chat message entity to store.
+     *
+     * @param chatId        The logical chat identifier
+     * @param role          The chat role (user/assistant)
+     * @param content       The message content
+     * @param category      The prompt category
+     * @param transactionId The related transaction id
+     */
+    private static ChatMessageEntity newChatMessage(String chatId, String role, String content,
+                                                    PromptCategory category, String transactionId) {
+        ChatMessageEntity entity = new ChatMessageEntity();
+        entity.setChatId(chatId);
+        entity.setRole(role);
+        entity.setContent(content);
+        entity.setPromptCategory(category != null ? category.name() : null);
+        entity.setTransactionId(transactionId);
+        entity.setCreatedAt(LocalDateTime.now());
+        return entity;
+    }
+
+    private ChatBuffer buffer(String chatId) {
+        return buffers.get(chatId, this::loadBuffer);
+    }
+
+    private ChatBuffer loadBuffer(String chatId) {
+        List<ChatMessageEntity> recent =
+                chatMessageRepository.findByChatIdOrderByIdDesc(chatId, PageRequest.of(0, bufferSize));
+        ChatBuffer buffer = new ChatBuffer(bufferSize, historyMessages);
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            buffer.add(toBuffered(recent.get(i)));
+        }
+        if (summaryEnabled) {
+            chatSummaryRepository.findById(chatId)
+                    .ifPresent(summary -> buffer.setSummary(summary.getSummary(), summary.getSummarizedThroughId()));
+        }
+        return buffer;
+    }
+
+    private static ChatBuffer.Message toBuffered(ChatMessageEntity entity) {
+        return new ChatBuffer.Message(entity.getId(), entity.getRole(), entity.getContent(), entity.getTransactionId());
+    }
+
+    /**
+     * Runs a summary update for the chat, unless one is already running; that one then runs once more.
+     */
+    private void scheduleSummaryUpdate(String chatId) {
+        boolean running = updates.compute(chatId, (id, rerun) -> rerun != null);
+        if (running) {
+            return;
+        }
+        try {
+            summaryExecutor.execute(() -> runSummaryUpdates(chatId));
+        } catch (TaskRejectedException e) {
+            updates.remove(chatId);
+            logger.warn("Summary update queue full, chat {} will be summarized after its next turn", chatId);
+        }
+    }
+
+    private void runSummaryUpdates(String chatId) {
+        try {
+            do {
+                llmExecutor.withLane(LlmPriority.BACKGROUND, () -> {
+                    updateSummary(chatId);
+                    return null;
+                });
+            } while (updates.compute(chatId, (id, rerun) -> Boolean.TRUE.equals(rerun) ? Boolean.FALSE : null) != null);
+        } catch (RuntimeException e) {
+            updates.remove(chatId);
+            logger.warn("Failed to update summary of chat {}, retrying after its next turn: {}", chatId, e.getMessage());
+        }
+    }
+
+    /**
+     * Folds all messages of the chat that are neither summarized yet nor among the most recent ones
+     * into its summary, in passes that each fit one summarization prompt.
+     */
+    private void updateSummary(String chatId) {
+        while (true) {
+            ChatSummaryEntity summary = chatSummaryRepository.findById(chatId).orElse(null);
+            long summarizedThroughId = summary != null ? summary.getSummarizedThroughId() : 0;
+            // If more messages follow this page, none of the page is among the most recent ones
+            List<ChatMessageEntity> pending = chatMessageRepository.findByChatIdAndIdGreaterThanOrderByIdAsc(
+                    chatId, summarizedThroughId, PageRequest.of(0, MAX_FOLD_MESSAGES + recentMessages));
+            int foldable = pending.size() - recentMessages;
+            if (foldable <= 0) {
+                return;
+            }
+
+            String previousSummary = summary != null ? summary.getSummary() : null;
+            int tokenBudget = openAIService.conversationSummaryTokenBudget(previousSummary, summaryMaxTokens);
+            List<ChatMessage> messages = new ArrayList<>(foldable);
+            int tokens = 0;
+            long foldedThroughId = summarizedThroughId;
+            for (ChatMessageEntity entity : pending.subList(0, foldable)) {
+                if (isConversationMessage(entity)) {
+                    String content = entity.getContent();
+                    int contentTokens = tokenCounter.count(content);
+                    if (!messages.isEmpty() && tokens + contentTokens > tokenBudget) {
+                        break;
+                    }
+                    if (contentTokens > tokenBudget) {
+                        // A single oversized answer: keep its beginning (tokens are at least two characters on average)
+                        content = content.substring(0, Math.min(content.length(), 2 * tokenBudget));
+                        contentTokens = tokenCounter.count(content);
+                    }
+                    messages.add(new ChatMessage(entity.getRole(), content));
+                    tokens += contentTokens;
+                }
+                foldedThroughId = entity.getId();
+            }
+
+            String updated = messages.isEmpty()
+                    ? previousSummary
+                    : openAIService.summarizeConversation(previousSummary, messages, summaryMaxTokens);
+            if (summary == null) {
+                summary = new ChatSummaryEntity();
+                summary.setChatId(chatId);
+            }
+            summary.setSummary(updated != null ? updated : "");
+            summary.setSummarizedThroughId(foldedThroughId);
+            summary.setUpdatedAt(LocalDateTime.now());
+            chatSummaryRepository.save(summary);
+            ChatBuffer buffer = buffers.getIfPresent(chatId);
+            if (buffer != null) {
+                buffer.setSummary(summary.getSummary(), foldedThroughId);
+            }
+            logger.info("Summarized chat {} through message {} ({} messages folded in)", chatId, foldedThroughId, messages.size());
+        }
+    }
+
+    private static boolean isConversationMessage(ChatMessageEntity entity) {
+        return entity.getContent() != null
+                && (ChatMessageRole.USER.value().equals(entity.getRole())
+                || ChatMessageRole.ASSISTANT.value().equals(entity.getRole()));
+    }
+}
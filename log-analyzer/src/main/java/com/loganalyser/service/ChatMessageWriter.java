@@ -0,0 +1,206 @@
+package com.loganalyser.service;
+
+import com.loganalyser.entity.ChatMessageEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence of chat messages.
+ * <p>
+ * Messages get their IDs right away, so they can be referenced before they are stored, and are then
+ * queued; a single writer thread inserts them in JDBC batches across requests as soon as
+ * {@code chat.write-behind.batch-size} messages are queued, or {@code chat.write-behind.flush-interval-ms}
+ * after the first one, whichever comes first. When the queue ({@code chat.write-behind.queue-capacity}
+ * turns) is full, or after shutdown has begun, messages are written on the caller's thread instead. The
+ * queue is drained before the application context closes.
+ * <p>
+ * IDs come from {@code chat_message_seq}, which is incremented by {@link #ID_BLOCK_SIZE}: each sequence
+ * value reserves that many IDs, handed out from memory (pooled-lo), so a database round trip is needed
+ * only once per block.
+ */
+@Component
+public class ChatMessageWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageWriter.class);
+
+    /**
+     * Must match the INCREMENT BY of {@code chat_message_seq}.
+     */
+    static final int ID_BLOCK_SIZE = 50;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    // Guarded by this
+    private long nextId;
+    private long idBlockEnd;
+
+    public ChatMessageWriter(EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${chat.write-behind.enabled:true}") boolean enabled,
+                             @Value("${chat.write-behind.batch-size:50}") int batchSize,
+                             @Value("${chat.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                             @Value("${chat.write-behind.queue-capacity:10000}") int queueCapacity) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::runWriter, "chat-writer");
+        this.writerThread.setDaemon(true);
+        logger.info("Chat message write-behind enabled: {}, batch size {}, flush interval {} ms, queue capacity {}",
+                enabled, batchSize, flushIntervalMs, queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Assigns IDs to the messages and queues them for insertion.
+     *
+     * @param messages New chat messages without IDs
+     * @param afterWrite Run once the messages are stored (on the writer thread), or null
+     */
+    public void write(List<ChatMessageEntity> messages, Runnable afterWrite) {
+        for (ChatMessageEntity message : messages) {
+            message.setId(nextId());
+        }
+        PendingWrite pending = new PendingWrite(messages, afterWrite);
+        if (!enabled || !running || !queue.offer(pending)) {
+            if (enabled && running) {
+                logger.warn("Chat write-behind queue full, writing {} messages synchronously", messages.size());
+            }
+            insert(List.of(pending));
+        }
+    }
+
+    /**
+     * Stops the writer thread once it has written everything queued.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (!enabled) {
+            return;
+        }
+        writerThread.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + 30_000);
+        if (!queue.isEmpty()) {
+            logger.warn("Chat writer did not drain in time, writing {} queued turns synchronously", queue.size());
+            List<PendingWrite> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            insert(remaining);
+        }
+    }
+
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                int rows = first.messages().size();
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (rows < batchSize) {
+                    PendingWrite next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || !running) {
+                            break;
+                        }
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                    rows += next.messages().size();
+                }
+                insert(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Chat writer interrupted, {} queued turns left for shutdown", queue.size());
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Chat writer failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Inserts the messages in one transaction (JDBC-batched by Hibernate); if that fails, turn by turn,
+     * so one bad turn does not lose the others.
+     */
+    private void insert(List<PendingWrite> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(this::persist));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                logger.error("Failed to store {} chat messages of chat {}: {}", batch.get(0).messages().size(),
+                        batch.get(0).messages().get(0).getChatId(), e.getMessage(), e);
+                return;
+            }
+            logger.warn("Batch insert of {} chat turns failed, retrying turn by turn: {}", batch.size(), e.getMessage());
+            for (PendingWrite pending : batch) {
+                insert(List.of(pending));
+            }
+            return;
+        }
+        for (PendingWrite pending : batch) {
+            if (pending.afterWrite() != null) {
+                try {
+                    pending.afterWrite().run();
+                } catch (RuntimeException e) {
+                    logger.warn("After-write action failed: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void persist(PendingWrite pending) {
+        for (ChatMessageEntity message : pending.messages()) {
+            entityManager.persist(message);
+        }
+    }
+
+    private synchronized long nextId() {
+        if (nextId >= idBlockEnd) {
+            long blockStart = ((Number) entityManager.createNativeQuery("SELECT NEXT VALUE FOR chat_message_seq")
+                    .getSingleResult()).longValue();
+            nextId = blockStart;
+            idBlockEnd = blockStart + ID_BLOCK_SIZE;
+        }
+        return nextId++;
+    }
+
+    private record PendingWrite(List<ChatMessageEntity> messages, Runnable afterWrite) {
+    }
+}
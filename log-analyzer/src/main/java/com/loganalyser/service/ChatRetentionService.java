@@ -0,0 +1,107 @@
+package com.loganalyser.service;
+
+import com.loganalyser.repository.ChatMessageRepository;
+import com.loganalyser.repository.ChatSummaryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Keeps the stored chat history bounded.
+ * <p>
+ * Every {@code chat.retention.interval-ms}, chats without a message for {@code chat.retention.idle-hours}
+ * are deleted with their summary and dropped from the {@link ChatHistoryService} buffer; a follow-up
+ * question with their chatId starts a new chat. With {@code chat.retention.compact-summarized}, messages
+ * of active chats that are already folded into the chat's summary and not among its most recent ones
+ * are deleted too, as they are never read again.
+ */
+@Service
+public class ChatRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatRetentionService.class);
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSummaryRepository chatSummaryRepository;
+    private final ChatHistoryService chatHistoryService;
+    private final boolean enabled;
+    private final Duration idleTime;
+    private final boolean compactSummarized;
+    private final int batchSize;
+
+    /**
+     * Constructor for ChatRetentionService.
+     *
+     * @param chatMessageRepository The chat message repository
+     * @param chatSummaryRepository The chat summary repository
+     * @param chatHistoryService The chat history service buffering active chats
+     * @param enabled Whether old chat history is deleted
+     * @param idleHours Hours without a message after which a chat is deleted
+     * @param compactSummarized Whether summarized messages of active chats are deleted
+     * @param batchSize Number of chats deleted per statement
+     */
+    public ChatRetentionService(ChatMessageRepository chatMessageRepository,
+                                ChatSummaryRepository chatSummaryRepository,
+                                ChatHistoryService chatHistoryService,
+                                @Value("${chat.retention.enabled:true}") boolean enabled,
+                                @Value("${chat.retention.idle-hours:168}") long idleHours,
+                                @Value("${chat.retention.compact-summarized:true}") boolean compactSummarized,
+                                @Value("${chat.retention.batch-size:500}") int batchSize) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatSummaryRepository = chatSummaryRepository;
+        this.chatHistoryService = chatHistoryService;
+        this.enabled = enabled;
+        this.idleTime = Duration.ofHours(idleHours);
+        this.compactSummarized = compactSummarized;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Deletes idle chats and compacts active ones.
+     */
+    @Scheduled(initialDelayString = "${chat.retention.initial-delay-ms:60000}",
+            fixedDelayString = "${chat.retention.interval-ms:3600000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            deleteIdleChats(LocalDateTime.now().minus(idleTime));
+            if (compactSummarized) {
+                int compacted = chatMessageRepository.deleteSummarizedMessages(chatHistoryService.recentMessagesRead());
+                if (compacted > 0) {
+                    logger.info("Deleted {} chat messages covered by their chat's summary", compacted);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Chat retention failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void deleteIdleChats(LocalDateTime idleSince) {
+        int chats = 0;
+        int messages = 0;
+        List<String> chatIds;
+        do {
+            chatIds = chatMessageRepository.findChatIdsIdleSince(idleSince, PageRequest.of(0, batchSize));
+            if (chatIds.isEmpty()) {
+                break;
+            }
+            messages += chatMessageRepository.deleteByChatIdInAndCreatedAtBefore(chatIds, idleSince);
+            chatSummaryRepository.deleteByChatIdInAndUpdatedAtBefore(chatIds, idleSince);
+            chatHistoryService.evict(chatIds);
+            chats += chatIds.size();
+        } while (chatIds.size() == batchSize);
+        // Summaries saved after their chat was deleted, e.g. by an update still running at the time
+        chatSummaryRepository.deleteOrphanedBefore(idleSince);
+        if (chats > 0) {
+            logger.info("Deleted {} chats idle since {} ({} messages)", chats, idleSince, messages);
+        }
+    }
+}
@@ -7,10 +7,20 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 public class ElasticsearchService {
@@ -18,9 +28,12 @@ public class ElasticsearchService {
     private static final Logger logger = LoggerFactory.getLogger(ElasticsearchService.class);
 
     private final LogDocumentRepository logDocumentRepository;
+    private final ElasticsearchOperations elasticsearchOperations;
 
-    public ElasticsearchService(LogDocumentRepository logDocumentRepository) {
+    public ElasticsearchService(LogDocumentRepository logDocumentRepository,
+                                ElasticsearchOperations elasticsearchOperations) {
         this.logDocumentRepository = logDocumentRepository;
+        this.elasticsearchOperations = elasticsearchOperations;
     }
 
     /**
@@ -63,7 +76,8 @@ public class ElasticsearchService {
     }
 
     /**
-     * Get all logs for a transaction ID (fetching in pages)
+     * Get all logs for a transaction ID (fetching in pages), in global ordering key order
+     * so that lines from different source files are interleaved chronologically
      * @param transactionId The transaction ID
      * @param pageSize Size of each page
      * @return List of all log lines
@@ -76,14 +90,11 @@ public class ElasticsearchService {
         Page<LogDocument> result;
         
         do {
-            Pageable pageable = PageRequest.of(page, pageSize);
+            Pageable pageable = PageRequest.of(page, pageSize, Sort.by("orderingKey"));
             result = logDocumentRepository.findByTransactionId(transactionId, pageable);
             
             for (LogDocument doc : result.getContent()) {
-                String logLine = String.format("[Line %d] %s", 
-                        doc.getLineNumber() != null ? doc.getLineNumber() : 0, 
-                        doc.getLogLine());
-                allLogs.add(logLine);
+                allLogs.add(formatLogLine(doc));
             }
             
             page++;
@@ -94,6 +105,67 @@ public class ElasticsearchService {
         return allLogs;
     }
 
+    /**
+     * Get the logs of many transactions with a single multi-search request, in global ordering key order.
+     * Like {@link #getAllLogsByTransactionId}, a transaction without logs under its own ID falls back to
+     * the logs indexed under its UUID; both lookups are part of the same request.
+     * @param uuidsByTransactionId Transaction IDs mapped to their UUID (null if none)
+     * @param maxLogsPerTransaction Maximum number of log lines returned per transaction
+     * @return Log lines per transaction ID, in the iteration order of the input; empty if none were found
+     */
+    public Map<String, List<String>> getLogsByTransactionIds(Map<String, String> uuidsByTransactionId,
+                                                             int maxLogsPerTransaction) {
+        Map<String, List<String>> logsByTransactionId = new LinkedHashMap<>();
+        if (uuidsByTransactionId.isEmpty()) {
+            return logsByTransactionId;
+        }
+
+        List<Query> queries = new ArrayList<>();
+        List<String> owners = new ArrayList<>();
+        for (Map.Entry<String, String> entry : uuidsByTransactionId.entrySet()) {
+            queries.add(transactionQuery(entry.getKey(), maxLogsPerTransaction));
+            owners.add(entry.getKey());
+            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                queries.add(transactionQuery(entry.getValue(), maxLogsPerTransaction));
+                owners.add(entry.getKey());
+            }
+        }
+
+        logger.info("Fetching logs for {} transactions with one multi-search of {} queries",
+                uuidsByTransactionId.size(), queries.size());
+        List<SearchHits<LogDocument>> responses = elasticsearchOperations.multiSearch(queries, LogDocument.class);
+
+        for (int i = 0; i < responses.size(); i++) {
+            String transactionId = owners.get(i);
+            SearchHits<LogDocument> hits = responses.get(i);
+            if (logsByTransactionId.containsKey(transactionId) && !logsByTransactionId.get(transactionId).isEmpty()) {
+                // Logs found under the transaction ID itself; the UUID lookup is only a fallback
+                continue;
+            }
+            if (hits.getTotalHits() > hits.getSearchHits().size()) {
+                logger.warn("Transaction ID {} has {} logs, returning the first {}",
+                        transactionId, hits.getTotalHits(), hits.getSearchHits().size());
+            }
+            List<String> logs = new ArrayList<>(hits.getSearchHits().size());
+            for (SearchHit<LogDocument> hit : hits.getSearchHits()) {
+                logs.add(formatLogLine(hit.getContent()));
+            }
+            logsByTransactionId.put(transactionId, logs);
+        }
+        return logsByTransactionId;
+    }
+
+    private static Query transactionQuery(String transactionId, int size) {
+        return new CriteriaQuery(Criteria.where("transactionId").is(transactionId))
+                .setPageable(PageRequest.of(0, size, Sort.by("orderingKey")));
+    }
+
+    private static String formatLogLine(LogDocument doc) {
+        return String.format("[Line %d] %s",
+                doc.getLineNumber() != null ? doc.getLineNumber() : 0,
+                doc.getLogLine());
+    }
+
     /**
      * Index a single log document
      * @param logDocument The log document to index
@@ -116,6 +188,16 @@ public class ElasticsearchService {
         return result;
     }
 
+    /**
+     * Find the indexed log with the highest byte offset for a source.
+     * Used as the resume checkpoint when re-indexing a file.
+     * @param sourceId The source identity
+     * @return The last indexed log document of the source, if any
+     */
+    public Optional<LogDocument> findLastIndexedLog(String sourceId) {
+        return logDocumentRepository.findFirstBySourceIdOrderByByteOffsetDesc(sourceId);
+    }
+
     /**
      * Count logs for a transaction ID
      * @param transactionId The transaction ID
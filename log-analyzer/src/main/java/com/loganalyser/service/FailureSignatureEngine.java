@@ -0,0 +1,331 @@
+package com.loganalyser.service;
+
+import com.loganalyser.dto.FailureSignature;
+import com.loganalyser.enums.PromptCategory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Deterministic root cause analysis for known, recurring failures (database timeouts, gateway 5xx,
+ * insufficient balance, ...).
+ * <p>
+ * Every {@code analysis.signatures.rules.<name>.*} entry is a {@link FailureSignature}. At startup all
+ * rule patterns are compiled into one case-insensitive alternation with a named group per rule, so
+ * matching the selected logs against every rule is a single pass over the lines.
+ * <p>
+ * The matches are used in three ways:
+ * <ul>
+ *     <li>if exactly one rule with at least {@code analysis.signatures.min-confidence} matched, on an
+ *         ERROR/FATAL line or at least {@code analysis.signatures.min-repeats} times, the first question of
+ *         a chat in one of {@code analysis.signatures.answer-categories} that asks for a root cause (contains
+ *         one of {@code analysis.signatures.root-cause-phrases}) is answered with a templated RCA without
+ *         calling the LLM;</li>
+ *     <li>otherwise the matched signatures are added to the LLM prompt as hints;</li>
+ *     <li>if the LLM call fails, the best matching signature is rendered as a fallback answer.</li>
+ * </ul>
+ * Publishes {@code analysis.signatures} (counter per rule and outcome).
+ */
+@Component
+public class FailureSignatureEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(FailureSignatureEngine.class);
+
+    private static final int MAX_EXAMPLES = 3;
+    private static final int MAX_EXAMPLE_LENGTH = 300;
+
+    private static final Pattern ERROR_LEVEL = Pattern.compile("\\b(?:ERROR|FATAL|SEVERE)\\b");
+
+    private final boolean enabled;
+    private final double minConfidence;
+    private final Set<PromptCategory> answerCategories;
+    private final Pattern rootCauseQuestion;
+    private final int minRepeats;
+    private final List<Rule> rules = new ArrayList<>();
+    private final Pattern combined;
+    private final MeterRegistry meterRegistry;
+
+    public FailureSignatureEngine(Environment environment,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${analysis.signatures.enabled:true}") boolean enabled,
+                                  @Value("${analysis.signatures.min-confidence:0.8}") double minConfidence,
+                                  @Value("${analysis.signatures.answer-categories:DEVELOPER_RCA}") Set<PromptCategory> answerCategories,
+                                  @Value("${analysis.signatures.root-cause-phrases:why,root cause,rca,cause,caused,reason,what happened,went wrong}") List<String> rootCausePhrases,
+                                  @Value("${analysis.signatures.min-repeats:2}") int minRepeats) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.minConfidence = minConfidence;
+        this.answerCategories = answerCategories.isEmpty()
+                ? EnumSet.noneOf(PromptCategory.class)
+                : EnumSet.copyOf(answerCategories);
+        this.minRepeats = minRepeats;
+
+        // Whole words or phrases, any whitespace between the words of a phrase
+        List<String> phrases = rootCausePhrases.stream()
+                .map(String::trim)
+                .filter(phrase -> !phrase.isEmpty())
+                .map(phrase -> String.join("\\s+", Arrays.stream(phrase.split("\\s+")).map(Pattern::quote).toList()))
+                .toList();
+        this.rootCauseQuestion = phrases.isEmpty()
+                ? null
+                : Pattern.compile("\\b(?:" + String.join("|", phrases) + ")\\b", Pattern.CASE_INSENSITIVE);
+
+        // Sorted by name so the alternation order, and thus which rule wins an overlapping match, is stable
+        Map<String, FailureSignature> signatures = new TreeMap<>(Binder.get(environment)
+                .bind("analysis.signatures.rules", Bindable.mapOf(String.class, FailureSignature.class))
+                .orElse(Map.of()));
+
+        StringBuilder alternation = new StringBuilder();
+        for (Map.Entry<String, FailureSignature> entry : signatures.entrySet()) {
+            try {
+                Pattern.compile(entry.getValue().pattern());
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid pattern for failure signature '" + entry.getKey() + "': " + e.getMessage(), e);
+            }
+            String group = "r" + rules.size();
+            rules.add(new Rule(entry.getKey(), group, entry.getValue()));
+            if (!alternation.isEmpty()) {
+                alternation.append('|');
+            }
+            alternation.append("(?<").append(group).append('>').append(entry.getValue().pattern()).append(')');
+        }
+        this.combined = rules.isEmpty() ? null : Pattern.compile(alternation.toString(), Pattern.CASE_INSENSITIVE);
+
+        logger.info("Failure signature engine: {} rules {}, min confidence {}, answers categories {}",
+                rules.size(), signatures.keySet(), minConfidence, this.answerCategories);
+    }
+
+    /**
+     * Matches the log lines against all rules in one pass.
+     *
+     * @param logs The selected log lines
+     * @return The matched signatures, most confident first
+     */
+    public SignatureMatches match(List<String> logs) {
+        if (!enabled || combined == null || logs == null || logs.isEmpty()) {
+            return SignatureMatches.NONE;
+        }
+
+        int[] hits = new int[rules.size()];
+        int[] errorHits = new int[rules.size()];
+        int[] lastHitLine = new int[rules.size()];
+        List<List<String>> examples = new ArrayList<>(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            examples.add(new ArrayList<>(MAX_EXAMPLES));
+            lastHitLine[i] = -1;
+        }
+
+        Matcher matcher = combined.matcher("");
+        for (int lineIndex = 0; lineIndex < logs.size(); lineIndex++) {
+            String line = logs.get(lineIndex);
+            if (line == null) {
+                continue;
+            }
+            matcher.reset(line);
+            int occurrences = -1;
+            boolean errorLine = false;
+            while (matcher.find()) {
+                int rule = matchedRule(matcher);
+                if (lastHitLine[rule] == lineIndex) {
+                    continue;
+                }
+                if (occurrences < 0) {
+                    // A line collapsed from repeated lines stands for all of them
+                    occurrences = LogTemplateMiner.occurrences(line);
+                    errorLine = ERROR_LEVEL.matcher(line).find();
+                }
+                lastHitLine[rule] = lineIndex;
+                hits[rule] += occurrences;
+                if (errorLine) {
+                    errorHits[rule] += occurrences;
+                }
+                List<String> ruleExamples = examples.get(rule);
+                if (ruleExamples.size() < MAX_EXAMPLES) {
+                    ruleExamples.add(line.length() <= MAX_EXAMPLE_LENGTH ? line : line.substring(0, MAX_EXAMPLE_LENGTH) + "...");
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            if (hits[i] > 0) {
+                Rule rule = rules.get(i);
+                matches.add(new Match(rule.name(), rule.signature(), hits[i], errorHits[i], List.copyOf(examples.get(i))));
+            }
+        }
+        matches.sort(Comparator.comparingDouble((Match match) -> match.signature().confidence()).reversed()
+                .thenComparing(Comparator.comparingInt(Match::hits).reversed()));
+        if (!matches.isEmpty()) {
+            logger.info("Matched failure signatures: {}", matches.stream().map(m -> m.rule() + " x" + m.hits()).toList());
+        }
+        return new SignatureMatches(List.copyOf(matches));
+    }
+
+    /**
+     * Returns a templated RCA if the question asks for a root cause and the matches identify the failure
+     * with enough confidence: exactly one rule at or above the minimum confidence matched, on an error line
+     * or repeatedly, the category is answered by rules, and the query is not a follow-up in an existing chat.
+     *
+     * @param transactionId The transaction ID
+     * @param query The question
+     * @param category The prompt category
+     * @param followUp Whether the query continues an existing chat
+     * @param matches The matched signatures
+     * @return The templated RCA, or empty if the LLM should answer
+     */
+    public Optional<String> instantAnswer(String transactionId, String query, PromptCategory category,
+                                          boolean followUp, SignatureMatches matches) {
+        if (followUp || matches.isEmpty() || !answerCategories.contains(category) || !asksForRootCause(query)) {
+            return Optional.empty();
+        }
+        List<Match> decisive = matches.matches().stream()
+                .filter(match -> match.signature().confidence() >= minConfidence)
+                .toList();
+        if (decisive.size() != 1) {
+            return Optional.empty();
+        }
+        Match match = decisive.get(0);
+        if (match.errorHits() == 0 && match.hits() < minRepeats) {
+            // A single mention outside an error line, e.g. a warning that was retried successfully
+            return Optional.empty();
+        }
+        record(match, "answered");
+        logger.info("Answering transaction ID {} from failure signature '{}'", transactionId, match.rule());
+        return Optional.of(render(transactionId, match,
+                "_Answered from the known failure signatures without calling the LLM._"));
+    }
+
+    /**
+     * Renders the matched signatures as hints for the LLM, sent next to the logs.
+     *
+     * @param matches The matched signatures
+     * @return The hints, or an empty string if nothing matched
+     */
+    public String hints(SignatureMatches matches) {
+        if (matches.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(256 * matches.matches().size());
+        sb.append("Known failure signatures detected in the logs ")
+                .append("(hints from rules; confirm or refute them against the logs):");
+        for (Match match : matches.matches()) {
+            record(match, "hinted");
+            sb.append("\n- ").append(match.signature().title())
+                    .append(" [").append(match.rule()).append(", ").append(match.hits()).append(match.hits() == 1 ? " matching line" : " matching lines");
+            if (match.signature().rootCause() != null) {
+                sb.append("; usual cause: ").append(match.signature().rootCause());
+            }
+            sb.append(']');
+        }
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * Renders the best matching signature as an answer when the LLM could not be reached.
+     *
+     * @param transactionId The transaction ID
+     * @param matches The matched signatures
+     * @return The templated RCA, or empty if nothing matched
+     */
+    public Optional<String> fallbackAnswer(String transactionId, SignatureMatches matches) {
+        if (matches.isEmpty()) {
+            return Optional.empty();
+        }
+        Match best = matches.matches().get(0);
+        record(best, "fallback");
+        return Optional.of(render(transactionId, best,
+                "_The LLM is currently unavailable; this answer comes from the best matching known failure signature._"));
+    }
+
+    private String render(String transactionId, Match match, String footer) {
+        FailureSignature signature = match.signature();
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("## ").append(signature.title()).append("\n\n")
+                .append("**Transaction:** ").append(transactionId).append("  \n")
+                .append("**Matched signature:** `").append(match.rule()).append("` (")
+                .append(match.hits()).append(match.hits() == 1 ? " matching log line)" : " matching log lines)").append("\n\n");
+        if (signature.rootCause() != null) {
+            sb.append("### Root Cause\n").append(signature.rootCause()).append("\n\n");
+        }
+        sb.append("### Evidence from Logs\n");
+        for (String example : match.examples()) {
+            sb.append("- `").append(example.replace('`', '\'')).append("`\n");
+        }
+        sb.append('\n');
+        if (signature.remediation() != null) {
+            sb.append("### Suggested Fix\n").append(signature.remediation()).append("\n\n");
+        }
+        sb.append(footer).append('\n');
+        return sb.toString();
+    }
+
+    private boolean asksForRootCause(String query) {
+        return rootCauseQuestion != null && query != null && rootCauseQuestion.matcher(query).find();
+    }
+
+    private int matchedRule(Matcher matcher) {
+        for (int i = 0; i < rules.size(); i++) {
+            if (matcher.start(rules.get(i).group()) != -1) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Match without rule group: " + matcher.group());
+    }
+
+    private void record(Match match, String outcome) {
+        Counter.builder("analysis.signatures")
+                .description("Failure signature matches by outcome")
+                .tag("rule", match.rule())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private record Rule(String name, String group, FailureSignature signature) {
+    }
+
+    /**
+     * One signature that matched.
+     *
+     * @param rule The rule name
+     * @param signature The signature
+     * @param hits Number of matching log lines, counting each line a template line was collapsed from
+     * @param errorHits Number of those on ERROR, FATAL or SEVERE lines
+     * @param examples The first few matching lines
+     */
+    public record Match(String rule, FailureSignature signature, int hits, int errorHits, List<String> examples) {
+    }
+
+    /**
+     * The signatures that matched a transaction's logs, most confident first.
+     *
+     * @param matches The matches
+     */
+    public record SignatureMatches(List<Match> matches) {
+
+        static final SignatureMatches NONE = new SignatureMatches(List.of());
+
+        public boolean isEmpty() {
+            return matches.isEmpty();
+        }
+    }
+}
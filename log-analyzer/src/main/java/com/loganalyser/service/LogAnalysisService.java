@@ -1,23 +1,37 @@
 package com.loganalyser.service;
 
+import com.loganalyser.concurrent.SingleFlight;
 import com.loganalyser.dto.AnalysisResult;
-import com.loganalyser.entity.ChatMessageEntity;
 import com.loganalyser.entity.Transaction;
 import com.loganalyser.enums.PromptCategory;
-import com.loganalyser.repository.ChatMessageRepository;
+import com.loganalyser.llm.LlmExecutor;
+import com.loganalyser.llm.LlmRejectedException;
 import com.loganalyser.repository.TransactionRepository;
 import com.theokanning.openai.completion.chat.ChatMessage;
-import com.theokanning.openai.completion.chat.ChatMessageRole;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Service for orchestrating log analysis workflow.
@@ -35,11 +49,32 @@ public class LogAnalysisService {
     private final ElasticsearchService elasticsearchService;
     private final OpenAIService openAIService;
     private final HtmlFormatterService htmlFormatterService;
-    private final ChatMessageRepository chatMessageRepository;
+    private final ChatHistoryService chatHistoryService;
+    private final AnalysisResponseCache responseCache;
+    private final TokenCounter tokenCounter;
+    private final LogTemplateMiner templateMiner;
+    private final LogRelevanceScorer relevanceScorer;
+    private final LogChunkSummarizer chunkSummarizer;
+    private final FailureSignatureEngine signatureEngine;
+    private final LlmExecutor llmExecutor;
+    private final SingleFlight<FlightKey, FlightResult> singleFlight;
+    private final ThreadPoolTaskExecutor analysisExecutor;
 
     @Value("${elasticsearch.page.size:100}")
     private int pageSize;
 
+    @Value("${analysis.map-reduce.enabled:true}")
+    private boolean mapReduceEnabled;
+
+    @Value("${analysis.coalesce.wait-timeout-ms:120000}")
+    private long coalesceWaitTimeoutMs;
+
+    @Value("${analysis.multi-transaction.max-transactions:5}")
+    private int maxTransactionsPerQuery;
+
+    @Value("${analysis.multi-transaction.max-logs-per-transaction:5000}")
+    private int maxLogsPerQueriedTransaction;
+
     /**
      * Constructor for LogAnalysisService.
      *
@@ -47,19 +82,44 @@ public class LogAnalysisService {
      * @param elasticsearchService The Elasticsearch service
      * @param openAIService The OpenAI service
      * @param htmlFormatterService The HTML formatter service
-     * @param chatMessageRepository The chat message repository
+     * @param chatHistoryService The chat history sent with follow-up questions
+     * @param responseCache The cache of analysis responses
+     * @param tokenCounter The token counter for the configured model
+     * @param templateMiner The miner collapsing repetitive log lines into templates
+     * @param relevanceScorer The keyword scorer ranking log lines by relevance
+     * @param chunkSummarizer The summarizer for logs that do not fit into one prompt
+     * @param signatureEngine The matcher of known failure signatures
+     * @param llmExecutor The admission control for LLM calls
+     * @param analysisExecutor The executor running coalesced analyses
      */
     public LogAnalysisService(
             TransactionRepository transactionRepository,
             ElasticsearchService elasticsearchService,
             OpenAIService openAIService,
             HtmlFormatterService htmlFormatterService,
-            ChatMessageRepository chatMessageRepository) {
+            ChatHistoryService chatHistoryService,
+            AnalysisResponseCache responseCache,
+            TokenCounter tokenCounter,
+            LogTemplateMiner templateMiner,
+            LogRelevanceScorer relevanceScorer,
+            LogChunkSummarizer chunkSummarizer,
+            FailureSignatureEngine signatureEngine,
+            LlmExecutor llmExecutor,
+            @Qualifier("analysisExecutor") ThreadPoolTaskExecutor analysisExecutor) {
         this.transactionRepository = transactionRepository;
         this.elasticsearchService = elasticsearchService;
         this.openAIService = openAIService;
         this.htmlFormatterService = htmlFormatterService;
-        this.chatMessageRepository = chatMessageRepository;
+        this.chatHistoryService = chatHistoryService;
+        this.responseCache = responseCache;
+        this.tokenCounter = tokenCounter;
+        this.templateMiner = templateMiner;
+        this.relevanceScorer = relevanceScorer;
+        this.chunkSummarizer = chunkSummarizer;
+        this.signatureEngine = signatureEngine;
+        this.llmExecutor = llmExecutor;
+        this.analysisExecutor = analysisExecutor;
+        this.singleFlight = new SingleFlight<>(analysisExecutor.getThreadPoolExecutor());
     }
 
     /**
@@ -71,26 +131,7 @@ public class LogAnalysisService {
      * @return Optional containing the resolved transactionId, if any
      */
     public Optional<String> resolveTransactionIdForChat(String chatId) {
-        if (chatId == null || chatId.isBlank()) {
-            return Optional.empty();
-        }
-
-        // Get recent messages in descending order (newest first)
-        List<ChatMessageEntity> recent = chatMessageRepository.findTop10ByChatIdOrderByCreatedAtDesc(chatId);
-        if (recent.isEmpty()) {
-            return Optional.empty();
-        }
-
-        // Iterate from oldest to newest to find the first message with a transactionId
-        for (int i = recent.size() - 1; i >= 0; i--) {
-            ChatMessageEntity msg = recent.get(i);
-            String txnId = msg.getTransactionId();
-            if (txnId != null && !txnId.isBlank()) {
-                return Optional.of(txnId);
-            }
-        }
-
-        return Optional.empty();
+        return chatHistoryService.resolveTransactionId(chatId);
     }
 
     /**
@@ -120,9 +161,74 @@ public class LogAnalysisService {
         return result.response();
     }
 
+    /**
+     * Chat-aware analysis for one or more prompt categories: a single category is analyzed with
+     * {@link #analyzeQueryWithChat}, several with {@link #analyzeQueryMultiCategory}.
+     *
+     * @param transactionId The transaction ID
+     * @param query The query string
+     * @param categories The prompt categories (at least one)
+     * @param chatId The logical chat identifier (may be null to start a new chat)
+     * @return Analysis result and the effective chatId
+     */
+    public AnalysisResult analyze(String transactionId, String query, List<PromptCategory> categories, String chatId) {
+        if (categories.size() > 1) {
+            return analyzeQueryMultiCategory(transactionId, query, categories, chatId);
+        }
+        return analyzeQueryWithChat(transactionId, query, categories.get(0), chatId);
+    }
+
+    /**
+     * Chat-aware analysis of a question about one or more transactions. IDs that are not known
+     * transactions are ignored as long as one of them is known (e.g. the UUID of a named transaction).
+     * A single known transaction is analyzed with {@link #analyze(String, String, List, String)}, several
+     * with {@link #analyzeQueryMultiTransaction} (at most {@code analysis.multi-transaction.max-transactions}).
+     *
+     * @param transactionIds The transaction IDs named in the query, highest ranked first (at least one)
+     * @param query The query string
+     * @param categories The prompt categories (at least one; only one for several transactions)
+     * @param chatId The logical chat identifier (may be null to start a new chat)
+     * @return Analysis result and the effective chatId
+     * @throws IllegalArgumentException if several transactions are asked about in several categories
+     */
+    public AnalysisResult analyze(List<String> transactionIds, String query, List<PromptCategory> categories,
+                                  String chatId) {
+        if (transactionIds.size() == 1) {
+            return analyze(transactionIds.get(0), query, categories, chatId);
+        }
+
+        Map<String, Transaction> found = new LinkedHashMap<>();
+        for (Transaction transaction : transactionRepository.findByTransactionIdIn(transactionIds)) {
+            found.put(transaction.getTransactionId(), transaction);
+        }
+        List<Transaction> transactions = new ArrayList<>();
+        for (String transactionId : transactionIds) {
+            Transaction transaction = found.get(transactionId);
+            if (transaction != null && transactions.size() < maxTransactionsPerQuery) {
+                transactions.add(transaction);
+            }
+        }
+        if (transactions.size() < found.size()) {
+            logger.warn("Query names {} transactions, analyzing the first {}", found.size(), transactions.size());
+        }
+
+        if (transactions.size() <= 1) {
+            String transactionId = transactions.isEmpty() ? transactionIds.get(0) : transactions.get(0).getTransactionId();
+            return analyze(transactionId, query, categories, chatId);
+        }
+        if (categories.size() > 1) {
+            throw new IllegalArgumentException("Questions about several transactions support a single category only");
+        }
+        return analyzeQueryMultiTransaction(transactions, query, categories.get(0), chatId);
+    }
+
     /**
      * Main orchestration method that processes the query with a specific prompt category and chatId.
-     * Uses the last few user/assistant messages for the given chatId as additional context for OpenAI.
+     * Uses the chat history (summary of earlier turns, then the most recent ones) as additional context for OpenAI.
+     * <p>
+     * Concurrent requests for the same transaction, category, normalized query and chat history are
+     * coalesced: only the first one fetches logs and calls OpenAI, the others wait for its answer.
+     * Each request still records the exchange in its own chat.
      *
      * @param transactionId The transaction ID
      * @param query The query string
@@ -138,13 +244,429 @@ public class LogAnalysisService {
                 ? UUID.randomUUID().toString()
                 : chatId;
 
+        // Build chat history messages from previous stored messages
+        List<ChatMessage> historyMessages = chatHistoryService.history(effectiveChatId);
+
+        // Steps 1-3, shared with identical requests already in flight
+        FlightKey flightKey = new FlightKey(transactionId, category,
+                AnalysisResponseCache.normalizeQuery(query), AnalysisResponseCache.historyDigest(historyMessages));
+        Supplier<FlightResult> analysis = llmExecutor.propagateLane(
+                () -> analyzeTransaction(transactionId, query, category, historyMessages));
+        FlightResult result = runCoalesced(flightKey, analysis::get);
+
+        if (!result.analyzed()) {
+            return new AnalysisResult(result.response(), effectiveChatId);
+        }
+
+        // Persist the new user and assistant messages
+        chatHistoryService.recordTurn(effectiveChatId, query, result.response(), category, transactionId);
+
+        logger.info("Successfully processed query with category: {} and chatId: {}", category, effectiveChatId);
+        return new AnalysisResult(result.response(), effectiveChatId);
+    }
+
+    /**
+     * Analyzes the same transaction and query under several prompt categories in one request.
+     * Logs are fetched and selected once; the category prompts are then sent to OpenAI concurrently,
+     * so latency is that of the slowest category rather than the sum. The answers are combined into a
+     * single markdown document with one section per category, which is stored as one assistant message.
+     * A category that cannot be answered even from the degraded fallbacks gets an error section; the
+     * request fails only if no category could be answered.
+     *
+     * @param transactionId The transaction ID
+     * @param query The query string
+     * @param categories The prompt categories, in the order of the sections
+     * @param chatId The logical chat identifier (may be null to start a new chat)
+     * @return The combined analysis and the effective chatId
+     */
+    public AnalysisResult analyzeQueryMultiCategory(String transactionId, String query, List<PromptCategory> categories,
+                                                    String chatId) {
+        logger.info("Processing multi-category query - Transaction ID: {}, Query: {}, categories: {}, chatId: {}",
+                transactionId, query, categories, chatId);
+
+        String effectiveChatId = (chatId == null || chatId.isBlank())
+                ? UUID.randomUUID().toString()
+                : chatId;
+
+        TransactionLogs transactionLogs = fetchTransactionLogs(transactionId);
+        if (transactionLogs.errorMessage() != null) {
+            return new AnalysisResult(transactionLogs.errorMessage(), effectiveChatId);
+        }
+
+        List<ChatMessage> historyMessages = chatHistoryService.history(effectiveChatId);
+        // Selected once for all categories, so with the keywords common to all of them
+        RelevantLogs relevant = selectRelevantLogsForOpenAI(transactionLogs.logs(), null);
+        List<String> logs = relevant.lines();
+        FailureSignatureEngine.SignatureMatches signatures = signatureEngine.match(logs);
+        boolean followUp = !historyMessages.isEmpty();
+
+        // Serve rule-answered and cached categories directly and work out the log budget of the others
+        Map<PromptCategory, String> responses = new EnumMap<>(PromptCategory.class);
+        Map<PromptCategory, Integer> budgets = new EnumMap<>(PromptCategory.class);
+        String hints = null;
+        for (PromptCategory category : categories) {
+            Optional<String> instant = signatureEngine.instantAnswer(transactionId, query, category, followUp, signatures);
+            if (instant.isPresent()) {
+                responses.put(category, instant.get());
+                continue;
+            }
+            Optional<String> cached = responseCache.get(responseCache.keyFor(transactionId, category, query, logs, historyMessages));
+            if (cached.isPresent()) {
+                logger.info("Serving cached analysis for transaction ID: {} and category: {}", transactionId, category);
+                responses.put(category, cached.get());
+            } else {
+                if (hints == null) {
+                    hints = signatureEngine.hints(signatures);
+                }
+                budgets.put(category, openAIService.logTokenBudget(category, hints));
+            }
+        }
+        String promptHints = hints;
+
+        // Summarize once if the logs do not fit the prompt of any category, and share the summaries
+        List<String> summaries = null;
+        if (mapReduceEnabled) {
+            int summaryBudget = budgets.values().stream()
+                    .filter(budget -> capToTokenBudget(relevant, budget).size() < logs.size())
+                    .mapToInt(Integer::intValue)
+                    .min()
+                    .orElse(-1);
+            if (summaryBudget >= 0) {
+                logger.info("Selected logs exceed the prompt budget, summarizing {} lines in chunks", logs.size());
+                summaries = summarizeLogs(query, relevant, summaryBudget);
+            }
+        }
+
+        Map<PromptCategory, Future<String>> pending = new EnumMap<>(PromptCategory.class);
+        Map<PromptCategory, RuntimeException> failures = new EnumMap<>(PromptCategory.class);
+        try {
+            for (Map.Entry<PromptCategory, Integer> entry : budgets.entrySet()) {
+                PromptCategory category = entry.getKey();
+                List<String> fitted = capToTokenBudget(relevant, entry.getValue());
+                List<String> evidence = fitted.size() < logs.size() && summaries != null
+                        ? capToTokenBudget(summaries, entry.getValue())
+                        : fitted;
+                Supplier<String> analysis = llmExecutor.propagateLane(() -> {
+                    String response;
+                    try {
+                        response = openAIService.analyzeLogs(query, evidence, category, historyMessages, promptHints);
+                    } catch (RuntimeException e) {
+                        return degradedAnswer(transactionId, category, signatures, e);
+                    }
+                    responseCache.put(responseCache.keyFor(transactionId, category, query, logs, historyMessages), response);
+                    return response;
+                });
+                pending.put(category, analysisExecutor.submit(analysis::get));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(coalesceWaitTimeoutMs);
+            for (Map.Entry<PromptCategory, Future<String>> entry : pending.entrySet()) {
+                try {
+                    responses.put(entry.getKey(), entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException e) {
+                    RuntimeException failure = e.getCause() instanceof RuntimeException cause
+                            ? cause
+                            : new IllegalStateException(e.getCause().getMessage(), e.getCause());
+                    logger.warn("Analysis of category {} failed for transaction ID {}: {}",
+                            entry.getKey(), transactionId, failure.getMessage());
+                    failures.put(entry.getKey(), failure);
+                }
+            }
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Analysis did not complete within " + coalesceWaitTimeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for analysis", e);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Too many analyses in progress, try again later", e);
+        } finally {
+            // Interrupts the category analyses still running, which aborts their HTTP calls
+            pending.values().forEach(future -> future.cancel(true));
+        }
+        if (responses.isEmpty() && !failures.isEmpty()) {
+            // Nothing to show, so fail like a single-category analysis
+            throw failures.values().iterator().next();
+        }
+
+        StringBuilder combined = new StringBuilder();
+        for (PromptCategory category : categories) {
+            if (!combined.isEmpty()) {
+                combined.append("\n\n---\n\n");
+            }
+            combined.append("# ").append(category.getDisplayName()).append("\n\n");
+            if (failures.containsKey(category)) {
+                combined.append("_This analysis is currently unavailable: ").append(failures.get(category).getMessage()).append("_");
+            } else {
+                combined.append(responses.get(category));
+            }
+        }
+        String response = combined.toString();
+
+        chatHistoryService.recordTurn(effectiveChatId, query, response, null, transactionId);
+
+        logger.info("Successfully processed multi-category query with categories: {} and chatId: {}", categories, effectiveChatId);
+        return new AnalysisResult(response, effectiveChatId);
+    }
+
+    /**
+     * Answers one question about several transactions, e.g. to compare them, with a single prompt. The
+     * logs of all transactions are fetched with one multi-search; each transaction's selected logs get an
+     * equal share of the prompt's log budget, under a header naming the transaction. The turn is recorded
+     * under the first transaction, so follow-up questions without a transaction ID are about that one.
+     *
+     * @param transactions The transactions, in the order they are presented
+     * @param query The query string
+     * @param category The prompt category to use for personalized analysis
+     * @param chatId The logical chat identifier (may be null to start a new chat)
+     * @return Analysis result from OpenAI (plain text) and the effective chatId
+     */
+    public AnalysisResult analyzeQueryMultiTransaction(List<Transaction> transactions, String query,
+                                                       PromptCategory category, String chatId) {
+        List<String> transactionIds = transactions.stream().map(Transaction::getTransactionId).toList();
+        logger.info("Processing multi-transaction query - Transaction IDs: {}, Query: {}, chatId: {}",
+                transactionIds, query, chatId);
+
+        String effectiveChatId = (chatId == null || chatId.isBlank())
+                ? UUID.randomUUID().toString()
+                : chatId;
+
+        Map<String, String> uuidsByTransactionId = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            uuidsByTransactionId.put(transaction.getTransactionId(), transaction.getUuid());
+        }
+        Map<String, List<String>> rawLogs =
+                elasticsearchService.getLogsByTransactionIds(uuidsByTransactionId, maxLogsPerQueriedTransaction);
+
+        Map<String, RelevantLogs> selected = new LinkedHashMap<>();
+        List<String> allSelected = new ArrayList<>();
+        for (String transactionId : transactionIds) {
+            RelevantLogs relevant = selectRelevantLogsForOpenAI(rawLogs.getOrDefault(transactionId, List.of()), category);
+            selected.put(transactionId, relevant);
+            allSelected.addAll(relevant.lines());
+        }
+        String joinedIds = String.join(", ", transactionIds);
+        if (allSelected.isEmpty()) {
+            return new AnalysisResult("No logs found for transaction IDs: " + joinedIds, effectiveChatId);
+        }
+
+        List<ChatMessage> historyMessages = chatHistoryService.history(effectiveChatId);
+        FailureSignatureEngine.SignatureMatches signatures = signatureEngine.match(allSelected);
+        String hints = signatureEngine.hints(signatures);
+
+        int sectionBudget = openAIService.logTokenBudget(category, hints) / transactions.size();
+        List<String> evidence = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            RelevantLogs relevant = selected.get(transaction.getTransactionId());
+            String header = "=== Transaction " + transaction.getTransactionId()
+                    + (transaction.getUuid() != null ? " (UUID: " + transaction.getUuid() + ")" : "")
+                    + (relevant.lines().isEmpty() ? ": no logs found ===" : " ===");
+            evidence.add(header);
+            evidence.addAll(capToTokenBudget(relevant, sectionBudget - tokenCounter.count(header) - 1));
+        }
+
+        AnalysisResponseCache.Key cacheKey = responseCache.keyFor(joinedIds, category, query, evidence, historyMessages);
+        Optional<String> cached = responseCache.get(cacheKey);
+        String response;
+        if (cached.isPresent()) {
+            logger.info("Serving cached analysis for transaction IDs: {} and category: {}", joinedIds, category);
+            response = cached.get();
+        } else {
+            try {
+                response = openAIService.analyzeLogs(query, evidence, category, historyMessages, hints);
+                responseCache.put(cacheKey, response);
+            } catch (RuntimeException e) {
+                response = degradedAnswer(joinedIds, category, signatures, e);
+            }
+        }
+
+        chatHistoryService.recordTurn(effectiveChatId, query, response, category, transactionIds.get(0));
+
+        logger.info("Successfully processed multi-transaction query with category: {} and chatId: {}", category, effectiveChatId);
+        return new AnalysisResult(response, effectiveChatId);
+    }
+
+    /**
+     * Same as {@link #analyzeQueryWithChat(String, String, PromptCategory, String)}, but streams the
+     * answer: every token produced by OpenAI is handed to {@code onToken} as soon as it arrives.
+     * The complete answer is persisted to the chat history once the stream has finished.
+     * Blocks the calling thread until the answer is complete.
+     *
+     * @param transactionId The transaction ID
+     * @param query The query string
+     * @param category The prompt category to use for personalized analysis
+     * @param chatId The logical chat identifier (may be null to start a new chat)
+     * @param onToken Receives the answer incrementally; an exception thrown here aborts the stream
+     * @return The complete analysis text and the effective chatId
+     * @throws TransactionLogsUnavailableException if the transaction is unknown or has no logs
+     */
+    public AnalysisResult analyzeQueryStreaming(String transactionId, String query, PromptCategory category,
+                                                String chatId, Consumer<String> onToken) {
+        logger.info("Processing streaming query - Transaction ID: {}, Query: {}, chatId: {}", transactionId, query, chatId);
+
+        String effectiveChatId = (chatId == null || chatId.isBlank())
+                ? UUID.randomUUID().toString()
+                : chatId;
+
+        TransactionLogs transactionLogs = fetchTransactionLogs(transactionId);
+        if (transactionLogs.errorMessage() != null) {
+            throw new TransactionLogsUnavailableException(transactionLogs.errorMessage());
+        }
+
+        List<ChatMessage> historyMessages = chatHistoryService.history(effectiveChatId);
+        RelevantLogs relevant = selectRelevantLogsForOpenAI(transactionLogs.logs(), category);
+        List<String> logs = relevant.lines();
+        FailureSignatureEngine.SignatureMatches signatures = signatureEngine.match(logs);
+
+        AnalysisResponseCache.Key cacheKey = responseCache.keyFor(transactionId, category, query, logs, historyMessages);
+        Optional<String> instant = signatureEngine.instantAnswer(transactionId, query, category, !historyMessages.isEmpty(), signatures);
+        Optional<String> cached = instant.isPresent() ? instant : responseCache.get(cacheKey);
+        String response;
+        if (cached.isPresent()) {
+            logger.info("Serving {} analysis for transaction ID: {} and category: {}",
+                    instant.isPresent() ? "rule-based" : "cached", transactionId, category);
+            response = cached.get();
+            onToken.accept(response);
+        } else {
+            String hints = signatureEngine.hints(signatures);
+            try {
+                List<String> evidence = fitLogsToPrompt(query, category, hints, relevant);
+                response = openAIService.streamAnalyzeLogs(query, evidence, category, historyMessages, hints, onToken);
+                responseCache.put(cacheKey, response);
+            } catch (LlmRejectedException e) {
+                // Rejected before the call started, so nothing has been streamed yet
+                response = degradedAnswer(transactionId, category, signatures, e);
+                onToken.accept(response);
+            }
+        }
+
+        chatHistoryService.recordTurn(effectiveChatId, query, response, category, transactionId);
+
+        logger.info("Successfully streamed query with category: {} and chatId: {}", category, effectiveChatId);
+        return new AnalysisResult(response, effectiveChatId);
+    }
+
+    /**
+     * Fetches and selects the transaction's logs and analyzes them, serving identical analyses from the cache.
+     *
+     * @return The answer, or the user-facing message explaining why no analysis was possible
+     */
+    private FlightResult analyzeTransaction(String transactionId, String query, PromptCategory category,
+                                            List<ChatMessage> historyMessages) {
+        // Steps 1 and 2: Look up the transaction and fetch its logs
+        TransactionLogs transactionLogs = fetchTransactionLogs(transactionId);
+        if (transactionLogs.errorMessage() != null) {
+            return new FlightResult(transactionLogs.errorMessage(), false);
+        }
+
+        // Step 3: Select the most relevant logs and analyze them
+        return new FlightResult(analyzeSelectedLogs(transactionId, query, category, historyMessages, transactionLogs.logs()), true);
+    }
+
+    /**
+     * Analyzes logs that were already fetched for a transaction, without chat context or persistence.
+     * Used by batch analyses, which fetch the logs of many transactions at once.
+     *
+     * @param transactionId The transaction ID
+     * @param query The query string
+     * @param category The prompt category
+     * @param rawLogs All log lines of the transaction
+     * @return Analysis result from OpenAI (plain text)
+     */
+    public String analyzeFetchedLogs(String transactionId, String query, PromptCategory category, List<String> rawLogs) {
+        return analyzeSelectedLogs(transactionId, query, category, List.of(), rawLogs);
+    }
+
+    /**
+     * Selects the relevant logs, then answers confident known failure signatures from the rules, serves
+     * identical analyses from the cache and otherwise sends query (with signature hints), logs and
+     * history to OpenAI, falling back to the matched signatures if that fails.
+     */
+    private String analyzeSelectedLogs(String transactionId, String query, PromptCategory category,
+                                       List<ChatMessage> historyMessages, List<String> rawLogs) {
+        RelevantLogs relevant = selectRelevantLogsForOpenAI(rawLogs, category);
+        List<String> logs = relevant.lines();
+
+        FailureSignatureEngine.SignatureMatches signatures = signatureEngine.match(logs);
+        Optional<String> instant = signatureEngine.instantAnswer(transactionId, query, category, !historyMessages.isEmpty(), signatures);
+        if (instant.isPresent()) {
+            return instant.get();
+        }
+
+        AnalysisResponseCache.Key cacheKey = responseCache.keyFor(transactionId, category, query, logs, historyMessages);
+        Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            logger.info("Serving cached analysis for transaction ID: {} and category: {}", transactionId, category);
+            return cached.get();
+        }
+        String hints = signatureEngine.hints(signatures);
+        String response;
+        try {
+            List<String> evidence = fitLogsToPrompt(query, category, hints, relevant);
+            response = openAIService.analyzeLogs(query, evidence, category, historyMessages, hints);
+        } catch (RuntimeException e) {
+            return degradedAnswer(transactionId, category, signatures, e);
+        }
+        responseCache.put(cacheKey, response);
+        return response;
+    }
+
+    /**
+     * Answers without the LLM after its call failed or was rejected (e.g. open circuit): from the best
+     * matching failure signature, otherwise from the latest cached analysis of the transaction in this
+     * category. Rethrows the failure if neither exists. Degraded answers are not cached.
+     */
+    private String degradedAnswer(String transactionId, PromptCategory category,
+                                  FailureSignatureEngine.SignatureMatches signatures, RuntimeException failure) {
+        Optional<String> fallback = signatureEngine.fallbackAnswer(transactionId, signatures);
+        if (fallback.isPresent()) {
+            logger.warn("LLM analysis failed for transaction ID {}, answering from failure signatures: {}",
+                    transactionId, failure.getMessage());
+            return fallback.get();
+        }
+        Optional<String> stale = responseCache.latest(transactionId, category);
+        if (stale.isPresent()) {
+            logger.warn("LLM analysis failed for transaction ID {}, answering with an earlier cached analysis: {}",
+                    transactionId, failure.getMessage());
+            return "_The LLM is currently unavailable; this is an earlier analysis of this transaction, "
+                    + "which may answer a different question._\n\n" + stale.get();
+        }
+        throw failure;
+    }
+
+    /**
+     * Runs the analysis through the single-flight group and unwraps its failures.
+     */
+    private FlightResult runCoalesced(FlightKey key, Callable<FlightResult> analysis) {
+        try {
+            return singleFlight.execute(key, analysis, coalesceWaitTimeoutMs);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Analysis did not complete within " + coalesceWaitTimeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for analysis", e);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Too many analyses in progress, try again later", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Looks up the transaction in the database and fetches all of its logs from Elasticsearch,
+     * falling back to the transaction UUID when nothing is indexed under the transaction ID.
+     *
+     * @param transactionId The transaction ID
+     * @return The log lines, or a user-facing message explaining why there are none
+     */
+    private TransactionLogs fetchTransactionLogs(String transactionId) {
         // Step 1: Search database for transaction ID and get UUID/service ID
         Optional<Transaction> transactionOpt = transactionRepository.findByTransactionId(transactionId);
 
         if (transactionOpt.isEmpty()) {
             logger.warn("Transaction ID not found in database: {}", transactionId);
-            String error = "Error: Transaction ID '" + transactionId + "' not found in database.";
-            return new AnalysisResult(error, effectiveChatId);
+            return TransactionLogs.error("Error: Transaction ID '" + transactionId + "' not found in database.");
         }
 
         Transaction transaction = transactionOpt.get();
@@ -181,164 +703,193 @@ public class LogAnalysisService {
                 String noLogsMessage = "No logs found for transaction ID: " + transactionId +
                         (uuid != null ? " (UUID: " + uuid + ")" : "") +
                         (serviceId != null ? " (Service ID: " + serviceId + ")" : "");
-                return new AnalysisResult(noLogsMessage, effectiveChatId);
+                return TransactionLogs.error(noLogsMessage);
             }
         }
 
         logger.info("Found {} log lines for transaction ID: {} (fetched in paginated form)",
                 logs.size(), transactionId);
-
-        // Select the most relevant logs to stay within OpenAI context window (tokens limit)
-        logs = selectRelevantLogsForOpenAI(logs);
-
-        // Build chat history messages from previous stored messages
-        List<ChatMessage> historyMessages = buildHistoryMessages(effectiveChatId);
-
-        // Step 3: Send query and logs to OpenAI with category (plain text) and history
-        String response = openAIService.analyzeLogs(query, logs, category, historyMessages);
-
-        // Persist the new user and assistant messages
-        persistChatMessage(effectiveChatId, ChatMessageRole.USER.value(), query, category, transactionId);
-        persistChatMessage(effectiveChatId, ChatMessageRole.ASSISTANT.value(), response, category, transactionId);
-
-        logger.info("Successfully processed query with category: {} and chatId: {}", category, effectiveChatId);
-        return new AnalysisResult(response, effectiveChatId);
+        return new TransactionLogs(logs, null);
     }
 
     /**
-     * Selects the most relevant log lines (errors, warnings, exceptions, failures, etc.)
-     * and a small amount of surrounding context, then caps overall size by characters.
-     * This gives OpenAI the highest-signal logs while staying under the model context limit.
+     * Collapses repetitive lines into templates, then selects the most relevant entries and a small
+     * amount of surrounding context, scoring each selected line:
+     * <ul>
+     *     <li>lines containing keywords of the category (errors, warnings, exceptions, failures, etc.,
+     *         see {@link LogRelevanceScorer}) score the weights of their keywords;</li>
+     *     <li>the lines shortly before and after them half that, at least 1;</li>
+     *     <li>the first and last 15 lines, kept for timeline context, score 1.</li>
+     * </ul>
+     * This gives OpenAI the highest-signal logs; {@link #fitLogsToPrompt} then fits them into the
+     * model context limit, highest scores first.
      *
-     * @param logs Full list of log lines
-     * @return Filtered list of log lines
+     * @param rawLogs Full list of log lines
+     * @param category The prompt category whose keywords are scored, or null for the common keywords
+     * @return The selected log lines in their original order, with their scores
      */
-    private List<String> selectRelevantLogsForOpenAI(List<String> logs) {
-        if (logs == null || logs.isEmpty()) {
-            return logs;
+    private RelevantLogs selectRelevantLogsForOpenAI(List<String> rawLogs, PromptCategory category) {
+        if (rawLogs == null || rawLogs.isEmpty()) {
+            return RelevantLogs.NONE;
         }
 
+        // Emit each cluster of near-identical lines once, with its count and example values
+        List<String> logs = templateMiner.collapse(rawLogs);
+
         int n = logs.size();
-        boolean[] keep = new boolean[n];
+        int[] scores = new int[n];
 
         // Always keep a bit of start and end for timeline context
         int headCount = Math.min(15, n);
         int tailCount = Math.min(15, n);
         for (int i = 0; i < headCount; i++) {
-            keep[i] = true;
+            scores[i] = 1;
         }
-        for (int i = n - tailCount; i < n; i++) {
-            if (i >= 0) {
-                keep[i] = true;
-            }
+        for (int i = Math.max(0, n - tailCount); i < n; i++) {
+            scores[i] = 1;
         }
 
-        // Keywords that usually indicate important events
-        String[] keywords = {
-                "ERROR", "WARN", "FATAL", "Exception", "exception", "timeout",
-                "TIMEOUT", "failed", "FAILED", "failure", "FAILURE", "rollback", "ROLLBACK"
-        };
-
         // Mark important lines and a small window around them
         int contextBefore = 5;
         int contextAfter = 3;
 
+        int[] keywordScores = relevanceScorer.score(logs, category);
         for (int i = 0; i < n; i++) {
-            String line = logs.get(i);
-            if (line == null) {
+            if (keywordScores[i] == 0) {
                 continue;
             }
-            boolean matches = false;
-            for (String kw : keywords) {
-                if (line.contains(kw)) {
-                    matches = true;
-                    break;
-                }
-            }
-            if (matches) {
-                int start = Math.max(0, i - contextBefore);
-                int end = Math.min(n - 1, i + contextAfter);
-                for (int j = start; j <= end; j++) {
-                    keep[j] = true;
-                }
+            int contextScore = Math.max(1, keywordScores[i] / 2);
+            int start = Math.max(0, i - contextBefore);
+            int end = Math.min(n - 1, i + contextAfter);
+            for (int j = start; j <= end; j++) {
+                scores[j] = Math.max(scores[j], j == i ? keywordScores[i] : contextScore);
             }
         }
 
-        // Now build final list with a global char cap
-        final int maxChars = 10_000; // ~2500 tokens, safe with prompt + 400-800 completion
-        int totalChars = 0;
-        List<String> result = new java.util.ArrayList<>();
-
+        List<String> lines = new ArrayList<>();
+        int[] lineScores = new int[n];
         for (int i = 0; i < n; i++) {
-            if (!keep[i]) {
-                continue;
-            }
-            String line = logs.get(i);
-            if (line == null) {
-                continue;
-            }
-            int len = line.length();
-            if (totalChars + len > maxChars) {
-                break;
+            if (scores[i] > 0 && logs.get(i) != null) {
+                lineScores[lines.size()] = scores[i];
+                lines.add(logs.get(i));
             }
-            result.add(line);
-            totalChars += len;
         }
 
-        logger.info("Selected relevant logs for OpenAI: original lines = {}, kept = {}, approx chars = {}",
-                logs.size(), result.size(), totalChars);
+        logger.info("Selected relevant logs for OpenAI: original lines = {}, templates = {}, kept = {}",
+                rawLogs.size(), logs.size(), lines.size());
 
-        return result;
+        return new RelevantLogs(lines, Arrays.copyOf(lineScores, lines.size()));
     }
 
     /**
-     * Builds a list of ChatMessage objects from the last few stored chat messages for the given chatId.
+     * Fits the selected logs into the prompt next to the system message and hints, leaving room for the
+     * history and query.
+     * When they exceed the token budget, they are summarized chunk by chunk (map-reduce) into summaries
+     * that fit it, so the final analysis covers all of them; with map-reduce disabled, the lowest scoring
+     * lines beyond the budget are dropped.
      *
-     * @param chatId The logical chat identifier
-     * @return List of chat messages in chronological order
+     * @param query The query string
+     * @param category The prompt category
+     * @param hints The failure signature hints sent with the logs
+     * @param logs The selected log lines
+     * @return The log lines or chunk summaries to send with the prompt
      */
-    private List<ChatMessage> buildHistoryMessages(String chatId) {
-        List<ChatMessageEntity> lastMessagesDesc =
-                chatMessageRepository.findTop10ByChatIdOrderByCreatedAtDesc(chatId);
-        if (lastMessagesDesc.isEmpty()) {
-            return new ArrayList<>();
+    private List<String> fitLogsToPrompt(String query, PromptCategory category, String hints, RelevantLogs logs) {
+        int tokenBudget = openAIService.logTokenBudget(category, hints);
+        List<String> fitted = capToTokenBudget(logs, tokenBudget);
+        if (fitted.size() == logs.lines().size() || !mapReduceEnabled) {
+            return fitted;
         }
 
-        // Reverse to chronological order (oldest first)
-        java.util.Collections.reverse(lastMessagesDesc);
+        logger.info("Selected logs exceed the prompt budget of {} tokens, summarizing {} lines in chunks",
+                tokenBudget, logs.lines().size());
+        return capToTokenBudget(summarizeLogs(query, logs, tokenBudget), tokenBudget);
+    }
 
-        List<ChatMessage> history = new ArrayList<>();
-        for (ChatMessageEntity entity : lastMessagesDesc) {
-            if (entity.getRole() == null || entity.getContent() == null) {
-                continue;
+    /**
+     * Summarizes the selected logs into summaries that fit the token budget. When the logs exceed what
+     * {@code analysis.map-reduce.max-chunks} chunks hold, only the highest scoring lines are summarized
+     * and a leading note tells the model how many were left out.
+     *
+     * @return The chunk summaries, after the note if lines were left out
+     */
+    private List<String> summarizeLogs(String query, RelevantLogs logs, int tokenBudget) {
+        List<String> summarized = capToTokenBudget(logs, chunkSummarizer.maxInputTokens(query));
+        if (summarized.size() == logs.lines().size()) {
+            return chunkSummarizer.summarize(query, summarized, tokenBudget);
+        }
+
+        logger.warn("Selected logs exceed analysis.map-reduce.max-chunks, summarizing the {} most relevant of {} lines",
+                summarized.size(), logs.lines().size());
+        String note = "Note: the summaries below cover the " + summarized.size() + " most relevant of the "
+                + logs.lines().size() + " selected log lines; the other lines were not summarized.";
+        List<String> result = new ArrayList<>();
+        result.add(note);
+        result.addAll(chunkSummarizer.summarize(query, summarized, tokenBudget - tokenCounter.count(note) - 1));
+        return result;
+    }
+
+    /**
+     * Picks the highest scoring lines (the earlier one on equal scores) whose tokens, each line followed
+     * by a newline, fit into the budget; a line too long for the remaining budget is skipped in favor of
+     * shorter lines scoring lower.
+     *
+     * @return The picked lines in their original order; all lines if they fit
+     */
+    private List<String> capToTokenBudget(RelevantLogs logs, int tokenBudget) {
+        List<String> lines = logs.lines();
+        int[] tokens = new int[lines.size()];
+        int totalTokens = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            tokens[i] = tokenCounter.count(lines.get(i)) + 1;
+            totalTokens += tokens[i];
+        }
+        if (totalTokens <= tokenBudget) {
+            return lines;
+        }
+
+        int[] scores = logs.scores();
+        Integer[] byScore = new Integer[lines.size()];
+        for (int i = 0; i < byScore.length; i++) {
+            byScore[i] = i;
+        }
+        Arrays.sort(byScore, Comparator.<Integer>comparingInt(i -> -scores[i]).thenComparingInt(i -> i));
+
+        boolean[] picked = new boolean[lines.size()];
+        int remaining = tokenBudget;
+        int pickedCount = 0;
+        for (int i : byScore) {
+            if (tokens[i] <= remaining) {
+                picked[i] = true;
+                remaining -= tokens[i];
+                pickedCount++;
             }
-            if (ChatMessageRole.USER.value().equals(entity.getRole())
-                    || ChatMessageRole.ASSISTANT.value().equals(entity.getRole())) {
-                history.add(new ChatMessage(entity.getRole(), entity.getContent()));
+        }
+
+        List<String> result = new ArrayList<>(pickedCount);
+        for (int i = 0; i < picked.length; i++) {
+            if (picked[i]) {
+                result.add(lines.get(i));
             }
         }
-        return history;
+        logger.info("Capped logs for OpenAI at {} of {} lines by relevance ({} token budget)",
+                pickedCount, lines.size(), tokenBudget);
+        return result;
     }
 
     /**
-     * Persists a single chat message to the database.
-     *
-     * @param chatId        The logical chat identifier
-     * @param role          The chat role (user/assistant)
-     * @param content       The message content
-     * @param category      The prompt category
-     * @param transactionId The related transaction id
+     * @return The longest prefix of the lines whose tokens (each line followed by a newline) fit into the budget
      */
-    private void persistChatMessage(String chatId, String role, String content,
-                                    PromptCategory category, String transactionId) {
-        ChatMessageEntity entity = new ChatMessageEntity();
-        entity.setChatId(chatId);
-        entity.setRole(role);
-        entity.setContent(content);
-        entity.setPromptCategory(category != null ? category.name() : null);
-        entity.setTransactionId(transactionId);
-        entity.setCreatedAt(LocalDateTime.now());
-        chatMessageRepository.save(entity);
+    private List<String> capToTokenBudget(List<String> lines, int tokenBudget) {
+        int totalTokens = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            totalTokens += tokenCounter.count(lines.get(i)) + 1;
+            if (totalTokens > tokenBudget) {
+                logger.info("Capped logs for OpenAI at {} of {} lines ({} token budget)", i, lines.size(), tokenBudget);
+                return lines.subList(0, i);
+            }
+        }
+        return lines;
     }
 
     /**
@@ -359,5 +910,37 @@ public class LogAnalysisService {
         // Wrap the text response into a nicely styled HTML page
         return htmlFormatterService.formatToHtml(textResponse);
     }
-}
 
+    /**
+     * Logs fetched for a transaction, or the message to return when there are none.
+     */
+    private record TransactionLogs(List<String> logs, String errorMessage) {
+
+        static TransactionLogs error(String errorMessage) {
+            return new TransactionLogs(List.of(), errorMessage);
+        }
+    }
+
+    /**
+     * Log lines selected for a prompt, in their original order, and the relevance score of each.
+     */
+    private record RelevantLogs(List<String> lines, int[] scores) {
+        static final RelevantLogs NONE = new RelevantLogs(List.of(), new int[0]);
+    }
+
+    /**
+     * Identity of an analysis for coalescing concurrent requests.
+     */
+    private record FlightKey(String transactionId, PromptCategory category, String normalizedQuery,
+                             String historyDigest) {
+    }
+
+    /**
+     * Outcome of a coalesced analysis.
+     *
+     * @param response The answer, or the message explaining why there is none
+     * @param analyzed Whether the logs were analyzed and the exchange belongs in the chat history
+     */
+    private record FlightResult(String response, boolean analyzed) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.loganalyser.service;
+
+import com.loganalyser.llm.LlmExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Map and reduce steps of the hierarchical (map-reduce) analysis for transactions whose relevant logs
+ * do not fit into one prompt.
+ * <p>
+ * The log lines are split into chunks that each fit a summarization prompt, and the chunks are
+ * summarized in parallel on the {@code summaryExecutor}, whose pool size bounds the number of
+ * concurrent summarization calls across all requests. Each summary may take an equal share of the
+ * token budget the summaries must fit into (at most {@code analysis.map-reduce.summary-max-tokens});
+ * when the shares would fall below {@value #MIN_SUMMARY_TOKENS} tokens, the summaries are summarized
+ * again, chunk by chunk, until they fit. The summaries then stand in for the logs in the final category
+ * analysis.
+ * <p>
+ * {@code analysis.map-reduce.max-chunks} bounds the summarization calls of the first round; see
+ * {@link #maxInputTokens(String)}.
+ */
+@Service
+public class LogChunkSummarizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogChunkSummarizer.class);
+
+    // Shortest useful summary; below it the summaries are reduced in another round instead
+    static final int MIN_SUMMARY_TOKENS = 150;
+
+    private static final int MAX_ROUNDS = 3;
+
+    private final OpenAIService openAIService;
+    private final TokenCounter tokenCounter;
+    private final ThreadPoolTaskExecutor summaryExecutor;
+    private final LlmExecutor llmExecutor;
+
+    @Value("${analysis.map-reduce.summary-max-tokens:500}")
+    private int summaryMaxTokens;
+
+    @Value("${analysis.map-reduce.max-chunks:16}")
+    private int maxChunks;
+
+    @Value("${analysis.map-reduce.timeout-ms:120000}")
+    private long timeoutMs;
+
+    /**
+     * Constructor for LogChunkSummarizer.
+     *
+     * @param openAIService The OpenAI service
+     * @param tokenCounter The token counter for the configured model
+     * @param summaryExecutor The executor running chunk summaries
+     * @param llmExecutor The admission control for LLM calls, whose lane is propagated to the summaries
+     */
+    public LogChunkSummarizer(OpenAIService openAIService, TokenCounter tokenCounter,
+                              @Qualifier("summaryExecutor") ThreadPoolTaskExecutor summaryExecutor, LlmExecutor llmExecutor) {
+        this.openAIService = openAIService;
+        this.tokenCounter = tokenCounter;
+        this.summaryExecutor = summaryExecutor;
+        this.llmExecutor = llmExecutor;
+    }
+
+    /**
+     * The tokens of log lines that {@code analysis.map-reduce.max-chunks} chunks hold. Callers select the
+     * lines to summarize within it; greedy chunking may still need a chunk or two more, which are summarized too.
+     *
+     * @param query The user query, part of every summarization prompt
+     * @return Tokens of log lines, each followed by a newline, to pass to {@link #summarize}
+     */
+    public int maxInputTokens(String query) {
+        return maxChunks * openAIService.summaryTokenBudget(query, summaryMaxTokens);
+    }
+
+    /**
+     * Summarizes the log lines chunk by chunk, into summaries that together fit the token budget.
+     *
+     * @param query The user query, used to focus the summaries
+     * @param logs The selected log lines, in chronological order
+     * @param tokenBudget Tokens the summaries may take in the final prompt, each followed by a newline
+     * @return One entry per chunk of the last round, labelled with its position and line range
+     */
+    public List<String> summarize(String query, List<String> logs, int tokenBudget) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        int chunkBudget = openAIService.summaryTokenBudget(query, summaryMaxTokens);
+
+        List<Entry> entries = new ArrayList<>(logs.size());
+        for (int i = 0; i < logs.size(); i++) {
+            entries.add(new Entry(logs.get(i), i + 1, i + 1));
+        }
+
+        int totalTokens = Integer.MAX_VALUE;
+        for (int round = 1; round <= MAX_ROUNDS && totalTokens > tokenBudget; round++) {
+            List<Chunk> chunks = split(entries, chunkBudget);
+            if (round > 1 && chunks.size() == entries.size()) {
+                // Every summary fills a chunk of its own; another round would not shrink them
+                break;
+            }
+            entries = summarizeChunks(query, chunks, tokenBudget, round, deadline);
+            totalTokens = 0;
+            for (Entry entry : entries) {
+                totalTokens += tokenCounter.count(entry.text()) + 1;
+            }
+        }
+        if (totalTokens > tokenBudget) {
+            logger.warn("Log summaries take {} tokens, more than their budget of {} after {} rounds",
+                    totalTokens, tokenBudget, MAX_ROUNDS);
+        }
+        return entries.stream().map(Entry::text).toList();
+    }
+
+    /**
+     * Summarizes the chunks in parallel, each into an equal share of the budget.
+     */
+    private List<Entry> summarizeChunks(String query, List<Chunk> chunks, int tokenBudget, int round, long deadline) {
+        int parts = chunks.size();
+        List<String> labels = new ArrayList<>(parts);
+        int labelTokens = 0;
+        for (int i = 0; i < parts; i++) {
+            Chunk chunk = chunks.get(i);
+            String label = "Summary of part " + (i + 1) + "/" + parts
+                    + " (log lines " + chunk.first() + "-" + chunk.last() + "):\n";
+            labels.add(label);
+            labelTokens += tokenCounter.count(label) + 1;
+        }
+        int summaryTokens = Math.max(MIN_SUMMARY_TOKENS, Math.min(summaryMaxTokens, (tokenBudget - labelTokens) / parts));
+        logger.info("Summarizing {} {} in {} chunks of at most {} tokens each (round {})", chunks.stream()
+                .mapToInt(chunk -> chunk.texts().size()).sum(), round == 1 ? "log lines" : "summaries", parts, summaryTokens, round);
+
+        List<Future<String>> summaries = new ArrayList<>(parts);
+        try {
+            for (int i = 0; i < parts; i++) {
+                Chunk chunk = chunks.get(i);
+                int part = i + 1;
+                Supplier<String> summary = llmExecutor.propagateLane(
+                        () -> openAIService.summarizeLogs(query, chunk.texts(), part, parts, summaryTokens));
+                summaries.add(summaryExecutor.submit(summary::get));
+            }
+
+            List<Entry> result = new ArrayList<>(parts);
+            for (int i = 0; i < parts; i++) {
+                Chunk chunk = chunks.get(i);
+                String summary = summaries.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                result.add(new Entry(labels.get(i) + summary, chunk.first(), chunk.last()));
+            }
+            return result;
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Log summarization did not complete within " + timeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while summarizing logs", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TaskRejectedException e) {
+            throw new IllegalStateException("Too many log summaries queued, please retry shortly", e);
+        } finally {
+            // Interrupts the summaries still running, which aborts their HTTP calls; no-op for finished ones
+            summaries.forEach(summary -> summary.cancel(true));
+        }
+    }
+
+    /**
+     * Splits the entries greedily into consecutive chunks of at most {@code tokenBudget} tokens;
+     * a single entry over the budget forms a chunk of its own.
+     */
+    private List<Chunk> split(List<Entry> entries, int tokenBudget) {
+        List<Chunk> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int currentTokens = 0;
+        int first = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            String text = entries.get(i).text();
+            int tokens = tokenCounter.count(text) + 1;
+            if (!current.isEmpty() && currentTokens + tokens > tokenBudget) {
+                chunks.add(new Chunk(current, entries.get(first).first(), entries.get(i - 1).last()));
+                current = new ArrayList<>();
+                currentTokens = 0;
+                first = i;
+            }
+            current.add(text);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(new Chunk(current, entries.get(first).first(), entries.get(entries.size() - 1).last()));
+        }
+        return chunks;
+    }
+
+    /**
+     * A log line or a summary, with the range of selected log lines it covers.
+     *
+     * @param text The log line or the labelled summary
+     * @param first 1-based position of the first covered line among the selected lines
+     * @param last 1-based position of the last covered line among the selected lines
+     */
+    private record Entry(String text, int first, int last) {
+    }
+
+    /**
+     * Consecutive entries summarized together.
+     *
+     * @param texts The log lines or summaries
+     * @param first 1-based position of the first covered line among the selected lines
+     * @param last 1-based position of the last covered line among the selected lines
+     */
+    private record Chunk(List<String> texts, int first, int last) {
+    }
+}
@@ -1,14 +1,14 @@
 package com.loganalyser.service;
 
+import com.loganalyser.ingest.LogSources;
+import com.loganalyser.ingest.OffsetLineReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,9 +21,9 @@ public class LogFileService {
     private String logFilePath;
 
     /**
-     * Greps all log lines containing the transaction ID
+     * Greps all log lines containing the transaction ID across all configured log files
      * @param transactionId The transaction ID to search for
-     * @return List of log lines containing the transaction ID
+     * @return List of log lines containing the transaction ID, each prefixed with its file name and line number
      */
     public List<String> grepLogsByTransactionId(String transactionId) {
         List<String> matchingLogs = new ArrayList<>();
@@ -33,32 +33,36 @@ public class LogFileService {
             return matchingLogs;
         }
 
-        File logFile = new File(logFilePath);
-        if (!logFile.exists()) {
-            logger.error("Log file not found at path: {}", logFilePath);
+        List<Path> logFiles;
+        try {
+            logFiles = LogSources.resolve(logFilePath);
+        } catch (IOException e) {
+            logger.error("Could not resolve log files for {}: {}", logFilePath, e.getMessage(), e);
             return matchingLogs;
         }
 
-        if (!logFile.canRead()) {
-            logger.error("Cannot read log file at path: {}", logFilePath);
+        if (logFiles.isEmpty()) {
+            logger.error("Log file not found at path: {}", logFilePath);
             return matchingLogs;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(logFile))) {
-            String line;
-            int lineNumber = 0;
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                if (line.contains(transactionId)) {
-                    matchingLogs.add(String.format("[Line %d] %s", lineNumber, line));
+        for (Path logFile : logFiles) {
+            String fileName = logFile.getFileName().toString();
+            try (OffsetLineReader reader = new OffsetLineReader(LogSources.open(logFile, 0), 0)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.contains(transactionId)) {
+                        matchingLogs.add(String.format("[%s Line %d] %s", fileName, lineNumber, line));
+                    }
                 }
+            } catch (IOException e) {
+                logger.error("Error reading log file {}: {}", logFile, e.getMessage(), e);
             }
-            logger.info("Found {} log lines matching transaction ID: {}", matchingLogs.size(), transactionId);
-        } catch (IOException e) {
-            logger.error("Error reading log file: {}", e.getMessage(), e);
         }
+        logger.info("Found {} log lines matching transaction ID: {}", matchingLogs.size(), transactionId);
 
         return matchingLogs;
     }
 }
-
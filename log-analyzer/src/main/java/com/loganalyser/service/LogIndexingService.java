@@ -1,31 +1,48 @@
 package com.loganalyser.service;
 
 import com.loganalyser.document.LogDocument;
+import com.loganalyser.ingest.IngestBackpressureException;
+import com.loganalyser.ingest.LogBulkWriter;
+import com.loganalyser.ingest.LogLineParser;
+import com.loganalyser.ingest.LogLineParserRegistry;
+import com.loganalyser.ingest.LogSources;
+import com.loganalyser.ingest.OffsetLineReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 public class LogIndexingService implements CommandLineRunner {
 
     private static final Logger logger = LoggerFactory.getLogger(LogIndexingService.class);
 
+    // Bytes of a log file's first line that go into its source ID
+    private static final int FINGERPRINT_BYTES = 1024;
+
     private final ElasticsearchService elasticsearchService;
+    private final LogLineParserRegistry parserRegistry;
+    private final LogBulkWriter bulkWriter;
 
     @Value("${log.file.path}")
     private String logFilePath;
@@ -33,18 +50,24 @@ public class LogIndexingService implements CommandLineRunner {
     @Value("${elasticsearch.index.on.startup:true}")
     private boolean indexOnStartup;
 
-    // Pattern to extract transaction ID, UUID, etc. from log line
-    private static final Pattern TX_ID_PATTERN = Pattern.compile("TX_ID:\\s*(TX\\d+)");
-    private static final Pattern UUID_PATTERN = Pattern.compile("UUID:\\s*([a-f0-9-]{36})");
-    private static final Pattern CLIENT_TXN_PATTERN = Pattern.compile("CLIENT_TXN_ID:\\s*(CLIENT_TXN_\\d+)");
-    private static final Pattern USER_ID_PATTERN = Pattern.compile("USER_ID:\\s*(USER_\\d+)");
-    private static final Pattern LOG_LEVEL_PATTERN = Pattern.compile("\\[(INFO|DEBUG|ERROR|WARN|FATAL)\\]");
-    private static final Pattern SERVICE_PATTERN = Pattern.compile("\\[(.*?)\\]");
-    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\.\\d{3})");
-    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-
-    public LogIndexingService(ElasticsearchService elasticsearchService) {
+    @Value("${log.ingest.resume:true}")
+    private boolean resume;
+
+    @Value("${log.ingest.workers:4}")
+    private int workers;
+
+    @Value("${log.ingest.batch-size:100}")
+    private int batchSize;
+
+    // How long a pushed batch may wait for a bulk slot before the request is rejected with 429
+    @Value("${log.ingest.push-wait-ms:200}")
+    private long pushWaitMs;
+
+    public LogIndexingService(ElasticsearchService elasticsearchService, LogLineParserRegistry parserRegistry,
+                              LogBulkWriter bulkWriter) {
         this.elasticsearchService = elasticsearchService;
+        this.parserRegistry = parserRegistry;
+        this.bulkWriter = bulkWriter;
     }
 
     @Override
@@ -58,121 +81,224 @@ public class LogIndexingService implements CommandLineRunner {
     }
 
     /**
-     * Index all logs from the log file to Elasticsearch
+     * Index all logs from the configured log location to Elasticsearch.
+     * The location may be a single file, a directory or a glob; gzip-compressed files are
+     * decompressed while streaming. Files are indexed concurrently on a bounded worker pool,
+     * each one resuming from its own checkpoint.
      */
     public void indexLogsFromFile() {
-        File logFile = new File(logFilePath);
-        if (!logFile.exists()) {
-            logger.warn("Log file not found at path: {}. Skipping indexing.", logFilePath);
+        List<Path> sources;
+        try {
+            sources = LogSources.resolve(logFilePath);
+        } catch (IOException e) {
+            logger.error("Could not resolve log files for {}: {}", logFilePath, e.getMessage(), e);
             return;
         }
 
-        if (!logFile.canRead()) {
-            logger.error("Cannot read log file at path: {}. Skipping indexing.", logFilePath);
+        if (sources.isEmpty()) {
+            logger.warn("No log files found at: {}. Skipping indexing.", logFilePath);
             return;
         }
 
-        logger.info("Starting to index logs from file: {}", logFilePath);
-
-        List<LogDocument> batch = new ArrayList<>();
-        int batchSize = 100;
-        int lineNumber = 0;
-        int totalIndexed = 0;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(logFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                LogDocument logDoc = parseLogLine(line, lineNumber);
-                
-                if (logDoc != null) {
-                    batch.add(logDoc);
-                    
-                    // Index in batches
-                    if (batch.size() >= batchSize) {
-                        elasticsearchService.indexLogs(batch);
-                        totalIndexed += batch.size();
-                        batch.clear();
-                        logger.debug("Indexed batch: {} logs processed", totalIndexed);
-                    }
-                }
-            }
+        logger.info("Starting to index {} log file(s) from: {} using {} worker(s)", sources.size(), logFilePath, workers);
 
-            // Index remaining logs
-            if (!batch.isEmpty()) {
-                elasticsearchService.indexLogs(batch);
-                totalIndexed += batch.size();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, sources.size()));
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (Path source : sources) {
+                results.add(executor.submit(() -> indexSource(source)));
             }
 
-            logger.info("Successfully indexed {} log entries from {} total lines", totalIndexed, lineNumber);
-        } catch (IOException e) {
-            logger.error("Error reading log file for indexing: {}", e.getMessage(), e);
+            long totalIndexed = 0;
+            for (Future<Long> result : results) {
+                try {
+                    totalIndexed += result.get();
+                } catch (ExecutionException e) {
+                    logger.error("Error indexing log file: {}", e.getCause().getMessage(), e.getCause());
+                }
+            }
+            logger.info("Finished indexing {} log entries from {} log file(s)", totalIndexed, sources.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Log indexing interrupted");
+        } finally {
+            executor.shutdownNow();
         }
     }
 
     /**
-     * Parse a log line and extract information into LogDocument
+     * Index a single log file.
+     * Document IDs are derived from the file identity and the byte offset of each line, so
+     * re-running the indexing overwrites existing documents instead of duplicating them.
+     * When resume is enabled, reading starts at the last indexed offset of the file.
+     *
+     * @param logFile The log file, plain or gzip-compressed
+     * @return Number of indexed log entries
      */
-    private LogDocument parseLogLine(String logLine, int lineNumber) {
-        LogDocument doc = new LogDocument();
-        doc.setLogLine(logLine);
-        doc.setLineNumber(lineNumber);
-
-        // Extract timestamp
-        Matcher timestampMatcher = TIMESTAMP_PATTERN.matcher(logLine);
-        if (timestampMatcher.find()) {
-            try {
-                LocalDate timestamp = LocalDate.parse(timestampMatcher.group(1), TIMESTAMP_FORMATTER);
-                doc.setTimestamp(timestamp);
-            } catch (DateTimeParseException e) {
-                logger.debug("Could not parse timestamp from line: {}", logLine);
-            }
+    private long indexSource(Path logFile) throws IOException {
+        if (!Files.isReadable(logFile)) {
+            logger.error("Cannot read log file at path: {}. Skipping indexing.", logFile);
+            return 0;
         }
 
-        // Extract log level
-        Matcher levelMatcher = LOG_LEVEL_PATTERN.matcher(logLine);
-        if (levelMatcher.find()) {
-            doc.setLogLevel(levelMatcher.group(1));
-        }
+        String sourceId = sourceIdFor(logFile);
+        boolean compressed = LogSources.isCompressed(logFile);
 
-        // Extract service name (usually in brackets after log level)
-        Matcher serviceMatcher = SERVICE_PATTERN.matcher(logLine);
-        List<String> services = new ArrayList<>();
-        while (serviceMatcher.find() && services.size() < 2) {
-            String match = serviceMatcher.group(1);
-            if (!match.equals(doc.getLogLevel())) {
-                services.add(match);
+        long startOffset = 0;
+        long lineNumber = 0;
+        if (resume) {
+            Optional<LogDocument> checkpoint = elasticsearchService.findLastIndexedLog(sourceId);
+            if (checkpoint.isPresent() && checkpoint.get().getByteOffset() != null) {
+                long size = Files.size(logFile);
+                if (!compressed && checkpoint.get().getByteOffset() >= size) {
+                    // Truncated in place with the same first line, e.g. a header; the new content starts at 0
+                    logger.warn("Log file {} is shorter ({} bytes) than its last indexed offset {}, it was truncated. "
+                            + "Re-indexing from the start", logFile, size, checkpoint.get().getByteOffset());
+                } else {
+                    // Re-read the checkpoint line itself; the upsert makes this harmless
+                    startOffset = checkpoint.get().getByteOffset();
+                    lineNumber = checkpoint.get().getLineNumber() != null ? checkpoint.get().getLineNumber() - 1 : 0;
+                    logger.info("Resuming indexing of {} at byte offset {} (line {})", logFile, startOffset, lineNumber + 1);
+                }
             }
         }
-        if (!services.isEmpty()) {
-            doc.setService(services.get(0));
+
+        LogLineParser parser = parserRegistry.parserFor(logFile);
+        logger.info("Starting to index logs from file: {} with parser: {}", logFile, parser.name());
+
+        try (OffsetLineReader reader = new OffsetLineReader(LogSources.open(logFile, startOffset), startOffset)) {
+            long totalIndexed = indexLines(reader, parser, sourceId, lineNumber, -1);
+            logger.info("Successfully indexed {} log entries from {}", totalIndexed, logFile);
+            return totalIndexed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Indexing of " + logFile + " interrupted", e);
         }
+    }
 
-        // Extract transaction ID
-        Matcher txIdMatcher = TX_ID_PATTERN.matcher(logLine);
-        if (txIdMatcher.find()) {
-            doc.setTransactionId(txIdMatcher.group(1));
+    /**
+     * Index a stream of log lines pushed over HTTP.
+     * The body is read and parsed incrementally and written in batches through the same
+     * bulk-writer stage as file indexing. Document IDs are derived from the source name and the
+     * byte offset of each line relative to {@code baseOffset}, so a shipper that retries a body with
+     * the same source and base offset overwrites instead of duplicating.
+     *
+     * @param body       The (already decompressed) request body
+     * @param sourceName Logical name of the pushing source, e.g. host/service/file
+     * @param baseOffset Offset of the first byte of the body within the source
+     * @param parser     The parser for the lines
+     * @return Number of indexed log entries
+     * @throws IngestBackpressureException if the bulk-writer stage stays saturated
+     */
+    public long ingestStream(InputStream body, String sourceName, long baseOffset, LogLineParser parser)
+            throws IOException, InterruptedException {
+        String sourceId = sourceIdFor(sourceName);
+        OffsetLineReader reader = new OffsetLineReader(body, baseOffset);
+        long totalIndexed = indexLines(reader, parser, sourceId, 0, pushWaitMs);
+        logger.info("Ingested {} log entries pushed by source {} with parser: {}", totalIndexed, sourceName, parser.name());
+        return totalIndexed;
+    }
+
+    /**
+     * Parses lines from the reader and writes them in batches through the bulk writer.
+     *
+     * @param reader     The line reader
+     * @param parser     The parser for the lines
+     * @param sourceId   The identity of the source
+     * @param lineNumber The number of lines preceding the reader's position
+     * @param waitMs     Maximum wait for a bulk slot per batch, or -1 to wait indefinitely
+     * @return Number of indexed log entries
+     */
+    private long indexLines(OffsetLineReader reader, LogLineParser parser, String sourceId,
+                            long lineNumber, long waitMs) throws IOException, InterruptedException {
+        List<LogDocument> batch = new ArrayList<>(batchSize);
+        long totalIndexed = 0;
+        long lastEventMillis = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            LogDocument logDoc = parser.parse(line);
+
+            if (logDoc != null) {
+                logDoc.setLineNumber(lineNumber);
+                // Lines without a timestamp (e.g. stack traces) sort with the preceding line
+                if (logDoc.getEventTime() != null) {
+                    lastEventMillis = logDoc.getEventTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+                }
+                logDoc.setSourceId(sourceId);
+                logDoc.setByteOffset(reader.getLineOffset());
+                logDoc.setId(LogDocument.documentId(sourceId, reader.getLineOffset()));
+                logDoc.setOrderingKey(LogDocument.orderingKey(lastEventMillis, sourceId, reader.getLineOffset()));
+                batch.add(logDoc);
+
+                // Index in batches
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch, waitMs);
+                    totalIndexed += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                    logger.debug("Indexed batch from source {}: {} logs processed", sourceId, totalIndexed);
+                }
+            }
         }
 
-        // Extract UUID
-        Matcher uuidMatcher = UUID_PATTERN.matcher(logLine);
-        if (uuidMatcher.find()) {
-            doc.setUuid(uuidMatcher.group(1));
+        // Index remaining logs
+        if (!batch.isEmpty()) {
+            writeBatch(batch, waitMs);
+            totalIndexed += batch.size();
         }
+        return totalIndexed;
+    }
 
-        // Extract CLIENT_TXN_ID
-        Matcher clientTxnMatcher = CLIENT_TXN_PATTERN.matcher(logLine);
-        if (clientTxnMatcher.find()) {
-            doc.setClientTxnId(clientTxnMatcher.group(1));
+    private void writeBatch(List<LogDocument> batch, long waitMs) throws InterruptedException {
+        if (waitMs < 0) {
+            bulkWriter.write(batch);
+        } else {
+            bulkWriter.tryWrite(batch, waitMs);
         }
+    }
+
+    /**
+     * Derives a stable identity for a log file from its canonical path, its file key (device and
+     * inode where the file system has one) and a fingerprint of its first line.
+     * The same file always maps to the same source ID, which together with the
+     * byte offset of a line forms its document ID. A file rotated into the same path, or truncated
+     * and rewritten, gets a new source ID and is indexed from the start instead of resuming at the
+     * offset of its predecessor and overwriting its documents.
+     */
+    static String sourceIdFor(Path file) throws IOException {
+        Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        return sourceIdFor(file.toFile().getCanonicalPath() + '\0' + (fileKey != null ? fileKey : "")
+                + '\0' + HexFormat.of().formatHex(firstLine(file)));
+    }
 
-        // Extract USER_ID
-        Matcher userIdMatcher = USER_ID_PATTERN.matcher(logLine);
-        if (userIdMatcher.find()) {
-            doc.setUserId(userIdMatcher.group(1));
+    /**
+     * Reads the raw bytes of the first line, up to {@link #FINGERPRINT_BYTES}.
+     * Until the first line is complete the fingerprint covers what is there, so the source ID of a
+     * file that was only just created changes once; its partial line is indexed again then.
+     */
+    private static byte[] firstLine(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = in.readNBytes(FINGERPRINT_BYTES);
+            for (int i = 0; i < head.length; i++) {
+                if (head[i] == '\n') {
+                    return Arrays.copyOf(head, i + 1);
+                }
+            }
+            return head;
         }
+    }
 
-        return doc;
+    /**
+     * Derives a stable source ID from a source name (a file identity or a pushed source name).
+     */
+    static String sourceIdFor(String sourceName) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(sourceName.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
-
@@ -0,0 +1,209 @@
+package com.loganalyser.service;
+
+import com.loganalyser.enums.PromptCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Scores log lines by the keywords they contain, e.g. {@code error} or {@code timeout}.
+ * <p>
+ * Keywords and their weights are configured as comma-separated {@code keyword:weight} lists:
+ * {@code analysis.relevance.keywords} for all categories, {@code analysis.relevance.category-keywords.<CATEGORY>}
+ * to add keywords for one prompt category or change their weight (weight 0 removes a keyword). Keywords are
+ * ASCII and matched case-insensitively anywhere in the line.
+ * <p>
+ * The keywords of each category are compiled at startup into an Aho-Corasick automaton over lowercased
+ * ASCII, with the failure transitions folded into a full transition table, so scoring a line is one
+ * table lookup per character however many keywords there are. A line scores the sum of the weights of
+ * the distinct keywords it contains.
+ */
+@Component
+public class LogRelevanceScorer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogRelevanceScorer.class);
+
+    private static final int ALPHABET = 128;
+
+    private final Automaton defaultAutomaton;
+    private final Map<PromptCategory, Automaton> categoryAutomatons = new EnumMap<>(PromptCategory.class);
+
+    public LogRelevanceScorer(Environment environment,
+                              @Value("${analysis.relevance.keywords:fatal:8,exception:6,error:5,timeout:5,failed:4,failure:4,rollback:4,warn:2}") String keywords) {
+        Map<String, Integer> defaults = parse("analysis.relevance.keywords", keywords);
+        defaults.values().removeIf(weight -> weight == 0);
+        this.defaultAutomaton = new Automaton(defaults);
+
+        Map<PromptCategory, String> overrides = Binder.get(environment)
+                .bind("analysis.relevance.category-keywords", Bindable.mapOf(PromptCategory.class, String.class))
+                .orElse(Map.of());
+        for (Map.Entry<PromptCategory, String> entry : overrides.entrySet()) {
+            Map<String, Integer> merged = new LinkedHashMap<>(defaults);
+            merged.putAll(parse("analysis.relevance.category-keywords." + entry.getKey(), entry.getValue()));
+            merged.values().removeIf(weight -> weight == 0);
+            categoryAutomatons.put(entry.getKey(), new Automaton(merged));
+        }
+
+        logger.info("Log relevance keywords: {}, category-specific: {}", defaults, overrides);
+    }
+
+    /**
+     * Scores the lines with the keywords of the category in one pass over each line.
+     *
+     * @param lines The log lines (null entries score 0)
+     * @param category The prompt category, or null for the keywords of all categories
+     * @return The score of each line, 0 if it contains no keyword
+     */
+    public int[] score(List<String> lines, PromptCategory category) {
+        Automaton automaton = category != null
+                ? categoryAutomatons.getOrDefault(category, defaultAutomaton)
+                : defaultAutomaton;
+        int[] scores = new int[lines.size()];
+        // Line index + 1 at which each keyword was last counted, so a keyword counts once per line
+        int[] countedAt = new int[automaton.weights.length];
+        for (int i = 0; i < scores.length; i++) {
+            String line = lines.get(i);
+            if (line != null) {
+                scores[i] = automaton.score(line, countedAt, i + 1);
+            }
+        }
+        return scores;
+    }
+
+    private static Map<String, Integer> parse(String property, String value) {
+        Map<String, Integer> keywords = new LinkedHashMap<>();
+        if (value == null || value.isBlank()) {
+            return keywords;
+        }
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Invalid entry '" + entry.trim() + "' in " + property + ", expected keyword:weight");
+            }
+            String keyword = entry.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            int weight;
+            try {
+                weight = Integer.parseInt(entry.substring(colon + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight in '" + entry.trim() + "' of " + property, e);
+            }
+            if (keyword.isEmpty() || weight < 0 || !keyword.chars().allMatch(c -> c < ALPHABET)) {
+                throw new IllegalArgumentException("Invalid entry '" + entry.trim() + "' in " + property
+                        + ", keywords must be non-empty ASCII and weights non-negative");
+            }
+            keywords.put(keyword, weight);
+        }
+        return keywords;
+    }
+
+    private static final class Automaton {
+
+        // Next state per state and lowercased ASCII character
+        private final int[][] transitions;
+        // Keywords ending in each state, including those reached through failure links
+        private final int[][] outputs;
+        private final int[] weights;
+
+        Automaton(Map<String, Integer> keywords) {
+            List<int[]> gotos = new ArrayList<>();
+            List<List<Integer>> ends = new ArrayList<>();
+            gotos.add(newRow());
+            ends.add(new ArrayList<>());
+            weights = new int[keywords.size()];
+
+            int keywordIndex = 0;
+            for (Map.Entry<String, Integer> entry : keywords.entrySet()) {
+                int state = 0;
+                for (char c : entry.getKey().toCharArray()) {
+                    if (gotos.get(state)[c] < 0) {
+                        gotos.get(state)[c] = gotos.size();
+                        gotos.add(newRow());
+                        ends.add(new ArrayList<>());
+                    }
+                    state = gotos.get(state)[c];
+                }
+                ends.get(state).add(keywordIndex);
+                weights[keywordIndex++] = entry.getValue();
+            }
+
+            // Breadth-first: a state's failure state is shallower, so its transitions and outputs are final
+            int[] failure = new int[gotos.size()];
+            Queue<Integer> queue = new ArrayDeque<>();
+            int[] root = gotos.get(0);
+            for (int c = 0; c < ALPHABET; c++) {
+                if (root[c] < 0) {
+                    root[c] = 0;
+                } else {
+                    queue.add(root[c]);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                ends.get(state).addAll(ends.get(failure[state]));
+                int[] row = gotos.get(state);
+                int[] failureRow = gotos.get(failure[state]);
+                for (int c = 0; c < ALPHABET; c++) {
+                    if (row[c] < 0) {
+                        row[c] = failureRow[c];
+                    } else {
+                        failure[row[c]] = failureRow[c];
+                        queue.add(row[c]);
+                    }
+                }
+            }
+
+            transitions = gotos.toArray(new int[0][]);
+            outputs = new int[ends.size()][];
+            for (int state = 0; state < outputs.length; state++) {
+                outputs[state] = ends.get(state).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        int score(String line, int[] countedAt, int stamp) {
+            int score = 0;
+            int state = 0;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c >= ALPHABET) {
+                    // No keyword contains it
+                    state = 0;
+                    continue;
+                }
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                state = transitions[state][c];
+                for (int keyword : outputs[state]) {
+                    if (countedAt[keyword] != stamp) {
+                        countedAt[keyword] = stamp;
+                        score += weights[keyword];
+                    }
+                }
+            }
+            return score;
+        }
+
+        private static int[] newRow() {
+            int[] row = new int[ALPHABET];
+            Arrays.fill(row, -1);
+            return row;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.loganalyser.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collapses near-identical log lines (retries, polling, heartbeats) into templates before prompting,
+ * using the Drain online log parsing algorithm.
+ * <p>
+ * Lines are tokenized on whitespace. The header before the log level (line marker, timestamp, thread;
+ * bracketed groups such as {@code [Line 12]} count as one token) is masked, so it neither routes nor
+ * counts towards similarity; without a level, leading groups containing digits are masked. The rest is
+ * routed through a fixed-depth prefix tree: first by token count, then by the log level, then by the
+ * leading tokens, where tokens containing digits (and overflow beyond
+ * {@code analysis.templates.max-children} per node) share a wildcard branch. Lines of different levels
+ * therefore never share a template. In the leaf, a line joins the most similar template if the fraction
+ * of equal tokens reaches {@code analysis.templates.similarity-threshold}; positions that differ become
+ * {@code <*>} slots.
+ * <p>
+ * Each template is emitted once, at the position of its first line, with its count, first/last line
+ * numbers, the header of its first line and a few example values per slot. Lines that occur only once
+ * are emitted unchanged.
+ */
+@Component
+public class LogTemplateMiner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogTemplateMiner.class);
+
+    static final String WILDCARD = "<*>";
+
+    // A template line starts with "[<count>x, lines <first>-<last>] "
+    private static final String TEMPLATE_COUNT_SUFFIX = "x, lines ";
+
+    private static final int MAX_EXAMPLES_PER_SLOT = 3;
+
+    // Header groups searched for the log level, and tokens a bracketed group may span
+    private static final int MAX_HEADER_GROUPS = 6;
+    private static final int MAX_GROUP_TOKENS = 4;
+
+    private static final Set<String> LEVELS = Set.of("TRACE", "DEBUG", "INFO", "WARN", "WARNING", "ERROR", "SEVERE", "FATAL");
+
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final int prefixDepth;
+    private final int maxChildren;
+
+    public LogTemplateMiner(@Value("${analysis.templates.enabled:true}") boolean enabled,
+                            @Value("${analysis.templates.similarity-threshold:0.5}") double similarityThreshold,
+                            @Value("${analysis.templates.prefix-depth:2}") int prefixDepth,
+                            @Value("${analysis.templates.max-children:100}") int maxChildren) {
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.prefixDepth = prefixDepth;
+        this.maxChildren = maxChildren;
+    }
+
+    /**
+     * Clusters the lines into templates and returns one entry per template in order of first occurrence.
+     *
+     * @param lines Log lines in chronological order
+     * @return Collapsed lines; the input itself if template mining is disabled
+     */
+    public List<String> collapse(List<String> lines) {
+        if (!enabled || lines == null || lines.isEmpty()) {
+            return lines;
+        }
+
+        Map<Integer, Node> byLength = new HashMap<>();
+        List<Cluster> clusters = new ArrayList<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line == null || line.isBlank()) {
+                continue;
+            }
+            MaskedLine masked = mask(line.trim().split("\\s+"));
+            String[] tokens = masked.tokens();
+            Node levelNode = byLength.computeIfAbsent(tokens.length, length -> new Node())
+                    .children.computeIfAbsent(masked.level(), level -> new Node());
+            Node leaf = leafFor(levelNode, tokens);
+
+            Cluster cluster = mostSimilar(leaf.clusters, tokens);
+            if (cluster == null) {
+                cluster = new Cluster(line, masked.header(), tokens, i + 1);
+                leaf.clusters.add(cluster);
+                clusters.add(cluster);
+            } else {
+                cluster.add(tokens, i + 1);
+            }
+        }
+
+        List<String> result = new ArrayList<>(clusters.size());
+        for (Cluster cluster : clusters) {
+            result.add(cluster.render());
+        }
+        logger.info("Collapsed {} log lines into {} templates", lines.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Splits the tokens into the masked header, the log level and the tokens that are clustered.
+     */
+    private static MaskedLine mask(String[] tokens) {
+        int start = 0;
+        for (int group = 0; group < MAX_HEADER_GROUPS && start < tokens.length; group++) {
+            int end = groupEnd(tokens, start);
+            if (end == start + 1 && isLevel(tokens[start])) {
+                return new MaskedLine(String.join(" ", Arrays.copyOfRange(tokens, 0, start + 1)), tokens[start],
+                        Arrays.copyOfRange(tokens, start + 1, tokens.length));
+            }
+            start = end;
+        }
+
+        // No level: mask the leading timestamp-like groups only
+        int contentStart = 0;
+        for (int group = 0; group < MAX_HEADER_GROUPS && contentStart < tokens.length; group++) {
+            int end = groupEnd(tokens, contentStart);
+            if (!hasDigit(tokens, contentStart, end)) {
+                break;
+            }
+            contentStart = end;
+        }
+        return new MaskedLine(String.join(" ", Arrays.copyOfRange(tokens, 0, contentStart)), "",
+                Arrays.copyOfRange(tokens, contentStart, tokens.length));
+    }
+
+    /**
+     * @return The end (exclusive) of the token group starting at {@code start}: a bracketed group such as
+     *         {@code [Line 12]} spans up to the token closing it, any other token is a group of its own
+     */
+    private static int groupEnd(String[] tokens, int start) {
+        if (tokens[start].startsWith("[") && !tokens[start].endsWith("]")) {
+            int limit = Math.min(tokens.length, start + MAX_GROUP_TOKENS);
+            for (int i = start + 1; i < limit; i++) {
+                if (tokens[i].endsWith("]")) {
+                    return i + 1;
+                }
+            }
+        }
+        return start + 1;
+    }
+
+    private static boolean isLevel(String token) {
+        int start = token.startsWith("[") ? 1 : 0;
+        int end = token.endsWith("]") || token.endsWith(":") ? token.length() - 1 : token.length();
+        return end > start && LEVELS.contains(token.substring(start, end).toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @param line A line returned by {@link #collapse}
+     * @return The number of lines it stands for: the count of a template, 1 for any other line
+     */
+    static int occurrences(String line) {
+        if (!line.startsWith("[")) {
+            return 1;
+        }
+        int i = 1;
+        int count = 0;
+        while (i < line.length() && i < 11 && Character.isDigit(line.charAt(i))) {
+            count = count * 10 + (line.charAt(i) - '0');
+            i++;
+        }
+        return i > 1 && line.startsWith(TEMPLATE_COUNT_SUFFIX, i) ? count : 1;
+    }
+
+    private Node leafFor(Node node, String[] tokens) {
+        int depth = Math.min(prefixDepth, tokens.length);
+        for (int i = 0; i < depth; i++) {
+            String key = hasDigit(tokens[i]) ? WILDCARD : tokens[i];
+            Node child = node.children.get(key);
+            if (child == null) {
+                if (node.children.size() >= maxChildren) {
+                    key = WILDCARD;
+                    child = node.children.get(key);
+                }
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(key, child);
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * @return The cluster most similar to the tokens (ties broken by fewer wildcards), or null if none
+     *         reaches the similarity threshold
+     */
+    private Cluster mostSimilar(List<Cluster> candidates, String[] tokens) {
+        Cluster best = null;
+        double bestSimilarity = -1;
+        int bestWildcards = -1;
+        for (Cluster cluster : candidates) {
+            int equal = 0;
+            int wildcards = 0;
+            for (int i = 0; i < tokens.length; i++) {
+                String token = cluster.template[i];
+                if (token == WILDCARD) {
+                    wildcards++;
+                } else if (token.equals(tokens[i])) {
+                    equal++;
+                }
+            }
+            double similarity = tokens.length == 0 ? 1 : (double) equal / tokens.length;
+            if (similarity > bestSimilarity || (similarity == bestSimilarity && wildcards < bestWildcards)) {
+                best = cluster;
+                bestSimilarity = similarity;
+                bestWildcards = wildcards;
+            }
+        }
+        return bestSimilarity >= similarityThreshold ? best : null;
+    }
+
+    private static boolean hasDigit(String[] tokens, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (hasDigit(tokens[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasDigit(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c >= '0' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A line split for clustering.
+     *
+     * @param header The masked header including the level, as in the line
+     * @param level The level token as in the line, empty if there is none
+     * @param tokens The tokens after the header
+     */
+    private record MaskedLine(String header, String level, String[] tokens) {
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        final List<Cluster> clusters = new ArrayList<>();
+    }
+
+    private static final class Cluster {
+        final String firstLine;
+        final String header;
+        final String[] template;
+        // Example values per token position; only positions that became wildcards are rendered
+        final List<Set<String>> examples;
+        final int firstLineNumber;
+        int lastLineNumber;
+        int count = 1;
+
+        Cluster(String line, String header, String[] tokens, int lineNumber) {
+            this.firstLine = line;
+            this.header = header;
+            this.template = tokens.clone();
+            this.examples = new ArrayList<>(tokens.length);
+            for (int i = 0; i < tokens.length; i++) {
+                examples.add(null);
+            }
+            this.firstLineNumber = lineNumber;
+            this.lastLineNumber = lineNumber;
+        }
+
+        void add(String[] tokens, int lineNumber) {
+            for (int i = 0; i < tokens.length; i++) {
+                if (template[i] != WILDCARD && !template[i].equals(tokens[i])) {
+                    Set<String> values = new LinkedHashSet<>();
+                    values.add(template[i]);
+                    examples.set(i, values);
+                    template[i] = WILDCARD;
+                }
+                Set<String> values = examples.get(i);
+                if (values != null && values.size() < MAX_EXAMPLES_PER_SLOT) {
+                    values.add(tokens[i]);
+                }
+            }
+            count++;
+            lastLineNumber = lineNumber;
+        }
+
+        String render() {
+            if (count == 1) {
+                return firstLine;
+            }
+            StringBuilder sb = new StringBuilder(firstLine.length() + 64);
+            sb.append('[').append(count).append(TEMPLATE_COUNT_SUFFIX)
+                    .append(firstLineNumber).append('-').append(lastLineNumber).append("] ");
+            sb.append(header);
+            if (!header.isEmpty() && template.length > 0) {
+                sb.append(' ');
+            }
+            sb.append(String.join(" ", template));
+
+            int slot = 0;
+            String separator = " | ";
+            for (int i = 0; i < template.length; i++) {
+                if (template[i] != WILDCARD) {
+                    continue;
+                }
+                slot++;
+                sb.append(separator).append("<*>").append(slot).append(": ")
+                        .append(String.join(", ", examples.get(i)));
+                separator = "; ";
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -2,20 +2,36 @@ package com.loganalyser.service;
 
 import com.loganalyser.config.OpenAIConfig;
 import com.loganalyser.enums.PromptCategory;
+import com.loganalyser.llm.ChatCompletionApi;
+import com.loganalyser.llm.ChatCompletionResponse;
+import com.loganalyser.llm.LlmCircuitBreaker;
+import com.loganalyser.llm.LlmExecutor;
+import com.loganalyser.llm.LlmHedger;
+import com.loganalyser.llm.LlmPriority;
+import com.loganalyser.llm.LlmRejectedException;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
 import com.theokanning.openai.completion.chat.ChatMessage;
 import com.theokanning.openai.completion.chat.ChatMessageRole;
 import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Service for interacting with OpenAI API to analyze logs.
  * Uses PromptRuleService to apply category-based personalized prompts.
+ * <p>
+ * Analysis prompts are laid out so that consecutive turns of a chat share a byte-identical prefix the
+ * provider can serve from its prompt cache: the system message, then the logs of the transaction, then
+ * the earlier turns, and only the new question last. Prompt, cached prompt and completion tokens are
+ * published as {@code llm.tokens} (counter per type and category).
  *
  * @author Himanshu Sehgal
  * @since 2025-12-08
@@ -25,9 +41,30 @@ public class OpenAIService {
 
     private static final Logger logger = LoggerFactory.getLogger(OpenAIService.class);
 
+    private static final String SUMMARY_SYSTEM_MESSAGE =
+            "You are a log analysis assistant condensing one part of a large transaction log. "
+                    + "Summarize the log excerpt in chronological order as concise bullet points. "
+                    + "Keep every error, warning, exception, timeout, retry, status change and external call, "
+                    + "with timestamps, service names, identifiers and error codes verbatim. "
+                    + "Collapse routine repetition into a single bullet with its count. "
+                    + "Do not speculate about root causes; only report what the logs show.";
+
+    private static final String CONVERSATION_SUMMARY_SYSTEM_MESSAGE =
+            "You maintain the running summary of a conversation between a developer and a log analysis assistant. "
+                    + "Update the current summary with the new messages and reply with the updated summary only. "
+                    + "Keep the questions asked, the conclusions reached (root causes, affected services, error codes, "
+                    + "identifiers, timestamps) and any open points, as concise bullet points. "
+                    + "Drop formatting, repetition and details that no longer matter.";
+
     private final OpenAiService openAiService;
     private final OpenAIConfig openAIConfig;
     private final PromptRuleService promptRuleService;
+    private final TokenCounter tokenCounter;
+    private final LlmExecutor llmExecutor;
+    private final LlmCircuitBreaker circuitBreaker;
+    private final LlmHedger hedger;
+    private final ChatCompletionApi chatCompletionApi;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Constructor for OpenAIService.
@@ -35,11 +72,139 @@ public class OpenAIService {
      * @param openAiService The OpenAI service instance
      * @param openAIConfig The OpenAI configuration
      * @param promptRuleService The prompt rule service for category-based prompts
+     * @param tokenCounter The token counter for the configured model
+     * @param llmExecutor The admission control for LLM calls
+     * @param circuitBreaker The circuit breaker in front of the provider
+     * @param hedger The hedging of slow calls
+     * @param chatCompletionApi The chat completions endpoint reporting cached tokens
+     * @param meterRegistry The registry for token usage metrics
      */
-    public OpenAIService(OpenAiService openAiService, OpenAIConfig openAIConfig, PromptRuleService promptRuleService) {
+    public OpenAIService(OpenAiService openAiService, OpenAIConfig openAIConfig, PromptRuleService promptRuleService,
+                         TokenCounter tokenCounter, LlmExecutor llmExecutor, LlmCircuitBreaker circuitBreaker,
+                         LlmHedger hedger, ChatCompletionApi chatCompletionApi, MeterRegistry meterRegistry) {
         this.openAiService = openAiService;
         this.openAIConfig = openAIConfig;
         this.promptRuleService = promptRuleService;
+        this.tokenCounter = tokenCounter;
+        this.llmExecutor = llmExecutor;
+        this.circuitBreaker = circuitBreaker;
+        this.hedger = hedger;
+        this.chatCompletionApi = chatCompletionApi;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Computes how many tokens of log lines fit into the prompt: the prompt limit (see
+     * {@link #promptTokenLimit(int)} with the completion of {@code openai.max-tokens}) minus the system and
+     * context messages without logs and the tokens reserved for history and question
+     * ({@code openai.conversation-reserve-tokens}).
+     * <p>
+     * The budget does not depend on the question or history, so every turn of a chat selects the same
+     * log lines and the prompt prefix stays cacheable.
+     *
+     * @param category The prompt category to use for personalized prompts
+     * @param hints Failure signature hints added to the context message, or null
+     * @return Token budget for the log lines, never negative
+     */
+    public int logTokenBudget(PromptCategory category, String hints) {
+        int promptWithoutLogs = tokenCounter.countMessages(buildMessages("", List.of(), category, false, null, hints));
+        int promptLimit = promptTokenLimit(openAIConfig.getMaxTokens());
+        int budget = promptLimit - promptWithoutLogs - openAIConfig.getConversationReserveTokens();
+        logger.debug("Log token budget: {} (prompt limit {}, prompt without logs {}, conversation {})",
+                budget, promptLimit, promptWithoutLogs, openAIConfig.getConversationReserveTokens());
+        return Math.max(0, budget);
+    }
+
+    /**
+     * Computes how many tokens of log lines fit into one chunk summarization prompt.
+     *
+     * @param query The original query string
+     * @param maxTokens Tokens reserved for the summary
+     * @return Token budget for the log lines of one chunk, never negative
+     */
+    public int summaryTokenBudget(String query, int maxTokens) {
+        int promptWithoutLogs = tokenCounter.countMessages(buildSummaryMessages(query, List.of(), 1, 1));
+        return Math.max(0, promptTokenLimit(maxTokens) - promptWithoutLogs);
+    }
+
+    /**
+     * Computes how many tokens of chat messages fit into one conversation summary prompt.
+     *
+     * @param previousSummary The current summary, or null
+     * @param maxTokens Tokens reserved for the updated summary
+     * @return Token budget for the messages, never negative
+     */
+    public int conversationSummaryTokenBudget(String previousSummary, int maxTokens) {
+        int promptWithoutMessages = tokenCounter.countMessages(buildConversationSummaryMessages(previousSummary, List.of()));
+        return Math.max(0, promptTokenLimit(maxTokens) - promptWithoutMessages);
+    }
+
+    /**
+     * Tokens a prompt may take: the model's context window minus the completion, capped at
+     * {@code openai.max-prompt-tokens} when set. Large-window models would otherwise be sent prompts
+     * filling their whole window, however slow and expensive.
+     *
+     * @param completionTokens Tokens reserved for the completion
+     * @return Maximum prompt size in tokens
+     */
+    private int promptTokenLimit(int completionTokens) {
+        int limit = tokenCounter.getContextWindow() - completionTokens;
+        int cap = openAIConfig.getMaxPromptTokens();
+        return cap > 0 ? Math.min(limit, cap) : limit;
+    }
+
+    /**
+     * Folds chat messages into the rolling summary of a conversation.
+     *
+     * @param previousSummary The current summary, or null for the first one
+     * @param messages The user/assistant messages to add, oldest first
+     * @param maxTokens Maximum length of the updated summary
+     * @return The updated summary
+     */
+    public String summarizeConversation(String previousSummary, List<ChatMessage> messages, int maxTokens) {
+        try {
+            logger.info("Updating conversation summary with {} messages", messages.size());
+            ChatCompletionRequest request = ChatCompletionRequest.builder()
+                    .model(openAIConfig.getModel())
+                    .messages(buildConversationSummaryMessages(previousSummary, messages))
+                    .maxTokens(maxTokens)
+                    .temperature(0.2)
+                    .build();
+            return complete(llmExecutor.laneFor(null), null, request);
+        } catch (LlmRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error summarizing conversation: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to summarize conversation with OpenAI: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Summarizes one chunk of a transaction's logs as the map step of a map-reduce analysis.
+     *
+     * @param query The original query string, used to focus the summary
+     * @param logs The log lines of the chunk
+     * @param part 1-based index of the chunk
+     * @param parts Total number of chunks
+     * @param maxTokens Maximum length of the summary
+     * @return The chunk summary
+     */
+    public String summarizeLogs(String query, List<String> logs, int part, int parts, int maxTokens) {
+        try {
+            logger.info("Summarizing log chunk {}/{} ({} lines)", part, parts, logs.size());
+            ChatCompletionRequest request = ChatCompletionRequest.builder()
+                    .model(openAIConfig.getModel())
+                    .messages(buildSummaryMessages(query, logs, part, parts))
+                    .maxTokens(maxTokens)
+                    .temperature(0.2)
+                    .build();
+            return complete(llmExecutor.laneFor(null), null, request);
+        } catch (LlmRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error summarizing log chunk {}/{}: {}", part, parts, e.getMessage(), e);
+            throw new RuntimeException("Failed to summarize logs with OpenAI: " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -63,7 +228,7 @@ public class OpenAIService {
      * @return OpenAI response (plain text)
      */
     public String analyzeLogs(String query, List<String> logs, PromptCategory category) {
-        return analyzeLogsInternal(query, logs, category, false, null);
+        return analyzeLogsInternal(query, logs, category, false, null, null);
     }
 
     /**
@@ -77,7 +242,23 @@ public class OpenAIService {
      * @return OpenAI response (plain text)
      */
     public String analyzeLogs(String query, List<String> logs, PromptCategory category, List<ChatMessage> historyMessages) {
-        return analyzeLogsInternal(query, logs, category, false, historyMessages);
+        return analyzeLogs(query, logs, category, historyMessages, null);
+    }
+
+    /**
+     * Sends query and logs to OpenAI with a specific prompt category, existing chat history and failure
+     * signature hints, and returns the response as plain text.
+     *
+     * @param query The original query string
+     * @param logs The log lines related to the transaction
+     * @param category The prompt category to use for personalized prompts
+     * @param historyMessages Prior chat messages (user/assistant) to include as context
+     * @param hints Failure signature hints added to the context message, or null
+     * @return OpenAI response (plain text)
+     */
+    public String analyzeLogs(String query, List<String> logs, PromptCategory category, List<ChatMessage> historyMessages,
+                              String hints) {
+        return analyzeLogsInternal(query, logs, category, false, historyMessages, hints);
     }
 
     /**
@@ -91,7 +272,64 @@ public class OpenAIService {
      * @return OpenAI response formatted as HTML
      */
     public String analyzeLogsAsHtml(String query, List<String> logs, PromptCategory category) {
-        return analyzeLogsInternal(query, logs, category, true, null);
+        return analyzeLogsInternal(query, logs, category, true, null, null);
+    }
+
+    /**
+     * Sends query and logs to OpenAI and streams the answer back token by token.
+     * Each content delta is handed to {@code onToken} as soon as it arrives; the method blocks
+     * until the stream completes and returns the full answer.
+     *
+     * @param query The original query string
+     * @param logs The log lines related to the transaction
+     * @param category The prompt category to use for personalized prompts
+     * @param historyMessages Prior chat messages (user/assistant) to include as context
+     * @param hints Failure signature hints added to the context message, or null
+     * @param onToken Receives each content delta; an exception thrown here cancels the stream
+     * @return The complete OpenAI response (plain text)
+     */
+    public String streamAnalyzeLogs(String query, List<String> logs, PromptCategory category,
+                                    List<ChatMessage> historyMessages, String hints, Consumer<String> onToken) {
+        try {
+            logger.info("Streaming log analysis with category: {}", category);
+
+            ChatCompletionRequest chatCompletionRequest =
+                    buildRequest(buildMessages(query, logs, category, false, historyMessages, hints));
+
+            StringBuilder response = new StringBuilder();
+            // Streams are not hedged, and failures of the consumer (client gone) or an abort of the stream
+            // (interrupt while waiting for the next chunk) do not count against the provider
+            AtomicReference<RuntimeException> consumerFailure = new AtomicReference<>();
+            LlmPriority lane = llmExecutor.laneFor(category);
+            circuitBreaker.execute(lane, () -> llmExecutor.execute(lane, () -> {
+                openAiService.streamChatCompletion(chatCompletionRequest)
+                        .blockingForEach(chunk -> {
+                            if (chunk.getChoices() == null || chunk.getChoices().isEmpty()) {
+                                return;
+                            }
+                            ChatMessage delta = chunk.getChoices().get(0).getMessage();
+                            if (delta != null && delta.getContent() != null && !delta.getContent().isEmpty()) {
+                                response.append(delta.getContent());
+                                try {
+                                    onToken.accept(delta.getContent());
+                                } catch (RuntimeException e) {
+                                    consumerFailure.set(e);
+                                    throw e;
+                                }
+                            }
+                        });
+                return null;
+            }), e -> consumerFailure.get() == null && LlmCircuitBreaker.isProviderFailure(e));
+
+            logger.info("Completed streamed response from OpenAI for category: {} ({} chars)", category, response.length());
+            return response.toString();
+
+        } catch (LlmRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error streaming from OpenAI API with category {}: {}", category, e.getMessage(), e);
+            throw new RuntimeException("Failed to stream response from OpenAI: " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -103,64 +341,201 @@ public class OpenAIService {
      * @param category The prompt category to use for personalized prompts
      * @param htmlOutput Whether to request HTML output from OpenAI
      * @param historyMessages Optional prior chat messages (user/assistant) to include as context
+     * @param hints Optional failure signature hints added to the context message
      * @return OpenAI response as plain text or HTML
      */
     private String analyzeLogsInternal(String query, List<String> logs, PromptCategory category, boolean htmlOutput,
-                                       List<ChatMessage> historyMessages) {
+                                       List<ChatMessage> historyMessages, String hints) {
         try {
             logger.info("Analyzing logs with category: {} and htmlOutput: {}", category, htmlOutput);
 
-            // Create chat messages with SYSTEM and USER roles (similar to role: "developer", role: "user" pattern)
-            List<ChatMessage> messages = new ArrayList<>();
-            
-            // Add SYSTEM message with role/persona definition (equivalent to role: "developer")
-            StringBuilder systemMessageBuilder = new StringBuilder(promptRuleService.buildSystemMessage(category));
-            if (htmlOutput) {
-                systemMessageBuilder
-                        .append("\n\nOUTPUT FORMAT:\n")
-                        .append("You MUST respond with a complete, valid HTML5 document. ")
-                        .append("Include <!DOCTYPE html>, <html>, <head>, and <body> tags. ")
-                        .append("Use semantic HTML elements like <h1>, <h2>, <h3>, <p>, <ul>, <li>, and <pre><code> ")
-                        .append("to structure the response. Do NOT return JSON or markdown.");
-            }
-            String systemMessage = systemMessageBuilder.toString();
-            messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), systemMessage));
-
-            // Add prior chat history (user / assistant turns) if provided
-            if (historyMessages != null && !historyMessages.isEmpty()) {
-                messages.addAll(historyMessages);
-            }
-
-            // Build the user message with query and logs (equivalent to role: "user")
-            String userMessage = promptRuleService.buildUserMessage(category, query, logs);
-            messages.add(new ChatMessage(ChatMessageRole.USER.value(), userMessage));
-
             // Create completion request
-            ChatCompletionRequest chatCompletionRequest = ChatCompletionRequest.builder()
-                    .model(openAIConfig.getModel())
-                    .messages(messages)
-                    .maxTokens(openAIConfig.getMaxTokens())
-                    .temperature(0.7)
-                    .build();
+            ChatCompletionRequest chatCompletionRequest =
+                    buildRequest(buildMessages(query, logs, category, htmlOutput, historyMessages, hints));
 
             logger.info("Sending request to OpenAI with model: {}, category: {}, htmlOutput: {}", 
                     openAIConfig.getModel(), category, htmlOutput);
 
             // Get response
-            String response = openAiService.createChatCompletion(chatCompletionRequest)
-                    .getChoices()
-                    .get(0)
-                    .getMessage()
-                    .getContent();
+            String response = complete(llmExecutor.laneFor(category), category, chatCompletionRequest);
 
             logger.info("Received response from OpenAI for category: {} with htmlOutput: {}", category, htmlOutput);
             return response;
 
+        } catch (LlmRejectedException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error calling OpenAI API with category {} and htmlOutput {}: {}", 
                     category, htmlOutput, e.getMessage(), e);
             throw new RuntimeException("Failed to get response from OpenAI: " + e.getMessage(), e);
         }
     }
-}
 
+    /**
+     * Builds the chat messages for an analysis: SYSTEM persona, USER context with logs and hints, prior
+     * history, then the USER query on its own. Everything before the query only changes when the logs do,
+     * and the query is sent as stored in the chat history, so each turn's prompt is a prefix of the next.
+     */
+    private List<ChatMessage> buildMessages(String query, List<String> logs, PromptCategory category,
+                                            boolean htmlOutput, List<ChatMessage> historyMessages, String hints) {
+        // Create chat messages with SYSTEM and USER roles (similar to role: "developer", role: "user" pattern)
+        List<ChatMessage> messages = new ArrayList<>();
+        
+        // Add SYSTEM message with role/persona definition (equivalent to role: "developer")
+        StringBuilder systemMessageBuilder = new StringBuilder(promptRuleService.buildSystemMessage(category));
+        if (htmlOutput) {
+            systemMessageBuilder
+                    .append("\n\nOUTPUT FORMAT:\n")
+                    .append("You MUST respond with a complete, valid HTML5 document. ")
+                    .append("Include <!DOCTYPE html>, <html>, <head>, and <body> tags. ")
+                    .append("Use semantic HTML elements like <h1>, <h2>, <h3>, <p>, <ul>, <li>, and <pre><code> ")
+                    .append("to structure the response. Do NOT return JSON or markdown.");
+        }
+        String systemMessage = systemMessageBuilder.toString();
+        messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), systemMessage));
+
+        // Logs and hints are the same for every turn of the chat, so they come before the history
+        String contextMessage = promptRuleService.buildContextMessage(category, logs);
+        if (hints != null && !hints.isEmpty()) {
+            contextMessage = contextMessage + "\n" + hints;
+        }
+        messages.add(new ChatMessage(ChatMessageRole.USER.value(), contextMessage));
+
+        // Add prior chat history (user / assistant turns) if provided
+        String fittedQuery = fitQuery(query);
+        messages.addAll(fitHistory(historyMessages, fittedQuery));
+
+        messages.add(new ChatMessage(ChatMessageRole.USER.value(), fittedQuery));
+        return messages;
+    }
+
+    /**
+     * Truncates a query that does not fit into {@code openai.conversation-reserve-tokens} on its own, so
+     * the log budget can stay the same for every turn.
+     */
+    private String fitQuery(String query) {
+        int reserve = openAIConfig.getConversationReserveTokens();
+        int queryTokens = tokenCounter.countMessages(List.of(new ChatMessage(ChatMessageRole.USER.value(), query)));
+        if (queryTokens <= reserve) {
+            return query;
+        }
+        int overhead = tokenCounter.countMessages(List.of(new ChatMessage(ChatMessageRole.USER.value(), "")));
+        logger.warn("Query of {} tokens exceeds the conversation reserve of {} tokens, truncating it", queryTokens, reserve);
+        return tokenCounter.truncate(query, reserve - overhead);
+    }
+
+    /**
+     * Keeps the most recent history messages that fit into {@code openai.conversation-reserve-tokens}
+     * together with the query.
+     */
+    private List<ChatMessage> fitHistory(List<ChatMessage> historyMessages, String query) {
+        if (historyMessages == null || historyMessages.isEmpty()) {
+            return List.of();
+        }
+        ChatMessage queryMessage = new ChatMessage(ChatMessageRole.USER.value(), query);
+        int reserve = openAIConfig.getConversationReserveTokens();
+        int start = historyMessages.size();
+        int tokens = tokenCounter.countMessages(List.of(queryMessage));
+        int replyPriming = tokenCounter.countMessages(List.of());
+        while (start > 0) {
+            int messageTokens = tokenCounter.countMessages(List.of(historyMessages.get(start - 1))) - replyPriming;
+            if (tokens + messageTokens > reserve) {
+                break;
+            }
+            tokens += messageTokens;
+            start--;
+        }
+        if (start > 0) {
+            logger.debug("Dropped {} of {} history messages exceeding the conversation reserve of {} tokens",
+                    start, historyMessages.size(), reserve);
+        }
+        return historyMessages.subList(start, historyMessages.size());
+    }
+
+    /**
+     * Builds the chat messages for summarizing one chunk of logs: SYSTEM summarizer instructions, then the USER excerpt.
+     */
+    private List<ChatMessage> buildSummaryMessages(String query, List<String> logs, int part, int parts) {
+        StringBuilder userMessage = new StringBuilder(256 + logs.size() * 120);
+        userMessage.append("User query: ").append(query).append("\n\n")
+                .append("Log excerpt (part ").append(part).append(" of ").append(parts).append("):\n");
+        for (String log : logs) {
+            userMessage.append(log).append('\n');
+        }
+        List<ChatMessage> messages = new ArrayList<>(2);
+        messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), SUMMARY_SYSTEM_MESSAGE));
+        messages.add(new ChatMessage(ChatMessageRole.USER.value(), userMessage.toString()));
+        return messages;
+    }
+
+    /**
+     * Builds the chat messages for updating a conversation summary: SYSTEM instructions, then the USER
+     * current summary and new messages.
+     */
+    private List<ChatMessage> buildConversationSummaryMessages(String previousSummary, List<ChatMessage> messages) {
+        int length = previousSummary != null ? previousSummary.length() : 0;
+        for (ChatMessage message : messages) {
+            length += message.getContent().length() + 16;
+        }
+        StringBuilder userMessage = new StringBuilder(length + 64);
+        userMessage.append("Current summary:\n")
+                .append(previousSummary != null ? previousSummary : "(none yet)")
+                .append("\n\nNew messages:\n");
+        for (ChatMessage message : messages) {
+            userMessage.append(ChatMessageRole.USER.value().equals(message.getRole()) ? "User: " : "Assistant: ")
+                    .append(message.getContent())
+                    .append("\n\n");
+        }
+        List<ChatMessage> result = new ArrayList<>(2);
+        result.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), CONVERSATION_SUMMARY_SYSTEM_MESSAGE));
+        result.add(new ChatMessage(ChatMessageRole.USER.value(), userMessage.toString()));
+        return result;
+    }
+
+    /**
+     * Runs a chat completion through the circuit breaker and admission control, hedging slow attempts.
+     * Hedging happens after admission, so only the provider call is timed and duplicated; a hedge shares
+     * the admitted slot and is bounded by {@code llm.hedging.max-concurrent-hedges} instead.
+     *
+     * @param category The prompt category, or null for chunk and conversation summaries
+     */
+    private String complete(LlmPriority lane, PromptCategory category, ChatCompletionRequest request) {
+        ChatCompletionResponse response = circuitBreaker.execute(lane, () -> llmExecutor.execute(lane,
+                () -> hedger.execute(() -> ChatCompletionApi.execute(chatCompletionApi.createChatCompletion(request)))));
+        recordUsage(category, response.usage());
+        return response.choices()
+                .get(0)
+                .getMessage()
+                .getContent();
+    }
+
+    private void recordUsage(PromptCategory category, ChatCompletionResponse.TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        String categoryTag = category != null ? category.name() : "SUMMARY";
+        countTokens("prompt", categoryTag, usage.promptTokens());
+        countTokens("cached_prompt", categoryTag, usage.cachedTokens());
+        countTokens("completion", categoryTag, usage.completionTokens());
+        logger.debug("Token usage for {}: {} prompt ({} cached), {} completion",
+                categoryTag, usage.promptTokens(), usage.cachedTokens(), usage.completionTokens());
+    }
+
+    private void countTokens(String type, String category, long tokens) {
+        Counter.builder("llm.tokens")
+                .description("Tokens used by LLM calls")
+                .tag("type", type)
+                .tag("category", category)
+                .register(meterRegistry)
+                .increment(tokens);
+    }
+
+    private ChatCompletionRequest buildRequest(List<ChatMessage> messages) {
+        return ChatCompletionRequest.builder()
+                .model(openAIConfig.getModel())
+                .messages(messages)
+                .maxTokens(openAIConfig.getMaxTokens())
+                .temperature(0.7)
+                .build();
+    }
+}
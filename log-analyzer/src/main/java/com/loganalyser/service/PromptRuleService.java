@@ -49,4 +49,15 @@ public interface PromptRuleService {
      * @return The user message
      */
     String buildUserMessage(PromptCategory category, String query, java.util.List<String> logs);
+
+    /**
+     * Builds the user message for a given category without the query: the logs and the closing
+     * instructions. It only depends on the category and logs, so it stays identical across the turns
+     * of a chat and the query can be sent as a separate, final message.
+     *
+     * @param category The prompt category
+     * @param logs The log lines
+     * @return The context message
+     */
+    String buildContextMessage(PromptCategory category, java.util.List<String> logs);
 }
\ No newline at end of file
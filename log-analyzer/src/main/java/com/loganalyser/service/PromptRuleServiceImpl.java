@@ -6,6 +6,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +15,10 @@ import java.util.Map;
 /**
  * Implementation of PromptRuleService.
  * Manages prompt rules for different categories and builds personalized prompts.
+ * <p>
+ * Each rule is compiled once at startup: the system message is extracted up front, and the user
+ * message and full prompt templates are split into literal and placeholder segments, so building a
+ * prompt is a single append pass into a buffer sized from the query and log lengths.
  *
  * @author Himanshu Sehgal
  * @since 2025-12-08
@@ -22,13 +28,21 @@ public class PromptRuleServiceImpl implements PromptRuleService {
 
     private static final Logger logger = LoggerFactory.getLogger(PromptRuleServiceImpl.class);
 
+    private static final String QUERY_PLACEHOLDER = "{QUERY}";
+    private static final String LOGS_PLACEHOLDER = "{LOGS}";
+    private static final String NO_LOGS_TEXT = "No logs found matching the transaction ID.\n";
+
     private final Map<PromptCategory, PromptRule> promptRules = new HashMap<>();
+    private final Map<PromptCategory, CompiledRule> compiledRules = new EnumMap<>(PromptCategory.class);
 
     /**
-     * Constructor that initializes default prompt rules for all categories.
+     * Constructor that initializes and compiles default prompt rules for all categories.
      */
     public PromptRuleServiceImpl() {
         initializeDefaultRules();
+        for (Map.Entry<PromptCategory, PromptRule> entry : promptRules.entrySet()) {
+            compiledRules.put(entry.getKey(), compile(entry.getKey(), entry.getValue()));
+        }
     }
 
     /**
@@ -274,23 +288,7 @@ public class PromptRuleServiceImpl implements PromptRuleService {
      */
     @Override
     public String buildPrompt(PromptCategory category, String query, List<String> logs) {
-        PromptRule rule = getPromptRule(category);
-        String template = rule.template();
-
-        // Replace placeholders
-        String logsText;
-        if (logs == null || logs.isEmpty()) {
-            logsText = "No logs found matching the transaction ID.\n";
-        } else {
-            StringBuilder logsBuilder = new StringBuilder();
-            for (String log : logs) {
-                logsBuilder.append(log).append("\n");
-            }
-            logsText = logsBuilder.toString();
-        }
-
-        return template.replace("{QUERY}", query != null ? query : "")
-                      .replace("{LOGS}", logsText);
+        return getCompiledRule(category).prompt().render(query, logs);
     }
 
     /**
@@ -302,22 +300,7 @@ public class PromptRuleServiceImpl implements PromptRuleService {
      * @return The system message containing role and goal
      */
     public String buildSystemMessage(PromptCategory category) {
-        PromptRule rule = getPromptRule(category);
-        
-        // For DEVELOPER_RCA, extract the full ROLE & GOAL section
-        if (category == PromptCategory.DEVELOPER_RCA) {
-            String template = rule.template();
-            // Extract everything from "ROLE & GOAL:" to just before "User Query:"
-            int roleStart = template.indexOf("ROLE & GOAL:");
-            int userQueryStart = template.indexOf("User Query:");
-            
-            if (roleStart >= 0 && userQueryStart > roleStart) {
-                return template.substring(roleStart, userQueryStart).trim();
-            }
-        }
-        
-        // For other categories, create a simple role/goal message
-        return String.format("ROLE: %s\nGOAL: %s", rule.role(), rule.goal());
+        return getCompiledRule(category).systemMessage();
     }
 
     /**
@@ -329,41 +312,179 @@ public class PromptRuleServiceImpl implements PromptRuleService {
      * @return The user message
      */
     public String buildUserMessage(PromptCategory category, String query, List<String> logs) {
-        PromptRule rule = getPromptRule(category);
+        return getCompiledRule(category).userMessage().render(query, logs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String buildContextMessage(PromptCategory category, List<String> logs) {
+        return getCompiledRule(category).contextMessage().render(null, logs);
+    }
+
+    private CompiledRule getCompiledRule(PromptCategory category) {
+        CompiledRule rule = compiledRules.get(category);
+        if (rule == null) {
+            logger.warn("No prompt rule found for category: {}, falling back to GENERAL", category);
+            return compiledRules.get(PromptCategory.GENERAL);
+        }
+        return rule;
+    }
+
+    /**
+     * Splits a rule's template into system message, user message and full prompt.
+     */
+    private static CompiledRule compile(PromptCategory category, PromptRule rule) {
         String template = rule.template();
 
-        // Extract the user content part (after ROLE & GOAL section if present)
+        // For DEVELOPER_RCA, the system message is the full ROLE & GOAL section up to "User Query:";
+        // other categories get a simple role/goal message
+        String systemMessage = null;
+        if (category == PromptCategory.DEVELOPER_RCA) {
+            int roleStart = template.indexOf("ROLE & GOAL:");
+            int userQueryStart = template.indexOf("User Query:");
+            if (roleStart >= 0 && userQueryStart > roleStart) {
+                systemMessage = template.substring(roleStart, userQueryStart).trim();
+            }
+        }
+        if (systemMessage == null) {
+            systemMessage = String.format("ROLE: %s\nGOAL: %s", rule.role(), rule.goal());
+        }
+
+        // If the template contains a ROLE & GOAL section, the user message is only the user-facing part
         String userContent = template;
-        
-        // If template contains ROLE & GOAL section, extract only the user-facing part
         if (template.contains("ROLE & GOAL:") || template.contains("ROLE:")) {
-            // Find where the actual user content starts
             int userStart = template.indexOf("User Query:");
             if (userStart < 0) {
                 userStart = template.indexOf("User query:");
             }
             if (userStart < 0) {
-                userStart = template.indexOf("{QUERY}");
+                userStart = template.indexOf(QUERY_PLACEHOLDER);
             }
-            
             if (userStart > 0) {
                 userContent = template.substring(userStart);
             }
         }
 
-        // Replace placeholders
-        String logsText;
-        if (logs == null || logs.isEmpty()) {
-            logsText = "No logs found matching the transaction ID.\n";
-        } else {
-            StringBuilder logsBuilder = new StringBuilder();
-            for (String log : logs) {
-                logsBuilder.append(log).append("\n");
+        return new CompiledRule(systemMessage, PromptTemplate.compile(userContent),
+                PromptTemplate.compile(withoutQueryLine(userContent)), PromptTemplate.compile(template));
+    }
+
+    /**
+     * Removes the line holding the query placeholder, and the blank line separating it from the rest.
+     */
+    private static String withoutQueryLine(String content) {
+        int query = content.indexOf(QUERY_PLACEHOLDER);
+        if (query < 0) {
+            return content;
+        }
+        int lineStart = content.lastIndexOf('\n', query) + 1;
+        int lineEnd = content.indexOf('\n', query);
+        String before = content.substring(0, lineStart);
+        String after = lineEnd < 0 ? "" : content.substring(lineEnd + 1);
+        if (after.startsWith("\n") && (before.isEmpty() || before.endsWith("\n\n"))) {
+            after = after.substring(1);
+        }
+        return before + after;
+    }
+
+    /**
+     * A prompt rule compiled for fast assembly.
+     *
+     * @param systemMessage The system message
+     * @param userMessage The user message template
+     * @param contextMessage The user message template without the query
+     * @param prompt The full prompt template
+     */
+    private record CompiledRule(String systemMessage, PromptTemplate userMessage, PromptTemplate contextMessage,
+                                PromptTemplate prompt) {
+    }
+
+    /**
+     * A template split into literal segments and {@code {QUERY}} / {@code {LOGS}} placeholders.
+     * Placeholders are only recognized in the template itself, never in the substituted query or logs.
+     */
+    private static final class PromptTemplate {
+
+        // Either a literal String, or QUERY_PLACEHOLDER / LOGS_PLACEHOLDER (compared by identity)
+        private final String[] segments;
+        private final int literalLength;
+        private final int queryCount;
+        private final int logsCount;
+
+        private PromptTemplate(String[] segments) {
+            this.segments = segments;
+            int literals = 0;
+            int queries = 0;
+            int logs = 0;
+            for (String segment : segments) {
+                if (segment == QUERY_PLACEHOLDER) {
+                    queries++;
+                } else if (segment == LOGS_PLACEHOLDER) {
+                    logs++;
+                } else {
+                    literals += segment.length();
+                }
             }
-            logsText = logsBuilder.toString();
+            this.literalLength = literals;
+            this.queryCount = queries;
+            this.logsCount = logs;
         }
 
-        return userContent.replace("{QUERY}", query != null ? query : "")
-                         .replace("{LOGS}", logsText);
+        static PromptTemplate compile(String template) {
+            List<String> segments = new ArrayList<>();
+            int position = 0;
+            while (position < template.length()) {
+                int query = template.indexOf(QUERY_PLACEHOLDER, position);
+                int logs = template.indexOf(LOGS_PLACEHOLDER, position);
+                int next = query < 0 ? logs : logs < 0 ? query : Math.min(query, logs);
+                if (next < 0) {
+                    segments.add(template.substring(position));
+                    break;
+                }
+                if (next > position) {
+                    segments.add(template.substring(position, next));
+                }
+                String placeholder = next == query ? QUERY_PLACEHOLDER : LOGS_PLACEHOLDER;
+                segments.add(placeholder);
+                position = next + placeholder.length();
+            }
+            return new PromptTemplate(segments.toArray(String[]::new));
+        }
+
+        String render(String query, List<String> logs) {
+            String queryText = query != null ? query : "";
+            boolean noLogs = logs == null || logs.isEmpty();
+
+            int logsLength = 0;
+            if (logsCount > 0) {
+                if (noLogs) {
+                    logsLength = NO_LOGS_TEXT.length();
+                } else {
+                    for (String log : logs) {
+                        logsLength += log.length() + 1;
+                    }
+                }
+            }
+
+            StringBuilder sb = new StringBuilder(literalLength + queryCount * queryText.length() + logsCount * logsLength);
+            for (String segment : segments) {
+                if (segment == QUERY_PLACEHOLDER) {
+                    sb.append(queryText);
+                } else if (segment == LOGS_PLACEHOLDER) {
+                    if (noLogs) {
+                        sb.append(NO_LOGS_TEXT);
+                    } else {
+                        for (String log : logs) {
+                            sb.append(log).append('\n');
+                        }
+                    }
+                } else {
+                    sb.append(segment);
+                }
+            }
+            return sb.toString();
+        }
     }
-}
\ No newline at end of file
+}
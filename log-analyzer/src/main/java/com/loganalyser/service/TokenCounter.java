@@ -0,0 +1,120 @@
+package com.loganalyser.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.loganalyser.config.OpenAIConfig;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts prompt tokens with the BPE encoding of the configured OpenAI model and knows the model's
+ * context window, so prompts can be budgeted in tokens rather than characters.
+ * <p>
+ * The context window is looked up by model-name prefix; {@code openai.context-window} overrides it
+ * for models missing from the table (0 means look it up).
+ */
+@Component
+public class TokenCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenCounter.class);
+
+    // Chat format overhead: every message is wrapped in role/separator tokens, and the reply is primed
+    private static final int TOKENS_PER_MESSAGE = 3;
+    private static final int TOKENS_REPLY_PRIMING = 3;
+
+    private static final int DEFAULT_CONTEXT_WINDOW = 8_192;
+
+    // Longest prefix first, so e.g. gpt-4-32k wins over gpt-4
+    private static final Map<String, Integer> CONTEXT_WINDOWS = new LinkedHashMap<>();
+
+    static {
+        CONTEXT_WINDOWS.put("gpt-4o", 128_000);
+        CONTEXT_WINDOWS.put("gpt-4.1", 1_047_576);
+        CONTEXT_WINDOWS.put("gpt-4-turbo", 128_000);
+        CONTEXT_WINDOWS.put("gpt-4-1106", 128_000);
+        CONTEXT_WINDOWS.put("gpt-4-0125", 128_000);
+        CONTEXT_WINDOWS.put("gpt-4-32k", 32_768);
+        CONTEXT_WINDOWS.put("gpt-4", 8_192);
+        CONTEXT_WINDOWS.put("gpt-3.5-turbo-instruct", 4_096);
+        CONTEXT_WINDOWS.put("gpt-3.5-turbo", 16_385);
+    }
+
+    private final Encoding encoding;
+    private final int contextWindow;
+
+    public TokenCounter(OpenAIConfig openAIConfig,
+                        @Value("${openai.context-window:0}") int contextWindowOverride) {
+        String model = openAIConfig.getModel();
+        this.encoding = Encodings.newLazyEncodingRegistry()
+                .getEncodingForModel(model)
+                .orElseGet(() -> Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE));
+        this.contextWindow = contextWindowOverride > 0 ? contextWindowOverride : lookupContextWindow(model);
+        logger.info("Token counting for model {} with encoding {}, context window {} tokens",
+                model, encoding.getName(), contextWindow);
+    }
+
+    /**
+     * @param text The text
+     * @return Number of tokens the text encodes to
+     */
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokensOrdinary(text);
+    }
+
+    /**
+     * @param text The text
+     * @param maxTokens Maximum number of tokens
+     * @return The longest prefix of the text that encodes to at most {@code maxTokens} tokens
+     */
+    public String truncate(String text, int maxTokens) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        if (maxTokens <= 0) {
+            return "";
+        }
+        EncodingResult result = encoding.encodeOrdinary(text, maxTokens);
+        return result.isTruncated() ? text.substring(0, result.getLastProcessedCharacterIndex() + 1) : text;
+    }
+
+    /**
+     * @param messages Chat messages
+     * @return Number of prompt tokens the messages take, including chat format overhead
+     */
+    public int countMessages(List<ChatMessage> messages) {
+        int tokens = TOKENS_REPLY_PRIMING;
+        for (ChatMessage message : messages) {
+            tokens += TOKENS_PER_MESSAGE + count(message.getRole()) + count(message.getContent());
+        }
+        return tokens;
+    }
+
+    /**
+     * @return Context window of the configured model in tokens (prompt and completion combined)
+     */
+    public int getContextWindow() {
+        return contextWindow;
+    }
+
+    private static int lookupContextWindow(String model) {
+        String normalized = model == null ? "" : model.toLowerCase(Locale.ROOT);
+        for (Map.Entry<String, Integer> entry : CONTEXT_WINDOWS.entrySet()) {
+            if (normalized.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        logger.warn("Unknown context window for model {}, assuming {} tokens (set openai.context-window to override)",
+                model, DEFAULT_CONTEXT_WINDOW);
+        return DEFAULT_CONTEXT_WINDOW;
+    }
+}
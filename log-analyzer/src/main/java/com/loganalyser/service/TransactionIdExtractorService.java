@@ -2,49 +2,231 @@ package com.loganalyser.service;
 
 import org.springframework.stereotype.Service;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Finds the transaction IDs a query refers to.
+ * <p>
+ * The query is scanned once, left to right; at each word start the recognized ID forms are tried
+ * directly on the characters, in order of priority:
+ * <ol>
+ *     <li>{@code TX} followed by 9 digits, the log format (e.g. TX651750504)</li>
+ *     <li>{@code TX} followed by any other number of digits</li>
+ *     <li>a {@code transaction_id}, {@code txn_id} or {@code tx_id} key ({@code _}, {@code -} or nothing before
+ *     {@code id}, any case) followed by {@code :}, {@code =} or whitespace and a TX ID</li>
+ *     <li>the same keys followed by any other alphanumeric value (with dashes)</li>
+ *     <li>a UUID after {@code id} and {@code :}, {@code =} or whitespace</li>
+ *     <li>any other UUID</li>
+ *     <li>an uppercase alphanumeric word of 10 or more characters, only if nothing else was found</li>
+ * </ol>
+ */
 @Service
 public class TransactionIdExtractorService {
 
-    // Common transaction ID patterns - prioritized to match log format (TX#########)
-    private static final Pattern[] TRANSACTION_PATTERNS = {
-        Pattern.compile("\\b(TX\\d{9})\\b"), // TX followed by 9 digits (e.g., TX651750504)
-        Pattern.compile("\\b(TX\\d+)\\b"), // TX followed by any digits
-        Pattern.compile("transaction[_-]?id[\\s:=]+(TX\\d+)", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("txn[_-]?id[\\s:=]+(TX\\d+)", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("tx[_-]?id[\\s:=]+(TX\\d+)", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("transaction[_-]?id[\\s:=]+([a-zA-Z0-9-]+)", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("txn[_-]?id[\\s:=]+([a-zA-Z0-9-]+)", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("tx[_-]?id[\\s:=]+([a-zA-Z0-9-]+)", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("id[\\s:=]+([a-f0-9]{8}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{12})", Pattern.CASE_INSENSITIVE), // UUID
-        Pattern.compile("([a-f0-9]{8}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{4}-[a-f0-9]{12})", Pattern.CASE_INSENSITIVE), // Standalone UUID
-        Pattern.compile("\\b([A-Z0-9]{10,})\\b") // Alphanumeric ID (10+ chars)
-    };
+    private static final int RANK_TX_LOG_FORMAT = 0;
+    private static final int RANK_TX = 1;
+    private static final int RANK_KEYED_TX = 2;
+    private static final int RANK_KEYED = 3;
+    private static final int RANK_KEYED_UUID = 4;
+    private static final int RANK_UUID = 5;
+    private static final int RANK_ALPHANUMERIC = 6;
+
+    private static final int TX_LOG_FORMAT_DIGITS = 9;
+    private static final int MIN_ALPHANUMERIC_LENGTH = 10;
+    private static final int UUID_LENGTH = 36;
+    private static final String[] KEY_PREFIXES = {"transaction", "txn", "tx"};
 
     /**
-     * Extracts transaction ID from the query string
+     * Extracts the highest ranked transaction ID from the query string
      * @param query The query string
      * @return The extracted transaction ID, or null if not found
      */
     public String extractTransactionId(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return null;
+        List<String> transactionIds = extractTransactionIds(query);
+        return transactionIds.isEmpty() ? null : transactionIds.get(0);
+    }
+
+    /**
+     * Extracts all transaction IDs from the query string
+     * @param query The query string
+     * @return The distinct transaction IDs, highest ranked first and in order of appearance within a rank;
+     *         empty if none were found
+     */
+    public List<String> extractTransactionIds(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
         }
 
-        // Try each pattern
-        for (Pattern pattern : TRANSACTION_PATTERNS) {
-            Matcher matcher = pattern.matcher(query);
-            if (matcher.find()) {
-                String transactionId = matcher.group(1);
-                if (transactionId != null && !transactionId.trim().isEmpty()) {
-                    return transactionId.trim();
+        // Best rank and first position per ID
+        Map<String, int[]> candidates = new LinkedHashMap<>();
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            if (!isWordChar(query.charAt(i)) || (i > 0 && isWordChar(query.charAt(i - 1)))) {
+                i++;
+                continue;
+            }
+
+            int end = scanUuid(query, i);
+            if (end > 0) {
+                add(candidates, query.substring(i, end), followsIdKey(query, i) ? RANK_KEYED_UUID : RANK_UUID, i);
+                i = end;
+                continue;
+            }
+
+            int valueStart = scanKey(query, i);
+            if (valueStart > 0) {
+                int valueEnd = valueStart;
+                while (valueEnd < length && (isAsciiLetterOrDigit(query.charAt(valueEnd)) || query.charAt(valueEnd) == '-')) {
+                    valueEnd++;
                 }
+                if (valueEnd > valueStart) {
+                    String value = query.substring(valueStart, valueEnd);
+                    add(candidates, value, isTx(query, valueStart, valueEnd) ? RANK_KEYED_TX : RANK_KEYED, valueStart);
+                    i = valueEnd;
+                    continue;
+                }
+            }
+
+            int wordEnd = i;
+            while (wordEnd < length && isWordChar(query.charAt(wordEnd))) {
+                wordEnd++;
+            }
+            if (isTx(query, i, wordEnd)) {
+                add(candidates, query.substring(i, wordEnd),
+                        wordEnd - i - 2 == TX_LOG_FORMAT_DIGITS ? RANK_TX_LOG_FORMAT : RANK_TX, i);
+            } else if (wordEnd - i >= MIN_ALPHANUMERIC_LENGTH && isUpperAlphanumeric(query, i, wordEnd)) {
+                add(candidates, query.substring(i, wordEnd), RANK_ALPHANUMERIC, i);
             }
+            i = wordEnd;
+        }
+
+        if (candidates.isEmpty()) {
+            return List.of();
         }
+        List<Map.Entry<String, int[]>> ranked = new ArrayList<>(candidates.entrySet());
+        ranked.sort(Comparator.<Map.Entry<String, int[]>>comparingInt(entry -> entry.getValue()[0])
+                .thenComparingInt(entry -> entry.getValue()[1]));
+        boolean specificIdFound = ranked.get(0).getValue()[0] < RANK_ALPHANUMERIC;
 
-        return null;
+        List<String> transactionIds = new ArrayList<>(ranked.size());
+        for (Map.Entry<String, int[]> entry : ranked) {
+            // The alphanumeric catch-all is only a fallback
+            if (specificIdFound && entry.getValue()[0] == RANK_ALPHANUMERIC) {
+                break;
+            }
+            transactionIds.add(entry.getKey());
+        }
+        return transactionIds;
+    }
+
+    private static void add(Map<String, int[]> candidates, String id, int rank, int position) {
+        candidates.merge(id, new int[]{rank, position},
+                (existing, found) -> found[0] < existing[0] ? new int[]{found[0], existing[1]} : existing);
+    }
+
+    /**
+     * @return The end of the UUID starting at {@code start}, or -1 if there is none
+     */
+    private static int scanUuid(String query, int start) {
+        int end = start + UUID_LENGTH;
+        if (end > query.length() || (end < query.length() && isWordChar(query.charAt(end)))) {
+            return -1;
+        }
+        for (int i = start; i < end; i++) {
+            int offset = i - start;
+            char c = query.charAt(i);
+            boolean dash = offset == 8 || offset == 13 || offset == 18 || offset == 23;
+            if (dash ? c != '-' : Character.digit(c, 16) < 0 || c > 'f') {
+                return -1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return The start of the value after a transaction ID key starting at {@code start}, or -1 if
+     *         there is no key or no separator after it
+     */
+    private static int scanKey(String query, int start) {
+        for (String prefix : KEY_PREFIXES) {
+            if (!query.regionMatches(true, start, prefix, 0, prefix.length())) {
+                continue;
+            }
+            int i = start + prefix.length();
+            if (i < query.length() && (query.charAt(i) == '_' || query.charAt(i) == '-')) {
+                i++;
+            }
+            if (!query.regionMatches(true, i, "id", 0, 2)) {
+                continue;
+            }
+            i += 2;
+            int valueStart = skipSeparators(query, i);
+            if (valueStart > i) {
+                return valueStart;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Whether the UUID starting at {@code start} is preceded by {@code id} and separators
+     */
+    private static boolean followsIdKey(String query, int start) {
+        int i = start;
+        while (i > 0 && isSeparator(query.charAt(i - 1))) {
+            i--;
+        }
+        return i < start && i >= 2 && query.regionMatches(true, i - 2, "id", 0, 2);
+    }
+
+    private static int skipSeparators(String query, int start) {
+        int i = start;
+        while (i < query.length() && isSeparator(query.charAt(i))) {
+            i++;
+        }
+        return i;
     }
-}
 
+    private static boolean isTx(String query, int start, int end) {
+        if (end - start < 3 || query.charAt(start) != 'T' || query.charAt(start + 1) != 'X') {
+            return false;
+        }
+        for (int i = start + 2; i < end; i++) {
+            if (!isAsciiDigit(query.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUpperAlphanumeric(String query, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (!isAsciiDigit(c) && (c < 'A' || c > 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ':' || c == '=' || Character.isWhitespace(c);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return isAsciiDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
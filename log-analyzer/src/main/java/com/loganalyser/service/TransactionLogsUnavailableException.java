@@ -0,0 +1,12 @@
+package com.loganalyser.service;
+
+/**
+ * Thrown by the streaming analysis when there is nothing to analyze: the transaction is unknown or
+ * has no logs. The message is the user-facing explanation.
+ */
+public class TransactionLogsUnavailableException extends RuntimeException {
+
+    public TransactionLogsUnavailableException(String message) {
+        super(message);
+    }
+}
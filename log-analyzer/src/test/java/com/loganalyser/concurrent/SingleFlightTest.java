@@ -0,0 +1,142 @@
+package com.loganalyser.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>(executor);
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void coalescesConcurrentCallsForTheSameKey() throws Exception {
+        CompletableFuture<String> first = call("TX1", 10_000);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = call("TX1", 10_000);
+        awaitWaiters(2);
+
+        release.countDown();
+
+        assertEquals("answer 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("answer 1", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void computesAgainOnceAFlightCompleted() throws Exception {
+        release.countDown();
+
+        assertEquals("answer 1", singleFlight.execute("TX1", this::compute, 5_000));
+        assertEquals("answer 2", singleFlight.execute("TX1", this::compute, 5_000));
+    }
+
+    @Test
+    void rethrowsTheFailureOfTheComputation() {
+        IllegalStateException failure = new IllegalStateException("no logs");
+
+        assertEquals(failure, assertThrows(IllegalStateException.class,
+                () -> singleFlight.execute("TX1", () -> { throw failure; }, 5_000)));
+    }
+
+    @Test
+    void cancelsTheComputationWhenTheLastWaiterLeaves() throws Exception {
+        assertThrows(TimeoutException.class, () -> singleFlight.execute("TX1", this::compute, 200));
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void keepsComputingWhileOtherCallersWait() throws Exception {
+        CompletableFuture<String> patient = call("TX1", 10_000);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(TimeoutException.class, () -> singleFlight.execute("TX1", this::compute, 100));
+        release.countDown();
+
+        assertEquals("answer 1", patient.get(5, TimeUnit.SECONDS));
+        assertEquals(1, interrupted.getCount());
+    }
+
+    @Test
+    void reportsARejectedComputation() {
+        executor.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> singleFlight.execute("TX1", this::compute, 5_000));
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    private String compute() {
+        int call = calls.incrementAndGet();
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        }
+        return "answer " + call;
+    }
+
+    private CompletableFuture<String> call(String key, long timeoutMs) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return singleFlight.execute(key, this::compute, timeoutMs);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, callers);
+    }
+
+    /**
+     * Waits until the given number of caller threads block on a result.
+     */
+    private void awaitWaiters(int waiters) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getState() == Thread.State.TIMED_WAITING)
+                .filter(thread -> isWaitingForFlight(thread.getStackTrace()))
+                .count() < waiters) {
+            assertFalse(System.nanoTime() > deadline, "callers did not join the flight");
+            Thread.sleep(10);
+        }
+    }
+
+    private static boolean isWaitingForFlight(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().equals(SingleFlight.class.getName()) && frame.getMethodName().equals("execute")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+package com.loganalyser.ingest;
+
+import com.loganalyser.document.LogDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GrokLogLineParserTest {
+
+    // The "bracketed" format shipped in application.properties
+    private static final String BRACKETED = "%{TIMESTAMP:timestamp} [%{WORD:level}] [%{DATA:service}]%{DATA}"
+            + "TX_ID: %{ID:transactionId}%{DATA}UUID: %{UUID:uuid}%{DATA}CLIENT_TXN_ID: %{ID:clientTxnId}"
+            + "%{DATA}USER_ID: %{ID:userId}%{GREEDYDATA}";
+
+    private final GrokLogLineParser grok = GrokPatternCompiler.compile("bracketed", BRACKETED);
+    private final TextLogLineParser text = new TextLogLineParser();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2025-12-08 10:15:30.123 [ERROR] [payment-service] Payment failed TX_ID: TX651750504 "
+                    + "UUID: 3f2b8c1e-9a4d-4e6f-8b2a-1c3d5e7f9a0b CLIENT_TXN_ID: CLIENT_TXN_1234 USER_ID: USER_42 reason=timeout",
+            "2025-12-08 10:15:31.007 [INFO] [order-service] Order created TX_ID: TX651750504 "
+                    + "UUID: 3f2b8c1e-9a4d-4e6f-8b2a-1c3d5e7f9a0b USER_ID: USER_42",
+            "2025-12-08 10:15:32.450 [WARN] [gateway] Retrying upstream call without transaction context"
+    })
+    void extractsTheSameFieldsAsTheTextParser(String line) {
+        LogDocument expected = text.parse(line);
+        LogDocument actual = grok.parse(line);
+
+        assertEquals(expected.getEventTime(), actual.getEventTime());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getLogLevel(), actual.getLogLevel());
+        assertEquals(expected.getService(), actual.getService());
+        assertEquals(expected.getTransactionId(), actual.getTransactionId());
+        assertEquals(expected.getUuid(), actual.getUuid());
+        assertEquals(expected.getClientTxnId(), actual.getClientTxnId());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(line, actual.getLogLine());
+    }
+
+    @Test
+    void keepsTheLineOfAStackTraceWithoutFields() {
+        LogDocument doc = grok.parse("\tat com.example.PaymentClient.charge(PaymentClient.java:87)");
+
+        assertEquals("\tat com.example.PaymentClient.charge(PaymentClient.java:87)", doc.getLogLine());
+        assertNull(doc.getEventTime());
+        assertNull(doc.getTransactionId());
+    }
+}
@@ -0,0 +1,119 @@
+package com.loganalyser.ingest;
+
+import com.loganalyser.document.LogDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JsonLogLineParserTest {
+
+    private final JsonLogLineParser json = new JsonLogLineParser();
+
+    @Test
+    void extractsTheIndexedFields() {
+        String line = "{\"@timestamp\":\"2025-12-08T10:15:30.123Z\",\"level\":\"error\",\"service\":\"payment-service\","
+                + "\"tx_id\":\"TX651750504\",\"uuid\":\"3f2b8c1e-9a4d-4e6f-8b2a-1c3d5e7f9a0b\","
+                + "\"client_txn_id\":\"CLIENT_TXN_1234\",\"user_id\":\"USER_42\",\"message\":\"Payment failed\"}";
+
+        LogDocument doc = json.parse(line);
+
+        assertEquals(LocalDateTime.of(2025, 12, 8, 10, 15, 30, 123_000_000), doc.getEventTime());
+        assertEquals(LocalDate.of(2025, 12, 8), doc.getTimestamp());
+        assertEquals("ERROR", doc.getLogLevel());
+        assertEquals("payment-service", doc.getService());
+        assertEquals("TX651750504", doc.getTransactionId());
+        assertEquals("3f2b8c1e-9a4d-4e6f-8b2a-1c3d5e7f9a0b", doc.getUuid());
+        assertEquals("CLIENT_TXN_1234", doc.getClientTxnId());
+        assertEquals("USER_42", doc.getUserId());
+        assertEquals(line, doc.getLogLine());
+    }
+
+    @Test
+    void skipsNestedObjectsAndArrays() {
+        LogDocument doc = json.parse("{\"context\":{\"tx_id\":\"TX_INNER\",\"span\":{\"level\":\"DEBUG\"}},"
+                + "\"tags\":[{\"service\":\"tagged\"},\"x\"],\"level\":\"WARN\",\"tx_id\":\"TX651750504\"}");
+
+        assertEquals("TX651750504", doc.getTransactionId());
+        assertEquals("WARN", doc.getLogLevel());
+        assertNull(doc.getService());
+    }
+
+    @Test
+    void unescapesStrings() {
+        LogDocument doc = json.parse("{\"service\":\"pay\\\"ment\\u002Dservice\",\"message\":\"line 1\\nline 2 \\\\ }\","
+                + "\"tx_id\":\"TX1\"}");
+
+        assertEquals("pay\"ment-service", doc.getService());
+        assertEquals("TX1", doc.getTransactionId());
+    }
+
+    @Test
+    void leavesAMissingTransactionIdUnset() {
+        LogDocument doc = json.parse("{\"ts\":\"2025-12-08 10:15:30.123\",\"level\":\"INFO\",\"tx_id\":null,"
+                + "\"message\":\"Health check\"}");
+
+        assertNull(doc.getTransactionId());
+        assertEquals("INFO", doc.getLogLevel());
+        assertEquals(LocalDateTime.of(2025, 12, 8, 10, 15, 30, 123_000_000), doc.getEventTime());
+    }
+
+    @Test
+    void acceptsNumericLevelAndEpochMillisTimestamp() {
+        // 2025-12-08T10:15:30.123Z
+        LogDocument doc = json.parse("{\"time\":1765188930123,\"level\":50,\"tx_id\":\"TX1\"}");
+
+        assertEquals(LocalDateTime.of(2025, 12, 8, 10, 15, 30, 123_000_000), doc.getEventTime());
+        assertEquals(LocalDate.of(2025, 12, 8), doc.getTimestamp());
+        assertEquals("50", doc.getLogLevel());
+    }
+
+    @Test
+    void convertsOffsetTimestampsToUtc() {
+        LogDocument doc = json.parse("{\"timestamp\":\"2025-12-08T01:15:30.123+05:30\"}");
+
+        assertEquals(LocalDateTime.of(2025, 12, 7, 19, 45, 30, 123_000_000), doc.getEventTime());
+        assertEquals(LocalDate.of(2025, 12, 7), doc.getTimestamp());
+    }
+
+    @Test
+    void ignoresAnUnparseableTimestamp() {
+        LogDocument doc = json.parse("{\"timestamp\":\"yesterday\",\"tx_id\":\"TX1\"}");
+
+        assertNull(doc.getEventTime());
+        assertNull(doc.getTimestamp());
+        assertEquals("TX1", doc.getTransactionId());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2025-12-08 10:15:30.123 [ERROR] [payment-service] Payment failed TX_ID: TX651750504",
+            "[{\"tx_id\":\"TX651750504\"}]",
+            "\"TX651750504\"",
+            "42",
+            ""
+    })
+    void keepsTheRawContentOfNonObjectLines(String line) {
+        LogDocument doc = json.parse(line);
+
+        assertEquals(line, doc.getLogLine());
+        assertNull(doc.getTransactionId());
+        assertNull(doc.getEventTime());
+    }
+
+    @Test
+    void keepsTheFieldsBeforeATruncatedValue() {
+        String line = "{\"tx_id\":\"TX651750504\",\"level\":\"ERROR\",\"message\":\"Payment fa";
+
+        LogDocument doc = json.parse(line);
+
+        assertEquals("TX651750504", doc.getTransactionId());
+        assertEquals("ERROR", doc.getLogLevel());
+        assertEquals(line, doc.getLogLine());
+    }
+}
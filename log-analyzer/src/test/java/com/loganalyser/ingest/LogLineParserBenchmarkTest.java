@@ -0,0 +1,90 @@
+package com.loganalyser.ingest;
+
+import com.loganalyser.document.LogDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Side-by-side timing of the text, grok and JSON parsers on the same records, each rendered in the
+ * parser's own format. Not a rigorous benchmark (no forking, fixed warm-up), but enough to compare
+ * the parsers and catch a regression of one of them:
+ * {@code mvn test -Dtest=LogLineParserBenchmarkTest -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LogLineParserBenchmarkTest {
+
+    private static final int RECORDS = 10_000;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private static final String BRACKETED = "%{TIMESTAMP:timestamp} [%{WORD:level}] [%{DATA:service}]%{DATA}"
+            + "TX_ID: %{ID:transactionId}%{DATA}UUID: %{UUID:uuid}%{DATA}CLIENT_TXN_ID: %{ID:clientTxnId}"
+            + "%{DATA}USER_ID: %{ID:userId}%{GREEDYDATA}";
+
+    private static final String[] LEVELS = {"INFO", "DEBUG", "WARN", "ERROR"};
+    private static final String[] SERVICES = {"payment-service", "order-service", "gateway", "ledger"};
+
+    @Test
+    void compareParsers() {
+        List<String> textLines = new ArrayList<>(RECORDS);
+        List<String> jsonLines = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            String timestamp = String.format("2025-12-08 10:%02d:%02d.%03d", i / 3600 % 60, i / 60 % 60, i % 1000);
+            String level = LEVELS[i % LEVELS.length];
+            String service = SERVICES[i % SERVICES.length];
+            String txId = "TX" + (651750504 + i);
+            String uuid = String.format("3f2b8c1e-9a4d-4e6f-8b2a-%012x", i);
+            textLines.add(timestamp + " [" + level + "] [" + service + "] Processing step " + i + " TX_ID: " + txId
+                    + " UUID: " + uuid + " CLIENT_TXN_ID: CLIENT_TXN_" + i + " USER_ID: USER_" + (i % 97)
+                    + " latency_ms=" + (i % 500));
+            jsonLines.add("{\"@timestamp\":\"" + timestamp.replace(' ', 'T') + "Z\",\"level\":\"" + level
+                    + "\",\"service\":\"" + service + "\",\"tx_id\":\"" + txId + "\",\"uuid\":\"" + uuid
+                    + "\",\"client_txn_id\":\"CLIENT_TXN_" + i + "\",\"user_id\":\"USER_" + (i % 97)
+                    + "\",\"message\":\"Processing step " + i + "\",\"context\":{\"latency_ms\":" + (i % 500) + "}}");
+        }
+
+        Map<String, LogLineParser> parsers = Map.of(
+                "text", new TextLogLineParser(),
+                "grok", GrokPatternCompiler.compile("bracketed", BRACKETED),
+                "json", new JsonLogLineParser());
+        for (String name : List.of("text", "grok", "json")) {
+            List<String> lines = name.equals("json") ? jsonLines : textLines;
+            LogLineParser parser = parsers.get(name);
+
+            for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+                parseAll(parser, lines);
+            }
+            long start = System.nanoTime();
+            int parsed = 0;
+            for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                parsed += parseAll(parser, lines);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(RECORDS * MEASURED_ROUNDS, parsed, name + " parser missed transaction IDs");
+            System.out.printf("%-4s parser: %,8d ns/line, %,10d lines/s%n", name,
+                    elapsed / parsed, parsed * TimeUnit.SECONDS.toNanos(1) / elapsed);
+        }
+    }
+
+    /**
+     * @return How many lines yielded a transaction ID
+     */
+    private static int parseAll(LogLineParser parser, List<String> lines) {
+        int parsed = 0;
+        for (String line : lines) {
+            LogDocument doc = parser.parse(line);
+            if (doc != null && doc.getTransactionId() != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,113 @@
+package com.loganalyser.llm;
+
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.service.OpenAiService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatCompletionApiTest {
+
+    private final ServerSocket server = new ServerSocket(0);
+
+    ChatCompletionApiTest() throws Exception {
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void interruptingTheCallerClosesTheConnection() throws Exception {
+        // A provider that reads the request and never answers
+        CountDownLatch requestReceived = new CountDownLatch(1);
+        CompletableFuture<Void> connectionClosed = CompletableFuture.runAsync(() -> {
+            try (Socket socket = server.accept(); InputStream in = socket.getInputStream()) {
+                in.read();
+                requestReceived.countDown();
+                while (in.read() != -1) {
+                    // Wait for the client to close the connection
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        ChatCompletionApi api = api(Duration.ofSeconds(60));
+        AtomicReference<Thread> caller = new AtomicReference<>();
+        CompletableFuture<Object> result = CompletableFuture.supplyAsync(() -> {
+            caller.set(Thread.currentThread());
+            return ChatCompletionApi.execute(api.createChatCompletion(request()));
+        });
+
+        assertTrue(requestReceived.await(5, TimeUnit.SECONDS));
+        caller.get().interrupt();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, e.getCause());
+        // The read timeout is a minute, so only a cancelled call closes the connection this soon
+        connectionClosed.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void mapsHttpErrorsLikeTheClientLibrary() throws Exception {
+        Future<?> responder = CompletableFuture.runAsync(() -> {
+            try (Socket socket = server.accept()) {
+                socket.getInputStream().read();
+                String body = "{\"error\":{\"message\":\"Rate limit reached\",\"type\":\"requests\"}}";
+                socket.getOutputStream().write(("HTTP/1.1 429 Too Many Requests\r\n"
+                        + "Content-Type: application/json\r\nContent-Length: " + body.length()
+                        + "\r\nConnection: close\r\n\r\n" + body).getBytes());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        ChatCompletionApi api = api(Duration.ofSeconds(5));
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> ChatCompletionApi.execute(api.createChatCompletion(request())));
+
+        assertEquals("Rate limit reached", e.getMessage());
+        responder.get(5, TimeUnit.SECONDS);
+    }
+
+    private ChatCompletionApi api(Duration timeout) {
+        // Built like OpenAIConfig's Retrofit, pointed at the local server
+        return new Retrofit.Builder()
+                .baseUrl("http://127.0.0.1:" + server.getLocalPort() + "/")
+                .client(OpenAiService.defaultClient("test-key", timeout))
+                .addConverterFactory(JacksonConverterFactory.create(OpenAiService.defaultObjectMapper()))
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .build()
+                .create(ChatCompletionApi.class);
+    }
+
+    private static ChatCompletionRequest request() {
+        return ChatCompletionRequest.builder()
+                .model("gpt-4o-mini")
+                .messages(List.of(new ChatMessage("user", "Why did the payment fail?")))
+                .build();
+    }
+}
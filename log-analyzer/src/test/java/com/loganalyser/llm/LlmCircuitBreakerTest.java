@@ -0,0 +1,65 @@
+package com.loganalyser.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmCircuitBreakerTest {
+
+    @Test
+    void countsServerErrorsRateLimitsAndTimeoutsAsProviderFailures() {
+        assertTrue(LlmCircuitBreaker.isProviderFailure(http(500)));
+        assertTrue(LlmCircuitBreaker.isProviderFailure(http(503)));
+        assertTrue(LlmCircuitBreaker.isProviderFailure(http(429)));
+        assertTrue(LlmCircuitBreaker.isProviderFailure(new RuntimeException(new SocketTimeoutException("timeout"))));
+        assertTrue(LlmCircuitBreaker.isProviderFailure(new RuntimeException(new ConnectException("refused"))));
+    }
+
+    @Test
+    void doesNotCountClientErrorsOrInterrupts() {
+        assertFalse(LlmCircuitBreaker.isProviderFailure(http(400)));
+        assertFalse(LlmCircuitBreaker.isProviderFailure(http(401)));
+        assertFalse(LlmCircuitBreaker.isProviderFailure(new RuntimeException(new InterruptedException())));
+        assertFalse(LlmCircuitBreaker.isProviderFailure(new IllegalStateException("bad response")));
+    }
+
+    @Test
+    void staysClosedWhenOnlyBadRequestsFail() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(new SimpleMeterRegistry(), true, 4, 2, 0.5, 60_000);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpException.class, () -> breaker.execute(LlmPriority.INTERACTIVE, () -> {
+                throw http(400);
+            }));
+        }
+
+        assertEquals("ok", breaker.execute(LlmPriority.INTERACTIVE, () -> "ok"));
+    }
+
+    @Test
+    void opensWhenTheProviderFails() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(new SimpleMeterRegistry(), true, 4, 2, 0.5, 60_000);
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(HttpException.class, () -> breaker.execute(LlmPriority.INTERACTIVE, () -> {
+                throw http(502);
+            }));
+        }
+
+        assertThrows(LlmRejectedException.class, () -> breaker.execute(LlmPriority.INTERACTIVE, () -> "ok"));
+    }
+
+    private static HttpException http(int status) {
+        return new HttpException(Response.error(status, ResponseBody.create("{}", null)));
+    }
+}
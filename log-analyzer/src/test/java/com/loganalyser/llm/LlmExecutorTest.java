@@ -0,0 +1,202 @@
+package com.loganalyser.llm;
+
+import com.loganalyser.enums.PromptCategory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void admitsWaitersByLaneThenArrival() throws Exception {
+        LlmExecutor executor = executor(1, 10, 10_000);
+        CompletableFuture<Void> blocker = occupy(executor);
+        List<String> admitted = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> background = call(executor, LlmPriority.BACKGROUND, () -> admitted.add("background"));
+        awaitQueued(1);
+        CompletableFuture<Void> standard1 = call(executor, LlmPriority.STANDARD, () -> admitted.add("standard 1"));
+        awaitQueued(2);
+        CompletableFuture<Void> standard2 = call(executor, LlmPriority.STANDARD, () -> admitted.add("standard 2"));
+        awaitQueued(3);
+        CompletableFuture<Void> interactive = call(executor, LlmPriority.INTERACTIVE, () -> admitted.add("interactive"));
+        awaitQueued(4);
+
+        release.countDown();
+        CompletableFuture.allOf(blocker, background, standard1, standard2, interactive).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("interactive", "standard 1", "standard 2", "background"), admitted);
+    }
+
+    @Test
+    void rejectsWith429WhenTheQueueIsFull() throws Exception {
+        LlmExecutor executor = executor(1, 1, 10_000);
+        ReflectionTestUtils.setField(executor, "averageLatencyNanos", (double) TimeUnit.SECONDS.toNanos(3));
+        occupy(executor);
+        call(executor, LlmPriority.BACKGROUND, () -> true);
+        awaitQueued(1);
+
+        LlmRejectedException rejected = assertThrows(LlmRejectedException.class,
+                () -> executor.execute(LlmPriority.INTERACTIVE, () -> "ok"));
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals(3, rejected.getRetryAfterSeconds());
+        assertTrue(rejected.getMessage().contains("queue is full"), rejected.getMessage());
+    }
+
+    @Test
+    void rejectsWith503AtOnceWhenTheEstimatedWaitExceedsTheLanesMaximum() throws Exception {
+        LlmExecutor executor = executor(1, 10, 1_000);
+        ReflectionTestUtils.setField(executor, "averageLatencyNanos", (double) TimeUnit.SECONDS.toNanos(3));
+        occupy(executor);
+
+        long start = System.nanoTime();
+        LlmRejectedException rejected = assertThrows(LlmRejectedException.class,
+                () -> executor.execute(LlmPriority.INTERACTIVE, () -> "ok"));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(503, rejected.getStatus());
+        assertEquals(3, rejected.getRetryAfterSeconds());
+        assertTrue(rejected.getMessage().contains("estimated wait 3s"), rejected.getMessage());
+        assertEquals(0, queued());
+    }
+
+    @Test
+    void rejectsWith503WhenAQueuedCallIsNotAdmittedInTime() throws Exception {
+        LlmExecutor executor = executor(1, 10, 100);
+        occupy(executor);
+
+        LlmRejectedException rejected = assertThrows(LlmRejectedException.class,
+                () -> executor.execute(LlmPriority.STANDARD, () -> "ok"));
+
+        assertEquals(503, rejected.getStatus());
+        assertEquals(1, rejected.getRetryAfterSeconds());
+        assertTrue(rejected.getMessage().contains("not admitted within 100 ms"), rejected.getMessage());
+        assertEquals(0, queued());
+    }
+
+    @Test
+    void leavesTheQueueWhenInterrupted() throws Exception {
+        LlmExecutor executor = executor(1, 10, 10_000);
+        CompletableFuture<Void> blocker = occupy(executor);
+        CountDownLatch stillInterrupted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                executor.execute(LlmPriority.STANDARD, () -> "ok");
+            } catch (LlmRejectedException e) {
+                if (e.getStatus() == 503 && Thread.currentThread().isInterrupted()) {
+                    stillInterrupted.countDown();
+                }
+            }
+        });
+        waiter.start();
+        awaitQueued(1);
+
+        waiter.interrupt();
+
+        assertTrue(stillInterrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, queued());
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        assertEquals("ok", executor.execute(LlmPriority.BACKGROUND, () -> "ok"));
+        assertEquals(0, meterRegistry.get("llm.in.flight").gauge().value());
+    }
+
+    @Test
+    void releasesTheSlotWhenTheCallFails() {
+        LlmExecutor executor = executor(1, 10, 100);
+
+        assertThrows(IllegalStateException.class, () -> executor.execute(LlmPriority.STANDARD, () -> {
+            throw new IllegalStateException("provider returned 500");
+        }));
+
+        assertEquals("ok", executor.execute(LlmPriority.STANDARD, () -> "ok"));
+    }
+
+    @Test
+    void picksTheLaneFromTheCategoryUnlessOverridden() throws Exception {
+        LlmExecutor executor = executor(1, 10, 10_000);
+
+        assertEquals(LlmPriority.INTERACTIVE, executor.laneFor(PromptCategory.DEVELOPER_RCA));
+        assertEquals(LlmPriority.STANDARD, executor.laneFor(PromptCategory.GENERAL));
+        assertEquals(LlmPriority.STANDARD, executor.laneFor(null));
+
+        Supplier<LlmPriority> propagated = executor.withLane(LlmPriority.BACKGROUND, () -> {
+            assertEquals(LlmPriority.BACKGROUND, executor.laneFor(PromptCategory.DEVELOPER_RCA));
+            assertEquals(LlmPriority.INTERACTIVE, executor.withLane(LlmPriority.INTERACTIVE,
+                    () -> executor.laneFor(PromptCategory.GENERAL)));
+            assertEquals(LlmPriority.BACKGROUND, executor.laneFor(PromptCategory.GENERAL));
+            return executor.propagateLane(() -> executor.laneFor(PromptCategory.DEVELOPER_RCA));
+        });
+
+        assertEquals(LlmPriority.INTERACTIVE, executor.laneFor(PromptCategory.DEVELOPER_RCA));
+        assertEquals(LlmPriority.BACKGROUND, CompletableFuture.supplyAsync(propagated, callers).get(5, TimeUnit.SECONDS));
+        Supplier<String> unchanged = () -> "ok";
+        assertSame(unchanged, executor.propagateLane(unchanged));
+    }
+
+    private LlmExecutor executor(int maxInFlight, int queueCapacity, long maxWaitMs) {
+        return new LlmExecutor(meterRegistry, maxInFlight, queueCapacity, maxWaitMs, maxWaitMs, maxWaitMs,
+                Set.of(PromptCategory.DEVELOPER_RCA));
+    }
+
+    /**
+     * Starts a call that holds its slot until {@link #release} is counted down.
+     */
+    private CompletableFuture<Void> occupy(LlmExecutor executor) throws InterruptedException {
+        CountDownLatch admitted = new CountDownLatch(1);
+        CompletableFuture<Void> call = call(executor, LlmPriority.INTERACTIVE, () -> {
+            admitted.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        return call;
+    }
+
+    private CompletableFuture<Void> call(LlmExecutor executor, LlmPriority lane, Supplier<?> work) {
+        return CompletableFuture.runAsync(() -> executor.execute(lane, work), callers);
+    }
+
+    private void awaitQueued(int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued() < size) {
+            assertTrue(System.nanoTime() < deadline, "calls were not queued");
+            Thread.sleep(5);
+        }
+    }
+
+    private double queued() {
+        return meterRegistry.get("llm.queue.size").gauge().value();
+    }
+}
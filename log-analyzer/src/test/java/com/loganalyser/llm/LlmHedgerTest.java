@@ -0,0 +1,236 @@
+package com.loganalyser.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmHedgerTest {
+
+    private static final long MIN_DELAY_MS = 50;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ThreadPoolTaskExecutor hedgeExecutor = new ThreadPoolTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    LlmHedgerTest() {
+        hedgeExecutor.setCorePoolSize(8);
+        hedgeExecutor.setQueueCapacity(0);
+        hedgeExecutor.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        hedgeExecutor.shutdown();
+    }
+
+    @Test
+    void runsUnhedgedOnTheCallersThreadUntilThereAreEnoughSamples() {
+        LlmHedger hedger = hedger(3, 4);
+        Thread caller = Thread.currentThread();
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(caller, hedger.execute(Thread::currentThread));
+        }
+
+        // The next call runs on the hedge executor
+        assertNotSame(caller, hedger.execute(Thread::currentThread));
+    }
+
+    @Test
+    void hedgesASlowCallAndInterruptsTheLoser() throws Exception {
+        LlmHedger hedger = warmedUp(4);
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        long start = System.nanoTime();
+        String result = hedger.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                awaitInterrupt(primaryInterrupted);
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(MIN_DELAY_MS));
+        assertTrue(primaryInterrupted.await(5, TimeUnit.SECONDS));
+        awaitWins("hedge", 1);
+        assertEquals(0.0, wins("primary"));
+    }
+
+    @Test
+    void succeedsIfOneAttemptFails() throws Exception {
+        LlmHedger hedger = warmedUp(4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = hedger.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(4 * MIN_DELAY_MS);
+                return "primary";
+            }
+            throw new IllegalStateException("hedge failed");
+        });
+
+        assertEquals("primary", result);
+        assertEquals(2, attempts.get());
+        awaitWins("primary", 1);
+    }
+
+    @Test
+    void failsOnlyIfAllAttemptsFail() {
+        LlmHedger hedger = warmedUp(4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> hedger.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(4 * MIN_DELAY_MS);
+                throw new IllegalStateException("primary failed");
+            }
+            throw new IllegalStateException("hedge failed");
+        }));
+
+        // The last attempt to fail decides the error
+        assertEquals("primary failed", e.getMessage());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void limitsConcurrentHedgesAndReleasesThePermit() throws Exception {
+        LlmHedger hedger = warmedUp(1);
+
+        // Both attempts of the first call hang, holding the only hedge permit
+        AtomicInteger blockedAttempts = new AtomicInteger();
+        CompletableFuture<String> blocked = CompletableFuture.supplyAsync(() -> hedger.execute(() -> {
+            blockedAttempts.incrementAndGet();
+            awaitRelease();
+            return "blocked";
+        }));
+        awaitCount(blockedAttempts, 2);
+
+        AtomicInteger unhedgedAttempts = new AtomicInteger();
+        String unhedged = hedger.execute(() -> {
+            unhedgedAttempts.incrementAndGet();
+            sleep(4 * MIN_DELAY_MS);
+            return "primary";
+        });
+        assertEquals("primary", unhedged);
+        assertEquals(1, unhedgedAttempts.get());
+
+        release.countDown();
+        assertEquals("blocked", blocked.get(5, TimeUnit.SECONDS));
+
+        // The permit is back once the hedge finished
+        AtomicInteger attempts = new AtomicInteger();
+        String hedged = hedger.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                awaitInterrupt(new CountDownLatch(1));
+                return "primary";
+            }
+            return "hedge";
+        });
+        assertEquals("hedge", hedged);
+    }
+
+    @Test
+    void cancelsTheAttemptsWhenTheCallerIsInterrupted() throws Exception {
+        LlmHedger hedger = warmedUp(4);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch attemptInterrupted = new CountDownLatch(1);
+        AtomicReference<Thread> caller = new AtomicReference<>();
+
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> {
+            caller.set(Thread.currentThread());
+            return hedger.execute(() -> {
+                started.countDown();
+                awaitInterrupt(attemptInterrupted);
+                return "late";
+            });
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        caller.get().interrupt();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, e.getCause());
+        assertTrue(attemptInterrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    private LlmHedger hedger(int minSamples, int maxConcurrentHedges) {
+        return new LlmHedger(meterRegistry, hedgeExecutor, true, 0.95, 10, minSamples, MIN_DELAY_MS,
+                maxConcurrentHedges);
+    }
+
+    /**
+     * @return A hedger that hedges after {@link #MIN_DELAY_MS}, its only latency sample being faster
+     */
+    private LlmHedger warmedUp(int maxConcurrentHedges) {
+        LlmHedger hedger = hedger(1, maxConcurrentHedges);
+        hedger.execute(() -> "warm-up");
+        return hedger;
+    }
+
+    private double wins(String winner) {
+        return meterRegistry.get("llm.hedges").tag("winner", winner).counter().count();
+    }
+
+    /**
+     * The winner is counted after the result is handed over, so the caller may return first.
+     */
+    private void awaitWins(String winner, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (wins(winner) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, wins(winner));
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitInterrupt(CountDownLatch interrupted) {
+        try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitCount(AtomicInteger count, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, count.get());
+    }
+}
@@ -0,0 +1,212 @@
+package com.loganalyser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loganalyser.dto.AnalysisResult;
+import com.loganalyser.entity.AnalysisJobEntity;
+import com.loganalyser.enums.PromptCategory;
+import com.loganalyser.llm.LlmExecutor;
+import com.loganalyser.repository.AnalysisJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.task.TaskExecutor;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnalysisJobServiceTest {
+
+    private static final String PUBLIC_HOST = "93.184.215.14";
+
+    private final AnalysisJobRepository jobRepository = mock(AnalysisJobRepository.class);
+    private final LogAnalysisService logAnalysisService = mock(LogAnalysisService.class);
+    private final LlmExecutor llmExecutor = mock(LlmExecutor.class);
+    private final Map<String, AnalysisJobEntity> jobs = new ConcurrentHashMap<>();
+    private final ServerSocket callbackTarget = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    private AnalysisJobService service;
+
+    AnalysisJobServiceTest() throws Exception {
+        when(jobRepository.save(any())).thenAnswer(invocation -> {
+            AnalysisJobEntity job = invocation.getArgument(0);
+            jobs.put(job.getId(), job);
+            return job;
+        });
+        when(jobRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.getArgument(0))));
+        when(llmExecutor.withLane(any(), any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
+        when(logAnalysisService.analyze(anyString(), anyString(), any(), any()))
+                .thenReturn(new AnalysisResult("Card declined", "chat-1"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        callbackTarget.close();
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsCallbacksWhenNoHostIsAllowed() {
+        service = service(Set.of(), false, task -> { });
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> submit("http://" + PUBLIC_HOST + "/callback"));
+
+        assertEquals("Callbacks are disabled, no callback hosts are allowed", e.getMessage());
+        verify(jobRepository, never()).save(any());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"ftp://" + PUBLIC_HOST + "/callback", "file:///etc/passwd", "//" + PUBLIC_HOST + "/callback"})
+    void rejectsSchemesOtherThanHttp(String callbackUrl) {
+        service = service(Set.of(PUBLIC_HOST), false, task -> { });
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> submit(callbackUrl));
+
+        assertTrue(e.getMessage().startsWith("Callback URL must use http or https"), e.getMessage());
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void rejectsHostsNotOnTheAllowlist() {
+        service = service(Set.of(PUBLIC_HOST), false, task -> { });
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> submit("https://93.184.215.15/callback"));
+
+        assertEquals("Callback host not allowed: 93.184.215.15", e.getMessage());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"127.0.0.1", "10.1.2.3", "172.16.0.1", "192.168.1.1", "169.254.169.254", "0.0.0.0",
+            "224.0.0.1", "[::1]", "[fd00::1]", "[fe80::1]"})
+    void rejectsHostsResolvingToInternalAddresses(String host) {
+        service = service(Set.of(host), false, task -> { });
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> submit("http://" + host + "/callback"));
+
+        assertTrue(e.getMessage().contains("resolves to internal address"), e.getMessage());
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void acceptsInternalAddressesWhenAllowed() {
+        service = service(Set.of("127.0.0.1"), true, task -> { });
+
+        AnalysisJobEntity job = submit("http://127.0.0.1/callback");
+
+        assertEquals("http://127.0.0.1/callback", job.getCallbackUrl());
+    }
+
+    @Test
+    void acceptsAnAllowedPublicHost() {
+        service = service(Set.of(PUBLIC_HOST), false, task -> { });
+
+        AnalysisJobEntity job = submit("https://" + PUBLIC_HOST + ":8443/rca/callback?source=jobs");
+
+        assertEquals("https://" + PUBLIC_HOST + ":8443/rca/callback?source=jobs", job.getCallbackUrl());
+    }
+
+    @Test
+    void deliversTheFinishedJob() throws Exception {
+        service = service(Set.of("localhost"), true, Runnable::run);
+        CompletableFuture<String> received = CompletableFuture.supplyAsync(this::answerOneRequest);
+
+        AnalysisJobEntity job = submit("http://localhost:" + callbackTarget.getLocalPort() + "/callback");
+
+        String request = received.get(5, TimeUnit.SECONDS);
+        assertTrue(request.startsWith("POST /callback HTTP/1.1"), request);
+        assertTrue(request.contains("Host: localhost:" + callbackTarget.getLocalPort()), request);
+        assertTrue(request.contains("\"jobId\":\"" + job.getId() + "\""), request);
+        assertTrue(request.contains("\"result\":\"Card declined\""), request);
+        assertEquals("DELIVERED", awaitCallbackStatus(job));
+    }
+
+    @Test
+    void checksTheAddressItConnectsTo() throws Exception {
+        List<Runnable> queued = new CopyOnWriteArrayList<>();
+        service = service(Set.of(PUBLIC_HOST), false, queued::add);
+        AnalysisJobEntity job = submit("http://" + PUBLIC_HOST + "/callback");
+        // Stands in for a host that passed the check on submit and resolves to loopback by the time the
+        // callback is sent; only the lookup made for the connection can catch it
+        job.setCallbackUrl("http://localhost:" + callbackTarget.getLocalPort() + "/callback");
+        callbackTarget.setSoTimeout(500);
+
+        queued.forEach(Runnable::run);
+
+        String status = awaitCallbackStatus(job);
+        assertTrue(status.startsWith("FAILED: Callback host localhost resolves to internal address"), status);
+        assertThrows(SocketTimeoutException.class, callbackTarget::accept);
+    }
+
+    private AnalysisJobService service(Set<String> allowedHosts, boolean allowPrivate, TaskExecutor jobExecutor) {
+        return new AnalysisJobService(jobRepository, logAnalysisService, llmExecutor, jobExecutor, new ObjectMapper(),
+                2000, allowedHosts, allowPrivate, 1);
+    }
+
+    private AnalysisJobEntity submit(String callbackUrl) {
+        return service.submit("TX651750504", "Why did the payment fail?", List.of(PromptCategory.GENERAL), null,
+                callbackUrl);
+    }
+
+    private String answerOneRequest() {
+        try (Socket socket = callbackTarget.accept()) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            StringBuilder request = new StringBuilder();
+            int contentLength = 0;
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                request.append(line).append('\n');
+                if (line.toLowerCase().startsWith("content-length:")) {
+                    contentLength = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            char[] body = new char[contentLength];
+            int read = 0;
+            while (read < contentLength) {
+                read += in.read(body, read, contentLength - read);
+            }
+            request.append('\n').append(body);
+            socket.getOutputStream().write("HTTP/1.1 204 No Content\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+            return request.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String awaitCallbackStatus(AnalysisJobEntity job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.getCallbackStatus() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(job.getCallbackStatus() == null, "No callback status recorded");
+        return job.getCallbackStatus();
+    }
+}
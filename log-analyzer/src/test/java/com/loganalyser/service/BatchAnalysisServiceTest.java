@@ -0,0 +1,131 @@
+package com.loganalyser.service;
+
+import com.loganalyser.dto.BatchAnalysisResult;
+import com.loganalyser.entity.Transaction;
+import com.loganalyser.enums.PromptCategory;
+import com.loganalyser.llm.LlmExecutor;
+import com.loganalyser.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchAnalysisServiceTest {
+
+    private static final int CONCURRENCY = 2;
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final ElasticsearchService elasticsearchService = mock(ElasticsearchService.class);
+    private final LogAnalysisService logAnalysisService = mock(LogAnalysisService.class);
+    private final ThreadPoolTaskExecutor batchExecutor = new ThreadPoolTaskExecutor();
+    private BatchAnalysisService service;
+
+    @BeforeEach
+    void setUp() {
+        LlmExecutor llmExecutor = mock(LlmExecutor.class);
+        when(llmExecutor.withLane(any(), any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
+        when(llmExecutor.propagateLane(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        batchExecutor.setCorePoolSize(CONCURRENCY);
+        batchExecutor.setMaxPoolSize(CONCURRENCY);
+        batchExecutor.initialize();
+
+        service = new BatchAnalysisService(transactionRepository, elasticsearchService, logAnalysisService,
+                llmExecutor, batchExecutor);
+        ReflectionTestUtils.setField(service, "concurrency", CONCURRENCY);
+        ReflectionTestUtils.setField(service, "maxTransactions", 500);
+        ReflectionTestUtils.setField(service, "maxLogsPerTransaction", 5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchExecutor.shutdown();
+    }
+
+    @Test
+    void reportsEveryTransaction() {
+        List<String> ids = givenTransactions(5);
+        when(logAnalysisService.analyzeFetchedLogs(anyString(), anyString(), any(), any())).thenReturn("Declined");
+        List<BatchAnalysisResult> results = new CopyOnWriteArrayList<>();
+
+        List<String> requested = new ArrayList<>(ids);
+        requested.add("TX000000099");
+        service.analyzeBatch(requested, "Why?", PromptCategory.GENERAL, results::add);
+
+        assertEquals(6, results.size());
+        assertEquals(5, results.stream().filter(BatchAnalysisResult::success).count());
+    }
+
+    @Test
+    void cancelsTheRunningAnalysesAndStopsSubmittingWhenInterrupted() throws Exception {
+        List<String> ids = givenTransactions(10);
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(CONCURRENCY);
+        CountDownLatch interrupted = new CountDownLatch(CONCURRENCY);
+        when(logAnalysisService.analyzeFetchedLogs(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            started.incrementAndGet();
+            running.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return "too late";
+        });
+
+        AtomicReference<Thread> caller = new AtomicReference<>();
+        CompletableFuture<Void> batch = CompletableFuture.runAsync(() -> {
+            caller.set(Thread.currentThread());
+            service.analyzeBatch(ids, "Why?", PromptCategory.GENERAL, result -> { });
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        caller.get().interrupt();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> batch.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(CONCURRENCY, started.get());
+    }
+
+    private List<String> givenTransactions(int count) {
+        List<String> ids = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        Map<String, List<String>> logs = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String id = String.format("TX%09d", i);
+            ids.add(id);
+            transactions.add(new Transaction(id, null, null));
+            logs.put(id, List.of("2025-12-08 10:15:30.123 [ERROR] [payment-service] Payment failed TX_ID: " + id));
+        }
+        when(transactionRepository.findByTransactionIdIn(any())).thenReturn(transactions);
+        when(elasticsearchService.getLogsByTransactionIds(anyMap(), anyInt())).thenReturn(logs);
+        return ids;
+    }
+}
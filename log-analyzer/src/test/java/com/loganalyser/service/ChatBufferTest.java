@@ -0,0 +1,91 @@
+package com.loganalyser.service;
+
+import com.theokanning.openai.completion.chat.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatBufferTest {
+
+    private static final String SUMMARY_PREFIX = "Summary: ";
+
+    @Test
+    void returnsTheMostRecentMessagesOldestFirst() {
+        ChatBuffer buffer = new ChatBuffer(10, 10);
+        for (long id = 1; id <= 5; id++) {
+            buffer.add(message(id, null));
+        }
+
+        assertEquals(List.of("3", "4", "5"), contents(buffer.history(3, SUMMARY_PREFIX)));
+    }
+
+    @Test
+    void sendsOnlyTheMessagesWithinTheContentLimit() {
+        ChatBuffer buffer = new ChatBuffer(10, 2);
+        for (long id = 1; id <= 5; id++) {
+            buffer.add(message(id, null));
+        }
+
+        assertEquals(List.of("4", "5"), contents(buffer.history(10, SUMMARY_PREFIX)));
+    }
+
+    @Test
+    void dropsTheOldestMessagesWhenFull() {
+        ChatBuffer buffer = new ChatBuffer(3, 3);
+        for (long id = 1; id <= 5; id++) {
+            buffer.add(message(id, "TX" + id));
+        }
+
+        assertEquals(List.of("3", "4", "5"), contents(buffer.history(10, SUMMARY_PREFIX)));
+        assertEquals(Optional.of("TX3"), buffer.oldestTransactionId());
+    }
+
+    @Test
+    void ordersMessagesAddedOutOfOrderAndIgnoresDuplicates() {
+        ChatBuffer buffer = new ChatBuffer(10, 10);
+        buffer.add(message(1, null));
+        buffer.add(message(3, null));
+        buffer.add(message(2, null));
+        buffer.add(message(3, null));
+
+        assertEquals(List.of("1", "2", "3"), contents(buffer.history(10, SUMMARY_PREFIX)));
+    }
+
+    @Test
+    void leadsWithTheSummaryAndSkipsTheMessagesItCovers() {
+        ChatBuffer buffer = new ChatBuffer(10, 10);
+        for (long id = 1; id <= 4; id++) {
+            buffer.add(message(id, null));
+        }
+
+        buffer.setSummary("first two turns", 2);
+        buffer.setSummary("first turn", 1);
+
+        List<ChatMessage> history = buffer.history(10, SUMMARY_PREFIX);
+        assertEquals("system", history.get(0).getRole());
+        assertEquals(List.of("Summary: first two turns", "3", "4"), contents(history));
+    }
+
+    @Test
+    void findsTheOldestTransactionId() {
+        ChatBuffer buffer = new ChatBuffer(10, 10);
+        buffer.add(message(1, null));
+        buffer.add(message(2, " "));
+        buffer.add(message(3, "TX651750504"));
+        buffer.add(message(4, "TX651750505"));
+
+        assertEquals(Optional.of("TX651750504"), buffer.oldestTransactionId());
+        assertEquals(Optional.empty(), new ChatBuffer(10, 10).oldestTransactionId());
+    }
+
+    private static ChatBuffer.Message message(long id, String transactionId) {
+        return new ChatBuffer.Message(id, id % 2 == 1 ? "user" : "assistant", String.valueOf(id), transactionId);
+    }
+
+    private static List<String> contents(List<ChatMessage> history) {
+        return history.stream().map(ChatMessage::getContent).toList();
+    }
+}
@@ -0,0 +1,117 @@
+package com.loganalyser.service;
+
+import com.loganalyser.enums.PromptCategory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FailureSignatureEngineTest {
+
+    private static final String RCA_QUESTION = "Why did this transaction fail?";
+    private static final String DB_TIMEOUT = "[Line 7] 2025-12-08 10:15:30.123 [ERROR] [payment-service] "
+            + "java.sql.SQLTimeoutException: query timed out";
+
+    private final FailureSignatureEngine engine = engine(new MockEnvironment()
+            .withProperty("analysis.signatures.rules.db-timeout.pattern", "SQLTimeoutException")
+            .withProperty("analysis.signatures.rules.db-timeout.title", "Database timeout")
+            .withProperty("analysis.signatures.rules.db-timeout.root-cause", "The query exceeded its timeout")
+            .withProperty("analysis.signatures.rules.db-timeout.confidence", "0.9")
+            .withProperty("analysis.signatures.rules.gateway-5xx.pattern", "gateway returned 5\\d\\d")
+            .withProperty("analysis.signatures.rules.gateway-5xx.title", "Gateway error")
+            .withProperty("analysis.signatures.rules.gateway-5xx.confidence", "0.9")
+            .withProperty("analysis.signatures.rules.slow.pattern", "slow")
+            .withProperty("analysis.signatures.rules.slow.title", "Slow call"));
+
+    @Test
+    void answersRootCauseQuestionsFromADecisiveSignatureOnAnErrorLine() {
+        FailureSignatureEngine.SignatureMatches matches = engine.match(List.of(DB_TIMEOUT));
+
+        Optional<String> answer = engine.instantAnswer("TX1", RCA_QUESTION, PromptCategory.DEVELOPER_RCA, false, matches);
+
+        assertTrue(answer.isPresent());
+        assertTrue(answer.get().startsWith("## Database timeout"), answer.get());
+        assertTrue(answer.get().contains("The query exceeded its timeout"));
+    }
+
+    @Test
+    void leavesOtherQuestionsToTheLlm() {
+        FailureSignatureEngine.SignatureMatches matches = engine.match(List.of(DB_TIMEOUT));
+
+        assertEquals(Optional.empty(), engine.instantAnswer("TX1", "How long did the payment step take?",
+                PromptCategory.DEVELOPER_RCA, false, matches));
+        assertEquals(Optional.empty(), engine.instantAnswer("TX1", "Which services were involved?",
+                PromptCategory.DEVELOPER_RCA, false, matches));
+    }
+
+    @Test
+    void answersOnlyTheConfiguredCategoriesAndFirstQuestions() {
+        FailureSignatureEngine.SignatureMatches matches = engine.match(List.of(DB_TIMEOUT));
+
+        assertEquals(Optional.empty(), engine.instantAnswer("TX1", RCA_QUESTION, PromptCategory.GENERAL, false, matches));
+        assertEquals(Optional.empty(), engine.instantAnswer("TX1", RCA_QUESTION, PromptCategory.DEVELOPER_RCA, true, matches));
+    }
+
+    @Test
+    void requiresAnErrorLineOrRepeatedHits() {
+        String warning = "2025-12-08 10:15:30.123 [WARN] [payment-service] SQLTimeoutException, retrying";
+
+        FailureSignatureEngine.SignatureMatches once = engine.match(List.of(warning));
+        assertEquals(Optional.empty(), engine.instantAnswer("TX1", RCA_QUESTION, PromptCategory.DEVELOPER_RCA, false, once));
+
+        FailureSignatureEngine.SignatureMatches twice = engine.match(List.of(warning, warning));
+        assertTrue(engine.instantAnswer("TX1", RCA_QUESTION, PromptCategory.DEVELOPER_RCA, false, twice).isPresent());
+    }
+
+    @Test
+    void countsEveryLineACollapsedTemplateStandsFor() {
+        String template = "[3x, lines 4-9] 2025-12-08 10:15:30.123 [WARN] [payment-service] SQLTimeoutException on attempt <*>";
+
+        FailureSignatureEngine.SignatureMatches matches = engine.match(List.of(template));
+
+        assertEquals(3, matches.matches().get(0).hits());
+        assertEquals(0, matches.matches().get(0).errorHits());
+        assertTrue(engine.instantAnswer("TX1", RCA_QUESTION, PromptCategory.DEVELOPER_RCA, false, matches).isPresent());
+    }
+
+    @Test
+    void leavesAmbiguousMatchesToTheLlmAsHints() {
+        FailureSignatureEngine.SignatureMatches matches = engine.match(List.of(DB_TIMEOUT,
+                "2025-12-08 10:15:31.000 [ERROR] [payment-service] gateway returned 502"));
+
+        assertEquals(Optional.empty(), engine.instantAnswer("TX1", RCA_QUESTION, PromptCategory.DEVELOPER_RCA, false, matches));
+        String hints = engine.hints(matches);
+        assertTrue(hints.contains("Database timeout"), hints);
+        assertTrue(hints.contains("Gateway error"), hints);
+    }
+
+    @Test
+    void ignoresSignaturesBelowTheMinimumConfidence() {
+        FailureSignatureEngine.SignatureMatches matches = engine.match(List.of(
+                "2025-12-08 10:15:30.123 [ERROR] [payment-service] slow response from issuer"));
+
+        assertEquals(1, matches.matches().size());
+        assertEquals(Optional.empty(), engine.instantAnswer("TX1", RCA_QUESTION, PromptCategory.DEVELOPER_RCA, false, matches));
+        assertTrue(engine.fallbackAnswer("TX1", matches).isPresent());
+    }
+
+    @Test
+    void countsALineOncePerRule() {
+        FailureSignatureEngine.SignatureMatches matches = engine.match(List.of(
+                DB_TIMEOUT + " caused by SQLTimeoutException"));
+
+        assertEquals(1, matches.matches().get(0).hits());
+    }
+
+    private static FailureSignatureEngine engine(MockEnvironment environment) {
+        return new FailureSignatureEngine(environment, new SimpleMeterRegistry(), true, 0.8,
+                Set.of(PromptCategory.DEVELOPER_RCA),
+                List.of("why", "root cause", "rca", "cause", "caused", "reason", "what happened", "went wrong"), 2);
+    }
+}
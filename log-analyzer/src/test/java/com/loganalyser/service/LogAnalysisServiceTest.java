@@ -0,0 +1,177 @@
+package com.loganalyser.service;
+
+import com.loganalyser.config.OpenAIConfig;
+import com.loganalyser.dto.AnalysisResult;
+import com.loganalyser.entity.Transaction;
+import com.loganalyser.enums.PromptCategory;
+import com.loganalyser.llm.LlmExecutor;
+import com.loganalyser.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LogAnalysisServiceTest {
+
+    private static final String QUERY = "Why did it fail?";
+    private static final int ERROR_INDEX = 30;
+
+    private final OpenAIService openAIService = mock(OpenAIService.class);
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final ElasticsearchService elasticsearchService = mock(ElasticsearchService.class);
+    private final ThreadPoolTaskExecutor analysisExecutor = new ThreadPoolTaskExecutor();
+    private TokenCounter tokenCounter;
+    private LogAnalysisService service;
+
+    @BeforeEach
+    void setUp() {
+        OpenAIConfig openAIConfig = mock(OpenAIConfig.class);
+        when(openAIConfig.getModel()).thenReturn("gpt-4");
+        tokenCounter = new TokenCounter(openAIConfig, 0);
+        LlmExecutor llmExecutor = mock(LlmExecutor.class);
+        when(llmExecutor.propagateLane(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        analysisExecutor.setCorePoolSize(4);
+        analysisExecutor.initialize();
+
+        service = new LogAnalysisService(transactionRepository, elasticsearchService,
+                openAIService, mock(HtmlFormatterService.class), mock(ChatHistoryService.class),
+                mock(AnalysisResponseCache.class), tokenCounter, new LogTemplateMiner(false, 0.5, 2, 100),
+                new LogRelevanceScorer(new MockEnvironment(), "error:5,failed:4"), mock(LogChunkSummarizer.class),
+                mock(FailureSignatureEngine.class), llmExecutor, analysisExecutor);
+        ReflectionTestUtils.setField(service, "mapReduceEnabled", false);
+        ReflectionTestUtils.setField(service, "coalesceWaitTimeoutMs", 10_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        analysisExecutor.shutdown();
+    }
+
+    @Test
+    void sendsAllSelectedLinesThatFit() {
+        List<String> logs = logs("ERROR Payment failed");
+
+        List<String> evidence = analyze(logs, 100_000);
+
+        // The first and last 15 lines and the error with its context
+        assertEquals(15 + 9 + 15, evidence.size());
+    }
+
+    @Test
+    void keepsTheHighestScoringLinesInTheirOriginalOrder() {
+        List<String> logs = logs("ERROR Payment failed");
+        int budget = tokens(logs.get(ERROR_INDEX)) + tokens(logs.get(25)) + tokens(logs.get(26));
+
+        List<String> evidence = analyze(logs, budget);
+
+        assertEquals(List.of(logs.get(25), logs.get(26), logs.get(ERROR_INDEX)), evidence);
+    }
+
+    @Test
+    void skipsALineTooLongForTheBudgetInFavorOfShorterOnes() {
+        List<String> logs = logs("ERROR Payment failed: " + "declined by issuer ".repeat(50));
+        int budget = tokens(logs.get(25)) + tokens(logs.get(26));
+
+        List<String> evidence = analyze(logs, budget);
+
+        assertEquals(List.of(logs.get(25), logs.get(26)), evidence);
+    }
+
+    @Test
+    void showsAFailedCategoryAsAnErrorSectionNextToTheOthers() {
+        givenTransactionLogs();
+        when(openAIService.analyzeLogs(anyString(), anyList(), eq(PromptCategory.DEVELOPER_RCA), any(), any()))
+                .thenReturn("The card was declined.");
+        when(openAIService.analyzeLogs(anyString(), anyList(), eq(PromptCategory.PERFORMANCE_ANALYSIS), any(), any()))
+                .thenThrow(new IllegalStateException("provider returned 500"));
+
+        AnalysisResult result = service.analyzeQueryMultiCategory("TX651750504", QUERY,
+                List.of(PromptCategory.DEVELOPER_RCA, PromptCategory.PERFORMANCE_ANALYSIS), null);
+
+        assertTrue(result.response().contains("The card was declined."), result.response());
+        assertTrue(result.response().contains("This analysis is currently unavailable: provider returned 500"),
+                result.response());
+    }
+
+    @Test
+    void failsWhenNoCategoryCanBeAnswered() {
+        givenTransactionLogs();
+        when(openAIService.analyzeLogs(anyString(), anyList(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("provider returned 500"));
+
+        assertThrows(IllegalStateException.class, () -> service.analyzeQueryMultiCategory("TX651750504", QUERY,
+                List.of(PromptCategory.DEVELOPER_RCA, PromptCategory.PERFORMANCE_ANALYSIS), null));
+    }
+
+    @Test
+    void interruptsTheOtherCategoriesWhenTheRequestTimesOut() throws Exception {
+        givenTransactionLogs();
+        ReflectionTestUtils.setField(service, "coalesceWaitTimeoutMs", 200L);
+        CountDownLatch interrupted = new CountDownLatch(2);
+        when(openAIService.analyzeLogs(anyString(), anyList(), any(), any(), any())).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "too late";
+        });
+
+        assertThrows(IllegalStateException.class, () -> service.analyzeQueryMultiCategory("TX651750504", QUERY,
+                List.of(PromptCategory.DEVELOPER_RCA, PromptCategory.PERFORMANCE_ANALYSIS), null));
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    private void givenTransactionLogs() {
+        when(transactionRepository.findByTransactionId("TX651750504"))
+                .thenReturn(Optional.of(new Transaction("TX651750504", null, null)));
+        when(elasticsearchService.getAllLogsByTransactionId(eq("TX651750504"), anyInt()))
+                .thenReturn(logs("ERROR Payment failed"));
+        when(openAIService.logTokenBudget(any(), any())).thenReturn(100_000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> analyze(List<String> logs, int logTokenBudget) {
+        when(openAIService.logTokenBudget(any(), any())).thenReturn(logTokenBudget);
+
+        service.analyzeFetchedLogs("TX651750504", QUERY, PromptCategory.DEVELOPER_RCA, logs);
+
+        ArgumentCaptor<List<String>> evidence = ArgumentCaptor.forClass(List.class);
+        verify(openAIService).analyzeLogs(eq(QUERY), evidence.capture(), eq(PromptCategory.DEVELOPER_RCA), any(), any());
+        return evidence.getValue();
+    }
+
+    private static List<String> logs(String errorLine) {
+        List<String> logs = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            logs.add(i == ERROR_INDEX ? errorLine : "INFO Processed step " + i + " of the payment");
+        }
+        return logs;
+    }
+
+    private int tokens(String line) {
+        return tokenCounter.count(line) + 1;
+    }
+}
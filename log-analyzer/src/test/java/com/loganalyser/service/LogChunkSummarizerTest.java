@@ -0,0 +1,121 @@
+package com.loganalyser.service;
+
+import com.loganalyser.config.OpenAIConfig;
+import com.loganalyser.llm.LlmExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LogChunkSummarizerTest {
+
+    private static final int CHUNK_BUDGET = 1000;
+
+    private final OpenAIService openAIService = mock(OpenAIService.class);
+    private final ThreadPoolTaskExecutor summaryExecutor = new ThreadPoolTaskExecutor();
+    private TokenCounter tokenCounter;
+    private LogChunkSummarizer summarizer;
+
+    @BeforeEach
+    void setUp() {
+        OpenAIConfig openAIConfig = mock(OpenAIConfig.class);
+        when(openAIConfig.getModel()).thenReturn("gpt-4");
+        tokenCounter = new TokenCounter(openAIConfig, 0);
+
+        LlmExecutor llmExecutor = mock(LlmExecutor.class);
+        when(llmExecutor.propagateLane(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        summaryExecutor.setCorePoolSize(4);
+        summaryExecutor.initialize();
+
+        when(openAIService.summaryTokenBudget(anyString(), anyInt())).thenReturn(CHUNK_BUDGET);
+        // A summary as long as it may be
+        when(openAIService.summarizeLogs(anyString(), anyList(), anyInt(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> " s".repeat((int) invocation.getArgument(4) - 1).trim());
+
+        summarizer = new LogChunkSummarizer(openAIService, tokenCounter, summaryExecutor, llmExecutor);
+        ReflectionTestUtils.setField(summarizer, "summaryMaxTokens", 500);
+        ReflectionTestUtils.setField(summarizer, "maxChunks", 64);
+        ReflectionTestUtils.setField(summarizer, "timeoutMs", 10_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        summaryExecutor.shutdown();
+    }
+
+    @Test
+    void sharesTheBudgetBetweenTheChunkSummaries() {
+        List<String> logs = logLines(4 * CHUNK_BUDGET);
+
+        List<String> summaries = summarizer.summarize("why did it fail?", logs, 1200);
+
+        assertTrue(summaries.size() >= 4);
+        assertTrue(tokens(summaries) <= 1200, "summaries take " + tokens(summaries) + " tokens");
+        assertTrue(summaries.get(0).startsWith("Summary of part 1/" + summaries.size() + " (log lines 1-"));
+    }
+
+    @Test
+    void capsEachSummaryAtTheConfiguredMaximum() {
+        summarizer.summarize("why did it fail?", logLines(2 * CHUNK_BUDGET), 100_000);
+
+        verify(openAIService, atLeastOnce()).summarizeLogs(anyString(), anyList(), anyInt(), anyInt(), eq(500));
+    }
+
+    @Test
+    void summarizesTheSummariesAgainUntilTheyFit() {
+        List<String> logs = logLines(40 * CHUNK_BUDGET);
+
+        List<String> summaries = summarizer.summarize("why did it fail?", logs, 1000);
+
+        assertTrue(tokens(summaries) <= 1000, "summaries take " + tokens(summaries) + " tokens");
+        // The last round covers all lines
+        String last = summaries.get(summaries.size() - 1);
+        assertTrue(last.contains("-" + logs.size() + "):"), last);
+    }
+
+    @Test
+    void keepsAllLinesThatFitInOneChunk() {
+        List<String> logs = logLines(CHUNK_BUDGET / 2);
+
+        List<String> summaries = summarizer.summarize("why did it fail?", logs, 2000);
+
+        assertEquals(1, summaries.size());
+        assertTrue(summaries.get(0).startsWith("Summary of part 1/1 (log lines 1-" + logs.size() + "):\n"));
+    }
+
+    private List<String> logLines(int totalTokens) {
+        List<String> lines = new ArrayList<>();
+        int tokens = 0;
+        for (int i = 1; tokens < totalTokens; i++) {
+            String line = "2025-12-08 10:15:30.123 [INFO] [payment-service] Processed step " + i + " of the payment";
+            lines.add(line);
+            tokens += tokenCounter.count(line) + 1;
+        }
+        return lines;
+    }
+
+    private int tokens(List<String> lines) {
+        int tokens = 0;
+        for (String line : lines) {
+            tokens += tokenCounter.count(line) + 1;
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,72 @@
+package com.loganalyser.service;
+
+import com.loganalyser.enums.PromptCategory;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LogRelevanceScorerTest {
+
+    private static final String KEYWORDS = "fatal:8,exception:6,error:5,timeout:5,failed:4,failure:4,rollback:4,warn:2";
+
+    private final LogRelevanceScorer scorer = new LogRelevanceScorer(new MockEnvironment(), KEYWORDS);
+
+    @Test
+    void scoresTheSumOfTheDistinctKeywordsInALine() {
+        assertArrayEquals(new int[]{10, 5, 0}, score(scorer, null,
+                "Payment error after gateway timeout",
+                "error, error and error again",
+                "Order created"));
+    }
+
+    @Test
+    void matchesKeywordsCaseInsensitivelyInsideWords() {
+        assertArrayEquals(new int[]{16, 4}, score(scorer, null,
+                "ERROR java.net.SocketTimeoutException",
+                "PaymentFailed"));
+    }
+
+    @Test
+    void findsOverlappingKeywords() {
+        LogRelevanceScorer overlapping = new LogRelevanceScorer(new MockEnvironment(), "fail:1,failure:4,lure:2,ure:8");
+
+        assertArrayEquals(new int[]{15, 1}, score(overlapping, null, "Card failure", "failfail"));
+    }
+
+    @Test
+    void restartsMatchingAfterNonAsciiCharacters() {
+        assertArrayEquals(new int[]{0, 5}, score(scorer, null, "errör", "Ошибка: error"));
+    }
+
+    @Test
+    void appliesCategoryKeywordsAndRemovesThoseWeightedZero() {
+        LogRelevanceScorer categories = new LogRelevanceScorer(new MockEnvironment()
+                .withProperty("analysis.relevance.category-keywords.DEVELOPER_RCA", "warn:0,deadlock:7,error:1"),
+                KEYWORDS);
+
+        assertArrayEquals(new int[]{7, 1}, score(categories, PromptCategory.DEVELOPER_RCA, "WARN deadlock detected", "error"));
+        assertArrayEquals(new int[]{2, 5}, score(categories, PromptCategory.GENERAL, "WARN deadlock detected", "error"));
+        assertArrayEquals(new int[]{2, 5}, score(categories, null, "WARN deadlock detected", "error"));
+    }
+
+    @Test
+    void scoresNullLinesZero() {
+        assertArrayEquals(new int[]{0, 5}, scorer.score(Arrays.asList(null, "error"), null));
+    }
+
+    @Test
+    void rejectsInvalidEntries() {
+        assertThrows(IllegalArgumentException.class, () -> new LogRelevanceScorer(new MockEnvironment(), "error"));
+        assertThrows(IllegalArgumentException.class, () -> new LogRelevanceScorer(new MockEnvironment(), "error:high"));
+        assertThrows(IllegalArgumentException.class, () -> new LogRelevanceScorer(new MockEnvironment(), "fehlgeschlägen:3"));
+    }
+
+    private static int[] score(LogRelevanceScorer scorer, PromptCategory category, String... lines) {
+        return scorer.score(List.of(lines), category);
+    }
+}
@@ -0,0 +1,71 @@
+package com.loganalyser.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LogTemplateMinerTest {
+
+    private final LogTemplateMiner miner = new LogTemplateMiner(true, 0.5, 2, 100);
+
+    @Test
+    void collapsesRepeatedLinesIntoATemplateWithTheFirstHeader() {
+        List<String> lines = List.of(
+                "[Line 10] 2025-12-08 10:15:30.123 [WARN] [payment-service] Retry 1 of 3 for gateway call",
+                "[Line 11] 2025-12-08 10:15:31.456 [WARN] [payment-service] Retry 2 of 3 for gateway call",
+                "[Line 12] 2025-12-08 10:15:32.789 [WARN] [payment-service] Retry 3 of 3 for gateway call");
+
+        List<String> collapsed = miner.collapse(lines);
+
+        assertEquals(List.of("[3x, lines 1-3] [Line 10] 2025-12-08 10:15:30.123 [WARN] "
+                + "[payment-service] Retry <*> of 3 for gateway call | <*>1: 1, 2, 3"), collapsed);
+    }
+
+    @Test
+    void doesNotMergeLinesOfDifferentLevels() {
+        List<String> lines = List.of(
+                "2025-12-08 10:15:30.123 [INFO] [payment-service] Charging card for order 17",
+                "2025-12-08 10:15:30.456 [ERROR] [payment-service] Charging card for order 17");
+
+        assertEquals(lines, miner.collapse(lines));
+    }
+
+    @Test
+    void masksTheThreadBeforeTheLevel() {
+        List<String> lines = List.of(
+                "2025-12-08 10:15:30,123 [http-nio-8080-exec-1] INFO c.e.OrderController - Polling status",
+                "2025-12-08 10:15:35,004 [scheduler-2] INFO c.e.OrderController - Polling status");
+
+        assertEquals(List.of("[2x, lines 1-2] 2025-12-08 10:15:30,123 [http-nio-8080-exec-1] INFO "
+                + "c.e.OrderController - Polling status"), miner.collapse(lines));
+    }
+
+    @Test
+    void masksLeadingTimestampsOfLinesWithoutLevel() {
+        List<String> lines = List.of(
+                "2025-12-08T10:15:30Z heartbeat ok from node-a",
+                "2025-12-08T10:15:40Z heartbeat ok from node-b");
+
+        assertEquals(List.of("[2x, lines 1-2] 2025-12-08T10:15:30Z heartbeat ok from <*> | <*>1: node-a, node-b"),
+                miner.collapse(lines));
+    }
+
+    @Test
+    void keepsLinesThatOccurOnceUnchanged() {
+        List<String> lines = List.of(
+                "2025-12-08 10:15:30.123 [INFO] [order-service] Order created",
+                "2025-12-08 10:15:31.000 [ERROR] [payment-service] Card declined by issuer: insufficient funds");
+
+        assertEquals(lines, miner.collapse(lines));
+    }
+
+    @Test
+    void returnsTheInputWhenDisabled() {
+        List<String> lines = List.of("a", "a");
+
+        assertSame(lines, new LogTemplateMiner(false, 0.5, 2, 100).collapse(lines));
+    }
+}
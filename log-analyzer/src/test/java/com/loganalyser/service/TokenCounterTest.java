@@ -0,0 +1,40 @@
+package com.loganalyser.service;
+
+import com.loganalyser.config.OpenAIConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenCounterTest {
+
+    private final TokenCounter tokenCounter = tokenCounter();
+
+    @Test
+    void truncatesToAPrefixWithinTheTokenLimit() {
+        String query = "Why did the payment for order 17 fail after the gateway timeout? ".repeat(20);
+
+        String truncated = tokenCounter.truncate(query, 10);
+
+        assertTrue(query.startsWith(truncated));
+        assertTrue(tokenCounter.count(truncated) <= 10, truncated);
+        assertTrue(tokenCounter.count(truncated) >= 9, truncated);
+    }
+
+    @Test
+    void keepsTextThatFits() {
+        String query = "Why did TX651750504 fail?";
+
+        assertSame(query, tokenCounter.truncate(query, 100));
+        assertEquals("", tokenCounter.truncate(query, 0));
+    }
+
+    private static TokenCounter tokenCounter() {
+        OpenAIConfig openAIConfig = mock(OpenAIConfig.class);
+        when(openAIConfig.getModel()).thenReturn("gpt-4");
+        return new TokenCounter(openAIConfig, 0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.loganalyser.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TransactionIdExtractorServiceTest {
+
+    private static final String UUID = "3f2b8c1e-9a4d-4e6f-8b2a-1c3d5e7f9a0b";
+
+    private final TransactionIdExtractorService extractor = new TransactionIdExtractorService();
+
+    @Test
+    void findsATransactionIdInTheLogFormat() {
+        assertEquals("TX651750504", extractor.extractTransactionId("Why did TX651750504 fail?"));
+    }
+
+    @Test
+    void ranksTheLogFormatBeforeOtherTxIds() {
+        assertEquals(List.of("TX651750504", "TX12345"),
+                extractor.extractTransactionIds("Compare TX12345 with TX651750504"));
+    }
+
+    @Test
+    void readsValuesAfterTransactionIdKeys() {
+        assertEquals(List.of("ORD-2024-17"), extractor.extractTransactionIds("transaction_id: ORD-2024-17 failed"));
+        assertEquals(List.of("TX42"), extractor.extractTransactionIds("what about txnId=TX42"));
+        assertEquals(List.of("abc123"), extractor.extractTransactionIds("TX-ID abc123 is stuck"));
+    }
+
+    @Test
+    void ranksKeyedUuidsBeforeOtherUuids() {
+        String other = "11111111-2222-3333-4444-555555555555";
+
+        assertEquals(List.of(UUID, other), extractor.extractTransactionIds("see " + other + " and uuid: " + UUID));
+    }
+
+    @Test
+    void fallsBackToUppercaseAlphanumericWordsOnlyWithoutOtherIds() {
+        assertEquals(List.of("ORDER12345X"), extractor.extractTransactionIds("What happened to ORDER12345X?"));
+        assertEquals(List.of("TX651750504"), extractor.extractTransactionIds("ORDER12345X and TX651750504"));
+    }
+
+    @Test
+    void returnsEachIdOnceInOrderOfAppearance() {
+        assertEquals(List.of("TX651750504", "TX651750505"),
+                extractor.extractTransactionIds("TX651750504, TX651750505 and again TX651750504"));
+    }
+
+    @Test
+    void matchesOnlyWholeWords() {
+        assertEquals(List.of(), extractor.extractTransactionIds("xTX651750504 TX651750504abc TX651750504_1"));
+        assertEquals(List.of(), extractor.extractTransactionIds("éTX651750504"));
+    }
+
+    @Test
+    void returnsNothingForEmptyQueries() {
+        assertNull(extractor.extractTransactionId(null));
+        assertEquals(List.of(), extractor.extractTransactionIds("  "));
+        assertEquals(List.of(), extractor.extractTransactionIds("why is the payment service slow?"));
+    }
+}